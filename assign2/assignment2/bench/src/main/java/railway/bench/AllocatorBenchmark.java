@@ -0,0 +1,75 @@
+package railway.bench;
+
+import org.openjdk.jmh.annotations.*;
+import railway.Allocator;
+import railway.Segment;
+import railway.Track;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Benchmarks allocating the requested routes of trains spread along both
+ * lines of a ladder network, sequentially and in parallel.
+ * </p>
+ *
+ * <p>
+ * Train i runs on line a if i is even, and on line b if it is odd, and
+ * occupies the first section of the (i / 2)th slot of eight sections along
+ * its line. It requests the twelve sections from there, which run into the
+ * section occupied by the next train on its line, so most trains are given
+ * a shorter route than they asked for.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AllocatorBenchmark {
+
+    // the number of trains
+    @Param({ "10", "100", "1000" })
+    public int trains;
+
+    // the routes occupied and requested by the trains
+    private List<List<Segment>> occupied;
+    private List<List<Segment>> requested;
+
+    @Setup
+    public void setUp() {
+        occupied = new ArrayList<>();
+        requested = new ArrayList<>();
+        routes(trains, occupied, requested);
+    }
+
+    @Benchmark
+    public List<List<Segment>> allocate() {
+        return Allocator.allocate(occupied, requested);
+    }
+
+    @Benchmark
+    public List<List<Segment>> allocateInParallel() {
+        return Allocator.allocateInParallel(occupied, requested);
+    }
+
+    /**
+     * Adds the routes occupied and requested by the given number of trains,
+     * placed as described above, to the given lists.
+     *
+     * @require trains > 0
+     */
+    static void routes(int trains, List<List<Segment>> occupied,
+            List<List<Segment>> requested) {
+        int slots = (trains + 1) / 2;
+        Track track = Networks.ladder(8 * slots + 12);
+        for (int train = 0; train < trains; train++) {
+            String line = (train % 2 == 0) ? "a" : "b";
+            int from = 8 * (train / 2);
+            occupied.add(Networks.line(track, line, from, 1));
+            requested.add(Networks.line(track, line, from, 12));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package railway.bench;
+
+import railway.Branch;
+import railway.Junction;
+import railway.JunctionBranch;
+import railway.Section;
+import railway.Segment;
+import railway.Track;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * <p>
+ * Generates the networks that the benchmarks run on.
+ * </p>
+ *
+ * <p>
+ * A ladder network of a given length has two parallel lines, a and b, each
+ * made up of that many sections, with a crossover from line a to line b at
+ * every third junction. Line a runs from (a0, NORMAL) to (a1, FACING), then
+ * from (a1, NORMAL) to (a2, FACING), and so on, and likewise for line b. The
+ * crossover at a junction ai leaves it on its REVERSE branch and joins line
+ * b at the REVERSE branch of b(i + 1). The lengths of the sections on the
+ * lines are chosen at random from a seeded generator, so a network of a
+ * given length is the same on every run.
+ * </p>
+ */
+final class Networks {
+
+    // the seed of the lengths of the sections
+    private static final long SEED = 21;
+
+    private Networks() {
+    }
+
+    /**
+     * Returns the sections of a ladder network of the given length.
+     *
+     * @require length > 0
+     */
+    static List<Section> ladderSections(int length) {
+        Random random = new Random(SEED);
+        List<Section> sections = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            sections.add(new Section(10 + random.nextInt(91), endPoint("a",
+                    i, Branch.NORMAL), endPoint("a", i + 1, Branch.FACING)));
+            sections.add(new Section(10 + random.nextInt(91), endPoint("b",
+                    i, Branch.NORMAL), endPoint("b", i + 1, Branch.FACING)));
+            if (i % 3 == 1) {
+                sections.add(new Section(20, endPoint("a", i,
+                        Branch.REVERSE), endPoint("b", i + 1,
+                                Branch.REVERSE)));
+            }
+        }
+        return sections;
+    }
+
+    /**
+     * Returns a ladder network of the given length.
+     *
+     * @require length > 0
+     */
+    static Track ladder(int length) {
+        Track track = new Track();
+        for (Section section : ladderSections(length)) {
+            track.addSection(section);
+        }
+        return track;
+    }
+
+    /**
+     * Returns the segments of the route along the given line of a ladder
+     * network that starts at junction number from and runs along count whole
+     * sections.
+     *
+     * @require line is "a" or "b" && from >= 0 && count > 0 && from + count
+     *          <= the length of the network
+     */
+    static List<Segment> line(Track track, String line, int from,
+            int count) {
+        List<Segment> segments = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            Section section = track.getTrackSection(new Junction(line + i),
+                    Branch.NORMAL);
+            segments.add(new Segment(section, endPoint(line, i,
+                    Branch.NORMAL), 0, section.getLength()));
+        }
+        return segments;
+    }
+
+    /**
+     * Writes the given sections to a new temporary file, in the format read
+     * by TrackReader, and returns the file.
+     */
+    static File writeTrack(Iterable<Section> sections) throws IOException {
+        File file = File.createTempFile("track", ".txt");
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            for (Section section : sections) {
+                StringBuilder line = new StringBuilder();
+                line.append(section.getLength());
+                for (JunctionBranch endPoint : section.getEndPoints()) {
+                    line.append(' ').append(format(endPoint));
+                }
+                out.println(line);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Returns the end-point of the junction with the given number on the
+     * given line, on the given branch.
+     */
+    static JunctionBranch endPoint(String line, int number, Branch branch) {
+        return new JunctionBranch(new Junction(line + number), branch);
+    }
+
+    /**
+     * Returns an end-point as it is written in track files.
+     */
+    private static String format(JunctionBranch endPoint) {
+        return endPoint.getJunction().getJunctionId() + " "
+                + endPoint.getBranch();
+    }
+}
@@ -0,0 +1,42 @@
+package railway.bench;
+
+import org.openjdk.jmh.annotations.*;
+import railway.Track;
+import railway.TrackReader;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading a ladder network from a track file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReaderBenchmark {
+
+    // the length of the ladder network
+    @Param({ "1000", "100000" })
+    public int length;
+
+    // the track file
+    private File trackFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        trackFile = Networks.writeTrack(Networks.ladderSections(length));
+    }
+
+    @TearDown
+    public void tearDown() {
+        trackFile.delete();
+    }
+
+    @Benchmark
+    public Track readTrack() throws Exception {
+        return TrackReader.read(trackFile.getPath());
+    }
+}
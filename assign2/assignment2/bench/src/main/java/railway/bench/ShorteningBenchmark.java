@@ -0,0 +1,43 @@
+package railway.bench;
+
+import org.openjdk.jmh.annotations.*;
+import railway.Allocator;
+import railway.Segment;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks allocating the routes of AllocatorBenchmark by shortening each
+ * requested route until it no longer intersects the others. This takes time
+ * that grows much faster than the number of trains (over a second for ten
+ * trains, and minutes for a hundred), so it is only run for a few of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShorteningBenchmark {
+
+    // the number of trains
+    @Param({ "4", "10" })
+    public int trains;
+
+    // the routes occupied and requested by the trains
+    private List<List<Segment>> occupied;
+    private List<List<Segment>> requested;
+
+    @Setup
+    public void setUp() {
+        occupied = new ArrayList<>();
+        requested = new ArrayList<>();
+        AllocatorBenchmark.routes(trains, occupied, requested);
+    }
+
+    @Benchmark
+    public List<List<Segment>> allocateByShortening() {
+        return Allocator.allocateByShortening(occupied, requested);
+    }
+}
@@ -0,0 +1,77 @@
+package railway.bench;
+
+import org.openjdk.jmh.annotations.*;
+import railway.JunctionBranch;
+import railway.Section;
+import railway.Track;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building a track from its sections, and looking up the section
+ * at an end-point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrackBenchmark {
+
+    // the length of the ladder network
+    @Param({ "1000", "100000" })
+    public int length;
+
+    // the sections of the network, and the track built from them
+    private List<Section> sections;
+    private Track track;
+    // the end-points to look up, in a random order
+    private JunctionBranch[] endPoints;
+    // the index of the next end-point to look up
+    private int next;
+
+    @Setup
+    public void setUp() {
+        sections = Networks.ladderSections(length);
+        track = build();
+        List<JunctionBranch> found = new ArrayList<>();
+        for (Section section : sections) {
+            found.addAll(section.getEndPoints());
+        }
+        Collections.shuffle(found, new Random(length));
+        endPoints = found.toArray(new JunctionBranch[found.size()]);
+    }
+
+    /**
+     * Builds the track, adding every section of the network to it.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Track addSections() {
+        return build();
+    }
+
+    /**
+     * Looks up the section at the next end-point.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Section getTrackSection() {
+        JunctionBranch endPoint = endPoints[next];
+        next = (next + 1 == endPoints.length) ? 0 : next + 1;
+        return track.getTrackSection(endPoint.getJunction(), endPoint
+                .getBranch());
+    }
+
+    /**
+     * Returns a track holding the sections of the network.
+     */
+    private Track build() {
+        Track result = new Track();
+        for (Section section : sections) {
+            result.addSection(section);
+        }
+        return result;
+    }
+}
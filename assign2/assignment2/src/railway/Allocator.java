@@ -66,6 +66,204 @@ public class Allocator {
     public static List<List<Segment>> allocate(List<List<Segment>> occupied,
             List<List<Segment>> requested) {
 
+        // Early return empty list if no trains exist
+        if (occupied.isEmpty() || requested.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Every train is allocated in the one group, in index order
+        List<Integer> trains = new ArrayList<>();
+        for (int train = 0; train < requested.size(); train++) {
+            trains.add(train);
+        }
+        List<List<Segment>> collector = emptyAllocation(requested.size());
+        allocateGroup(occupied, requested, trains, collector);
+        return collector;
+    }
+
+    /**
+     * Returns the same allocation as {@link #allocate(List, List)}, computed
+     * in parallel.
+     * 
+     * The trains are split into groups, such that no train's occupied or
+     * requested route is on a section, or ends at a junction, that is used by
+     * the route of a train in another group. Since the routes of trains in
+     * different groups can't intersect, each group is allocated separately
+     * (in index order) as a task on the common fork-join pool.
+     * 
+     * @require the same preconditions as allocate
+     * @ensure returns the same allocation as allocate
+     * @param occupied
+     *            the routes currently occupied by each train
+     * @param requested
+     *            the routes requested by each train
+     * @return the list of allocated routes.
+     */
+    public static List<List<Segment>> allocateInParallel(
+            List<List<Segment>> occupied, List<List<Segment>> requested) {
+
+        // Early return empty list if no trains exist
+        if (occupied.isEmpty() || requested.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Each task only sets the allocations of the trains in its group
+        List<List<Segment>> collector = emptyAllocation(requested.size());
+        groups(occupied, requested).parallelStream().forEach(
+                trains -> allocateGroup(occupied, requested, trains,
+                        collector));
+        return collector;
+    }
+
+    /**
+     * Allocates the routes requested by the given trains, in the order given,
+     * setting collector.get(i) to the route allocated to train i.
+     * 
+     * The occupied routes of trains that aren't in the group are ignored, so
+     * the group must include every train whose route could intersect the
+     * route of a train in the group.
+     */
+    private static void allocateGroup(List<List<Segment>> occupied,
+            List<List<Segment>> requested, List<Integer> trains,
+            List<List<Segment>> collector) {
+
+        // Index every occupied route, tagged with the index of its train,
+        // so that a train's own occupied route can be ignored
+        SegmentIndex index = new SegmentIndex();
+        for (int train : trains) {
+            index.add(train, occupied.get(train));
+        }
+
+        // Select the requested route's index that we want to allocate
+        for (int train : trains) {
+            // "[must] not intersect with any of the routes
+            // currently occupied by *any other* train
+            // or any of the routes [in the result]"
+            // Cut the route short just before its first blocked location
+            List<Segment> staged = index.longestDisjointPrefix(
+                    train, requested.get(train));
+
+            // Trains with higher indices must avoid this allocation too
+            index.add(SegmentIndex.NO_OWNER, staged);
+
+            // Staged route finalized
+            // Set the staged route to be allocated
+            collector.set(train, staged);
+        }
+    }
+
+    /**
+     * Splits the trains into groups, such that the occupied and requested
+     * routes of trains in different groups share no section, and no junction
+     * at the end of a segment. Each group lists its trains in ascending order,
+     * and the groups are ordered by their first train.
+     */
+    private static List<List<Integer>> groups(List<List<Segment>> occupied,
+            List<List<Segment>> requested) {
+        int size = requested.size();
+
+        // A union-find forest over the trains: parent[i] == i for a root
+        int[] parent = new int[size];
+        for (int train = 0; train < size; train++) {
+            parent[train] = train;
+        }
+
+        // The first train found to use each section or junction
+        Map<Object, Integer> users = new HashMap<>();
+        for (int train = 0; train < size; train++) {
+            List<Segment> segments = new ArrayList<>(occupied.get(train));
+            segments.addAll(requested.get(train));
+            for (Segment segment : segments) {
+                for (Object key : keys(segment)) {
+                    Integer user = users.putIfAbsent(key, train);
+                    if (user != null) {
+                        union(parent, user, train);
+                    }
+                }
+            }
+        }
+
+        // Collect the trains of each group, in ascending order
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int train = 0; train < size; train++) {
+            groups.computeIfAbsent(find(parent, train),
+                    root -> new ArrayList<>()).add(train);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    /**
+     * Returns the section of the segment, and the junctions where it has a
+     * first or last location: any location it shares with another segment is
+     * on one of these.
+     */
+    private static List<Object> keys(Segment segment) {
+        List<Object> keys = new ArrayList<>(3);
+        keys.add(segment.getSection());
+        if (segment.getStartOffset() == 0) {
+            keys.add(segment.getDepartingEndPoint().getJunction());
+        }
+        if (segment.getEndOffset() == segment.getSection().getLength()) {
+            keys.add(segment.getApproachingEndPoint().getJunction());
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the root of the tree containing the train, halving the path to
+     * it on the way.
+     */
+    private static int find(int[] parent, int train) {
+        while (parent[train] != train) {
+            parent[train] = parent[parent[train]];
+            train = parent[train];
+        }
+        return train;
+    }
+
+    /**
+     * Merges the trees containing the two trains.
+     */
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        // Keep the lower index as the root
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else {
+            parent[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Returns a list of the given size containing only nulls, to be filled
+     * in with the allocated routes.
+     */
+    private static List<List<Segment>> emptyAllocation(int size) {
+        return new ArrayList<>(Collections.<List<Segment>>nCopies(size, null));
+    }
+
+    /**
+     * Returns the same allocation as {@link #allocate(List, List)}, using the
+     * original algorithm: each requested route is shortened by one meter at a
+     * time, and every occupied and allocated route is checked again after
+     * each cut.
+     *
+     * This takes O(length * routes * segments^2) time per request, and is
+     * retained only as a reference for testing and benchmarking the
+     * allocate method.
+     *
+     * @require the same preconditions as allocate
+     * @ensure returns the same allocation as allocate
+     * @param occupied
+     *            the routes currently occupied by each train
+     * @param requested
+     *            the routes requested by each train
+     * @return the list of allocated routes.
+     */
+    public static List<List<Segment>> allocateByShortening(
+            List<List<Segment>> occupied, List<List<Segment>> requested) {
+
         // Create an empty list to contain the allocated routes
         List<List<Segment>> collector = new ArrayList<>();
 
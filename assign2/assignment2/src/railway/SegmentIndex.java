@@ -0,0 +1,252 @@
+package railway;
+
+import java.util.*;
+
+/**
+ * An index of the segments of a number of routes, each tagged with an owner,
+ * used by the Allocator to find the first location of a requested route that
+ * is shared with a route of another owner.
+ *
+ * Two segments share a location if and only if either they are on the same
+ * section and their intervals of offsets overlap (once both are measured from
+ * the same end-point of the section), or they both have a first or last
+ * location at the same junction.
+ */
+class SegmentIndex {
+
+    // An owner that is never excluded from a search
+    static final int NO_OWNER = -1;
+
+    // The intervals occupied on each section
+    private final Map<Section, SectionIntervals> sections = new HashMap<>();
+
+    // The owners of the segments with a first or last location at each
+    // junction
+    private final Map<Junction, List<Integer>> junctions = new HashMap<>();
+
+    /**
+     * Adds the segments of the given route to the index.
+     *
+     * @param owner
+     *            the owner of the route
+     * @param route
+     *            the segments to add
+     * @require route != null && !route.contains(null)
+     */
+    void add(int owner, List<Segment> route) {
+        for (Segment segment : route) {
+            Section section = segment.getSection();
+
+            // The first segment on a section sets the end-point that
+            // the section's offsets are measured from
+            SectionIntervals intervals = sections.get(section);
+            if (intervals == null) {
+                intervals = new SectionIntervals(
+                        segment.getDepartingEndPoint());
+                sections.put(section, intervals);
+            }
+            intervals.add(owner, segment);
+
+            // Record the junctions at the ends of the segment
+            if (segment.getStartOffset() == 0) {
+                touch(owner, segment.getDepartingEndPoint().getJunction());
+            }
+            if (segment.getEndOffset() == section.getLength()) {
+                touch(owner, segment.getApproachingEndPoint().getJunction());
+            }
+        }
+    }
+
+    /**
+     * Returns the longest prefix of the given route that doesn't share a
+     * location with any of the indexed segments, other than those of the
+     * excluded owner.
+     *
+     * The prefix is the one that would be reached by repeatedly removing one
+     * meter from the end of the route (and removing the last segment
+     * altogether once it can't be shortened) until it no longer shares a
+     * location: the segments before the first segment with a shared location,
+     * followed by that segment cut short just before its first shared
+     * location, if that leaves it with a positive length.
+     *
+     * @param excluded
+     *            the owner whose segments are ignored
+     * @param route
+     *            the route to find the prefix of
+     * @return a new list containing the longest disjoint prefix of route
+     * @require route != null && !route.contains(null)
+     */
+    List<Segment> longestDisjointPrefix(int excluded, List<Segment> route) {
+        List<Segment> prefix = new ArrayList<>();
+
+        for (Segment segment : route) {
+            // The distance into the segment of its first shared location
+            int blocked = firstSharedOffset(excluded, segment);
+
+            if (blocked < 0) {
+                // Nothing shared, keep the whole segment and move on
+                prefix.add(segment);
+                continue;
+            }
+
+            // Keep the part of the segment before the shared location,
+            // as long as it still has a positive length
+            if (blocked >= 2) {
+                prefix.add(new Segment(
+                        segment.getSection()
+                        , segment.getDepartingEndPoint()
+                        , segment.getStartOffset()
+                        , segment.getStartOffset() + blocked - 1));
+            }
+            break;
+        }
+        return prefix;
+    }
+
+    /**
+     * Returns the distance from the first location of the segment to the
+     * first of its locations that is shared with a segment of an owner other
+     * than the excluded one, or -1 if no location is shared.
+     */
+    private int firstSharedOffset(int excluded, Segment segment) {
+        Section section = segment.getSection();
+
+        // The first location, if it is at a junction
+        if (segment.getStartOffset() == 0
+                && touched(excluded,
+                        segment.getDepartingEndPoint().getJunction())) {
+            return 0;
+        }
+
+        // The first shared location on the same section, if any
+        int result = -1;
+        SectionIntervals intervals = sections.get(section);
+        if (intervals != null) {
+            result = intervals.firstSharedOffset(excluded, segment);
+        }
+
+        // The last location, if it is at a junction
+        if (result < 0
+                && segment.getEndOffset() == section.getLength()
+                && touched(excluded,
+                        segment.getApproachingEndPoint().getJunction())) {
+            result = segment.getLength();
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if a segment of an owner other than the excluded one has
+     * a first or last location at the given junction.
+     */
+    private boolean touched(int excluded, Junction junction) {
+        List<Integer> owners = junctions.get(junction);
+        if (owners == null) {
+            return false;
+        }
+        for (int owner : owners) {
+            if (owner != excluded) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records that a segment of the owner has a first or last location at
+     * the junction.
+     */
+    private void touch(int owner, Junction junction) {
+        List<Integer> owners = junctions.get(junction);
+        if (owners == null) {
+            owners = new ArrayList<>();
+            junctions.put(junction, owners);
+        }
+        owners.add(owner);
+    }
+
+    /**
+     * The closed intervals of offsets of the segments on one section,
+     * measured from a reference end-point.
+     */
+    private static class SectionIntervals {
+
+        // The end-point that the offsets are measured from
+        private final JunctionBranch reference;
+
+        // The start, end and owner of each interval
+        private int[] starts = new int[2];
+        private int[] ends = new int[2];
+        private int[] owners = new int[2];
+        private int size = 0;
+
+        SectionIntervals(JunctionBranch reference) {
+            this.reference = reference;
+        }
+
+        /**
+         * Adds the interval of the segment of the owner.
+         */
+        void add(int owner, Segment segment) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * size);
+                ends = Arrays.copyOf(ends, 2 * size);
+                owners = Arrays.copyOf(owners, 2 * size);
+            }
+            starts[size] = start(segment);
+            ends[size] = end(segment);
+            owners[size] = owner;
+            size++;
+        }
+
+        /**
+         * Returns the distance from the first location of the segment to the
+         * first of its locations inside an interval of an owner other than
+         * the excluded one, or -1 if there is no such location.
+         */
+        int firstSharedOffset(int excluded, Segment segment) {
+            int start = start(segment);
+            int end = end(segment);
+            // Is the segment travelling away from the reference end-point?
+            boolean forward = segment.getDepartingEndPoint().equals(reference);
+
+            int result = -1;
+            for (int i = 0; i < size; i++) {
+                if (owners[i] == excluded
+                        || ends[i] < start || end < starts[i]) {
+                    // Ignored, or no overlap
+                    continue;
+                }
+                // Distance along the segment to the start of the overlap
+                int offset = forward
+                        ? Math.max(start, starts[i]) - start
+                        : end - Math.min(end, ends[i]);
+                if (result < 0 || offset < result) {
+                    result = offset;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the start of the segment's interval w.r.t. the reference.
+         */
+        private int start(Segment segment) {
+            if (segment.getDepartingEndPoint().equals(reference)) {
+                return segment.getStartOffset();
+            }
+            return segment.getSection().getLength() - segment.getEndOffset();
+        }
+
+        /**
+         * Returns the end of the segment's interval w.r.t. the reference.
+         */
+        private int end(Segment segment) {
+            if (segment.getDepartingEndPoint().equals(reference)) {
+                return segment.getEndOffset();
+            }
+            return segment.getSection().getLength()
+                    - segment.getStartOffset();
+        }
+    }
+}
@@ -276,6 +276,51 @@ public class AllocatorTest {
         Assert.assertEquals(expectedAllocation, actualAllocation);
     }
 
+    /**
+     * Random test: many trains: random routes of one to three segments each on
+     * the sections of the track: the allocation is the same as the one made by
+     * repeatedly shortening each requested route.
+     */
+    @Test
+    public void randomTest01() throws Exception {
+        // a fixed seed, so that a failure can be reproduced
+        Random random = new Random(2002);
+        for (int round = 0; round < 200; round++) {
+            int trains = 1 + random.nextInt(6);
+            List<List<Segment>> occupied = new ArrayList<>();
+            List<List<Segment>> requested = new ArrayList<>();
+            for (int train = 0; train < trains; train++) {
+                occupied.add(randomRoute(random));
+                requested.add(randomRoute(random));
+            }
+            Assert.assertEquals(
+                    Allocator.allocateByShortening(occupied, requested),
+                    Allocator.allocate(occupied, requested));
+        }
+    }
+
+    /**
+     * Random test: many trains: random routes of one to three segments each on
+     * the sections of the track: the parallel allocation is the same as the
+     * sequential one.
+     */
+    @Test
+    public void randomTest02() throws Exception {
+        // a fixed seed, so that a failure can be reproduced
+        Random random = new Random(2007);
+        for (int round = 0; round < 200; round++) {
+            int trains = 1 + random.nextInt(6);
+            List<List<Segment>> occupied = new ArrayList<>();
+            List<List<Segment>> requested = new ArrayList<>();
+            for (int train = 0; train < trains; train++) {
+                occupied.add(randomRoute(random));
+                requested.add(randomRoute(random));
+            }
+            Assert.assertEquals(Allocator.allocate(occupied, requested),
+                    Allocator.allocateInParallel(occupied, requested));
+        }
+    }
+
     // -----Helper Methods-------------------------------
 
     /**
@@ -298,4 +343,28 @@ public class AllocatorTest {
         return list;
     }
 
+    /**
+     * Returns a list of one to three segments, each on a randomly chosen
+     * section, direction and interval of the track used in this suite.
+     * 
+     * @param random
+     *            the source of randomness
+     * @return a random list of segments
+     */
+    private List<Segment> randomRoute(Random random) {
+        List<Segment> route = new ArrayList<>();
+        int size = 1 + random.nextInt(3);
+        for (int i = 0; i < size; i++) {
+            Section section = sections[random.nextInt(sections.length)];
+            List<JunctionBranch> ends =
+                    new ArrayList<>(section.getEndPoints());
+            JunctionBranch departing = ends.get(random.nextInt(2));
+            int start = random.nextInt(section.getLength());
+            int end = start + 1
+                    + random.nextInt(section.getLength() - start);
+            route.add(new Segment(section, departing, start, end));
+        }
+        return route;
+    }
+
 }
@@ -0,0 +1,151 @@
+package railway.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import railway.Branch;
+import railway.JunctionBranch;
+import railway.Location;
+import railway.Section;
+import railway.Segment;
+import railway.Track;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the equality and hashing of locations, Segment.contains, and
+ * the end-point accessors of Section, over locations spread across a ladder
+ * network. Each location is compared with an equivalent location described
+ * differently: from the other end of its section, or, at a junction, on
+ * another section at that junction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LocationBenchmark {
+
+    // the number of locations cycled through, a power of two
+    private static final int COUNT = 4096;
+
+    // the length of the ladder network
+    @Param({ "1000", "100000" })
+    public int length;
+
+    // the locations, equivalent locations described differently, and
+    // segments on the sections of the locations that may contain them
+    private Location[] locations;
+    private Location[] twins;
+    private Segment[] segments;
+    // the index of the next location to use
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Track track = Networks.ladder(length);
+        List<Section> sections = new ArrayList<>();
+        for (Section section : track) {
+            sections.add(section);
+        }
+        Random random = new Random(length);
+        locations = new Location[COUNT];
+        twins = new Location[COUNT];
+        segments = new Segment[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            Section section = sections.get(random.nextInt(sections.size()));
+            int sectionLength = section.getLength();
+            // a quarter of the locations are at a junction
+            int offset = (i % 4 == 0) ? 0 : 1 + random.nextInt(sectionLength
+                    - 1);
+            JunctionBranch from = section.getEndPoint1();
+            locations[i] = new Location(section, from, offset);
+            if (offset > 0) {
+                twins[i] = new Location(section, section.getEndPoint2(),
+                        sectionLength - offset);
+            } else {
+                Section other = otherSection(track, from, section);
+                twins[i] = (other == null) ? new Location(section, from, 0)
+                        : junctionLocation(other, from);
+            }
+            int start = random.nextInt(sectionLength);
+            segments[i] = new Segment(section, from, start, start + 1
+                    + random.nextInt(sectionLength - start));
+        }
+    }
+
+    @Benchmark
+    public int hashCodeOfLocation() {
+        return locations[advance()].hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsEquivalentLocation() {
+        int i = advance();
+        return locations[i].equals(twins[i]);
+    }
+
+    @Benchmark
+    public boolean equalsOtherLocation() {
+        int i = advance();
+        return locations[i].equals(locations[(i + 1) & (COUNT - 1)]);
+    }
+
+    @Benchmark
+    public boolean segmentContains() {
+        int i = advance();
+        return segments[i].contains(twins[i]);
+    }
+
+    @Benchmark
+    public Set<JunctionBranch> getEndPoints() {
+        return locations[advance()].getSection().getEndPoints();
+    }
+
+    @Benchmark
+    public void getEndPoint1And2(Blackhole blackhole) {
+        Section section = locations[advance()].getSection();
+        blackhole.consume(section.getEndPoint1());
+        blackhole.consume(section.getEndPoint2());
+    }
+
+    /**
+     * Returns the index of the next location to use.
+     */
+    private int advance() {
+        int i = next;
+        next = (i + 1) & (COUNT - 1);
+        return i;
+    }
+
+    /**
+     * Returns a section of the track other than the given one at the
+     * junction of the given end-point, or null if there is none.
+     */
+    private static Section otherSection(Track track, JunctionBranch endPoint,
+            Section section) {
+        for (Branch branch : Branch.values()) {
+            Section other = track.getTrackSection(endPoint.getJunction(),
+                    branch);
+            if (other != null && !other.equals(section)) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the location on the given section at the junction of the
+     * given end-point.
+     *
+     * @require the section has an end-point at that junction
+     */
+    private static Location junctionLocation(Section section,
+            JunctionBranch endPoint) {
+        JunctionBranch end = section.getEndPoint1().getJunction().equals(
+                endPoint.getJunction()) ? section.getEndPoint1() : section
+                        .getEndPoint2();
+        return new Location(section, end, 0);
+    }
+}
@@ -0,0 +1,139 @@
+package railway.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+import railway.FormatException;
+import railway.Route;
+import railway.Track;
+import railway.gui.RailwayModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading and moving the trains of a RailwayModel from several
+ * threads. The trains are spread out along line a of a ladder network, and
+ * each is moved forward and then back by one unit at a time, so the trains
+ * never come near each other.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelBenchmark {
+
+    // the number of sections on the route of the trains
+    private static final int LENGTH = 256;
+
+    // the number of trains in the model
+    @Param({ "64" })
+    public int trains;
+
+    // the model, and the ids of its trains
+    private RailwayModel model;
+    private int[] ids;
+
+    @Setup
+    public void setUp() throws IOException, FormatException {
+        Track track = Networks.ladder(LENGTH);
+        File trackFile = Networks.writeTrack(track);
+        File routeFile = Networks.writeRoute(Networks.line(track, "a", 0,
+                LENGTH));
+        try {
+            model = new RailwayModel();
+            model.loadTrack(trackFile.getPath());
+            int gap = new Route(Networks.line(track, "a", 0, LENGTH))
+                    .getLength() / trains;
+            ids = new int[trains];
+            for (int train = 0; train < trains; train++) {
+                ids[train] = model.spawnTrain(routeFile.getPath(), train
+                        * gap, train * gap + gap / 2);
+            }
+        } finally {
+            trackFile.delete();
+            routeFile.delete();
+        }
+    }
+
+    /**
+     * The trains read by a thread.
+     */
+    @State(Scope.Thread)
+    public static class Reader {
+
+        // the index of the next train to read
+        private int next;
+
+        /**
+         * Returns the id of the next train to read.
+         */
+        int next(int[] ids) {
+            int i = next;
+            next = (i + 1 == ids.length) ? 0 : i + 1;
+            return ids[i];
+        }
+    }
+
+    /**
+     * The trains moved by a thread: those whose indices are congruent to the
+     * thread's index modulo the number of moving threads.
+     */
+    @State(Scope.Thread)
+    public static class Mover {
+
+        // the index of the thread among the moving threads, and the number
+        // of moving threads
+        private int index;
+        private int count;
+        // the number of moves made by the thread
+        private long moves;
+
+        @Setup
+        public void setUp(ThreadParams params) {
+            index = params.getGroupIndex() * params.getSubgroupThreadCount()
+                    + params.getSubgroupThreadIndex();
+            count = params.getGroupCount() * params.getSubgroupThreadCount();
+        }
+
+        /**
+         * Moves the next of the thread's trains: forward, on a pass forward
+         * over them, or back, on a pass back.
+         */
+        void move(RailwayModel model, int[] ids) {
+            int owned = (ids.length - index + count - 1) / count;
+            long pass = moves / owned;
+            int train = index + (int) (moves % owned) * count;
+            int delta = (pass % 2 == 0) ? 1 : -1;
+            model.advanceTrain(ids[train], delta, delta);
+            moves++;
+        }
+    }
+
+    @Benchmark
+    public String[] getTrainInfo(Reader reader) {
+        return model.getTrainInfo(reader.next(ids));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void advanceTrain(Mover mover) {
+        mover.move(model, ids);
+    }
+
+    @Benchmark
+    @Group("readWhileMoving")
+    @GroupThreads(3)
+    public String[] readWhileMoving(Reader reader) {
+        return model.getTrainInfo(reader.next(ids));
+    }
+
+    @Benchmark
+    @Group("readWhileMoving")
+    @GroupThreads(1)
+    public void moveWhileReading(Mover mover) {
+        mover.move(model, ids);
+    }
+}
@@ -0,0 +1,54 @@
+package railway.bench;
+
+import org.openjdk.jmh.annotations.*;
+import railway.Branch;
+import railway.Junction;
+import railway.JunctionBranch;
+import railway.Location;
+import railway.Route;
+import railway.RoutePlanner;
+import railway.Section;
+import railway.Track;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks planning the shortest route across a ladder network, from the
+ * start of line a to the end of line b, which has to use a crossover.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlannerBenchmark {
+
+    // the length of the ladder network
+    @Param({ "1000", "100000" })
+    public int length;
+
+    // the network, and the locations to plan a route between
+    private Track track;
+    private Location from;
+    private Location to;
+
+    @Setup
+    public void setUp() {
+        track = Networks.ladder(length);
+        JunctionBranch start = JunctionBranch.valueOf(Junction.valueOf("a0"),
+                Branch.NORMAL);
+        from = new Location(track.getTrackSection(start.getJunction(), start
+                .getBranch()), start, 0);
+        JunctionBranch end = JunctionBranch.valueOf(Junction.valueOf("b"
+                + length), Branch.FACING);
+        Section last = track.getTrackSection(end.getJunction(), end
+                .getBranch());
+        to = new Location(last, end, 1);
+    }
+
+    @Benchmark
+    public Route shortestRoute() {
+        return RoutePlanner.shortestRoute(track, from, to);
+    }
+}
@@ -0,0 +1,76 @@
+package railway.bench;
+
+import org.openjdk.jmh.annotations.*;
+import railway.BinaryTrackReader;
+import railway.BinaryTrackWriter;
+import railway.FormatException;
+import railway.Route;
+import railway.RouteReader;
+import railway.Track;
+import railway.TrackReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading a ladder network from a track file in the text and
+ * binary formats, and reading a route along one of its lines from a route
+ * file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReaderBenchmark {
+
+    // the length of the ladder network, which is also the number of
+    // segments on the route
+    @Param({ "1000", "100000" })
+    public int length;
+
+    // the files read
+    private File trackFile;
+    private File binaryTrackFile;
+    private File routeFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        Track track = Networks.ladder(length);
+        trackFile = Networks.writeTrack(track);
+        binaryTrackFile = File.createTempFile("track", ".bin");
+        BinaryTrackWriter.write(track, binaryTrackFile.getPath());
+        routeFile = Networks.writeRoute(Networks.line(track, "a", 0,
+                length));
+    }
+
+    @TearDown
+    public void tearDown() {
+        trackFile.delete();
+        binaryTrackFile.delete();
+        routeFile.delete();
+    }
+
+    @Benchmark
+    public Track readTrack() throws IOException, FormatException {
+        return TrackReader.read(trackFile.getPath());
+    }
+
+    @Benchmark
+    public Track readTrackWithScanner() throws IOException,
+            FormatException {
+        return TrackReader.readWithScanner(trackFile.getPath());
+    }
+
+    @Benchmark
+    public Track readBinaryTrack() throws IOException, FormatException {
+        return BinaryTrackReader.read(binaryTrackFile.getPath());
+    }
+
+    @Benchmark
+    public Route readRoute() throws IOException, FormatException {
+        return RouteReader.read(routeFile.getPath());
+    }
+}
@@ -0,0 +1,120 @@
+package railway.bench;
+
+import org.openjdk.jmh.annotations.*;
+import railway.Route;
+import railway.Segment;
+import railway.Track;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks constructing routes, taking sub-routes of them, and checking
+ * whether two routes intersect, for routes along the lines of a ladder
+ * network. The routes along the two lines do not intersect, so an
+ * intersection check has to consider every segment.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteBenchmark {
+
+    // the number of offsets cycled through, a power of two
+    private static final int COUNT = 1024;
+
+    // the number of segments on a route
+    @Param({ "16", "1024" })
+    public int segments;
+
+    // the segments of a route along line a, and the routes along lines a
+    // and b
+    private List<Segment> segmentsOfA;
+    private Route routeA;
+    private Route routeB;
+    // the offsets of the sub-routes taken, with starts[i] < ends[i]
+    private int[] starts;
+    private int[] ends;
+    // the index of the next sub-route to take
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Track track = Networks.ladder(segments);
+        segmentsOfA = Networks.line(track, "a", 0, segments);
+        routeA = new Route(segmentsOfA);
+        routeB = new Route(Networks.line(track, "b", 0, segments));
+        // index the route before the first intersection check is timed
+        routeA.intersects(routeB);
+
+        Random random = new Random(segments);
+        starts = new int[COUNT];
+        ends = new int[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            int first = random.nextInt(routeA.getLength());
+            int second = random.nextInt(routeA.getLength());
+            starts[i] = Math.min(first, second);
+            ends[i] = Math.max(first, second) + 1;
+        }
+    }
+
+    /**
+     * Constructs a route from a list of segments, which checks that it is
+     * valid.
+     */
+    @Benchmark
+    public Route construct() {
+        return new Route(segmentsOfA);
+    }
+
+    /**
+     * Takes a sub-route of a route.
+     */
+    @Benchmark
+    public Route getSubroute() {
+        int i = advance();
+        return routeA.getSubroute(starts[i], ends[i]);
+    }
+
+    /**
+     * Takes a sub-route of a route and visits each of its segments.
+     */
+    @Benchmark
+    public int getSubrouteAndIterate() {
+        int i = advance();
+        int total = 0;
+        for (Segment segment : routeA.getSubroute(starts[i], ends[i])) {
+            total += segment.getLength();
+        }
+        return total;
+    }
+
+    /**
+     * Checks a route against a route whose segments have already been
+     * indexed.
+     */
+    @Benchmark
+    public boolean intersects() {
+        return routeA.intersects(routeB);
+    }
+
+    /**
+     * Constructs a route and checks another route against it, which indexes
+     * its segments.
+     */
+    @Benchmark
+    public boolean constructAndIntersect() {
+        return new Route(segmentsOfA).intersects(routeB);
+    }
+
+    /**
+     * Returns the index of the next sub-route to take.
+     */
+    private int advance() {
+        int i = next;
+        next = (i + 1) & (COUNT - 1);
+        return i;
+    }
+}
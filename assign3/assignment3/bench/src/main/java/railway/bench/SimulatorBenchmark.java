@@ -0,0 +1,71 @@
+package railway.bench;
+
+import org.openjdk.jmh.annotations.*;
+import railway.Route;
+import railway.Track;
+import railway.sim.SimulationReport;
+import railway.sim.Simulator;
+import railway.sim.TrackPartition;
+import railway.sim.TrainPlan;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks simulating trains running along the lines of a ladder network,
+ * on one thread, and with the network partitioned into regions that are
+ * each simulated on a thread of their own.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimulatorBenchmark {
+
+    // the length of the ladder network
+    @Param({ "10000" })
+    public int length;
+
+    // the number of trains
+    @Param({ "500" })
+    public int trains;
+
+    // the time at which the simulation stops
+    @Param({ "5000" })
+    public long horizon;
+
+    // the number of regions to partition the network into, or 0 to run the
+    // simulation on one thread without partitioning it
+    @Param({ "0", "1", "2", "4", "8", "16", "32" })
+    public int regions;
+
+    // the simulator, and the partition of the network
+    private Simulator simulator;
+    private TrackPartition partition;
+
+    @Setup
+    public void setUp() {
+        Track track = Networks.ladder(length);
+        Random random = new Random(length);
+        List<TrainPlan> plans = new ArrayList<>();
+        for (int train = 0; train < trains; train++) {
+            int count = 1 + random.nextInt(Math.min(999, length - 1));
+            int from = random.nextInt(length - count + 1);
+            Route route = new Route(Networks.line(track, (train % 2 == 0)
+                    ? "a" : "b", from, count));
+            plans.add(new TrainPlan(route, 200, 10 + random.nextInt(30),
+                    random.nextInt((int) Math.min(horizon, 5000))));
+        }
+        simulator = new Simulator(track, plans, 500, 5);
+        partition = (regions > 0) ? new TrackPartition(track, regions)
+                : null;
+    }
+
+    @Benchmark
+    public SimulationReport run() {
+        return (partition == null) ? simulator.run(horizon) : simulator.run(
+                horizon, partition);
+    }
+}
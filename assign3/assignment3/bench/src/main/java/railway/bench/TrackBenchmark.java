@@ -0,0 +1,93 @@
+package railway.bench;
+
+import org.openjdk.jmh.annotations.*;
+import railway.Branch;
+import railway.CompactTrack;
+import railway.Junction;
+import railway.JunctionBranch;
+import railway.OffHeapSectionStore;
+import railway.Section;
+import railway.Track;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building a track from its sections, and looking up the section
+ * at an end-point, for each of the ways a track can hold its sections.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrackBenchmark {
+
+    // the length of the ladder network
+    @Param({ "1000", "100000" })
+    public int length;
+
+    // how the track holds its sections: in a Track with a HeapSectionStore
+    // or an OffHeapSectionStore, or in a CompactTrack
+    @Param({ "heap", "offHeap", "compact" })
+    public String store;
+
+    // the sections of the network
+    private List<Section> sections;
+    // the track built from the sections
+    private Track track;
+    private CompactTrack compact;
+    // the end-points to look up, in a random order
+    private JunctionBranch[] endPoints;
+    // the index of the next end-point to look up
+    private int next;
+
+    @Setup
+    public void setUp() {
+        sections = Networks.ladderSections(length);
+        track = build();
+        compact = store.equals("compact") ? new CompactTrack(track) : null;
+        List<JunctionBranch> found = new ArrayList<>();
+        for (Section section : sections) {
+            found.add(section.getEndPoint1());
+            found.add(section.getEndPoint2());
+        }
+        Collections.shuffle(found, new Random(length));
+        endPoints = found.toArray(new JunctionBranch[found.size()]);
+    }
+
+    /**
+     * Builds the track, adding every section of the network to it.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object addSections() {
+        return store.equals("compact") ? new CompactTrack(build()) : build();
+    }
+
+    /**
+     * Looks up the section at the next end-point.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Section getTrackSection() {
+        JunctionBranch endPoint = endPoints[next];
+        next = (next + 1 == endPoints.length) ? 0 : next + 1;
+        Junction junction = endPoint.getJunction();
+        Branch branch = endPoint.getBranch();
+        return (compact != null) ? compact.getTrackSection(junction, branch)
+                : track.getTrackSection(junction, branch);
+    }
+
+    /**
+     * Returns a track holding the sections of the network in the store.
+     */
+    private Track build() {
+        Track result = store.equals("offHeap") ? new Track(
+                new OffHeapSectionStore(sections.size())) : new Track();
+        for (Section section : sections) {
+            result.addSection(section);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,343 @@
+package railway;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Reads a track from a text file in the format described by TrackReader.read,
+ * working directly on the bytes of the file rather than scanning each line.
+ * </p>
+ *
+ * <p>
+ * The file is read through a channel into a buffer, and each line is split
+ * into tokens in place. Junctions are looked up by the bytes of their
+ * identifier, so that each junction (and each of its end-points) is only
+ * created once. A line that can't be read simply (e.g. one that is badly
+ * formatted) is handed to TrackReader.readSection, so that the resulting
+ * section, or FormatException, is exactly the one that TrackReader would give.
+ * </p>
+ *
+ * <p>
+ * This only works for files made up of ASCII characters: read returns null as
+ * soon as it finds any other byte, and the file must then be read by decoding
+ * it.
+ * </p>
+ */
+class AsciiTrackReader {
+
+    // the initial size of the buffer that the file is read into
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // the branches, indexed by ordinal, and the bytes of their names
+    private static final Branch[] BRANCHES = Branch.values();
+    private static final byte[][] BRANCH_NAMES = new byte[BRANCHES.length][];
+    static {
+        for (Branch branch : BRANCHES) {
+            BRANCH_NAMES[branch.ordinal()] = branch.name().getBytes(
+                    StandardCharsets.US_ASCII);
+        }
+    }
+
+    // whether ASCII bytes decode to the same characters in the charset that
+    // TrackReader's scanner reads the file with
+    private static final boolean ASCII_COMPATIBLE = asciiCompatible();
+
+    /**
+     * Reads a track from the file named fileName, as described by
+     * TrackReader.read, or returns null if the file contains a byte that is not
+     * an ASCII character.
+     *
+     * @require fileName != null
+     * @throws IOException
+     *             if there is an error reading from the input file
+     * @throws FormatException
+     *             if there is an error with the input format on a line before
+     *             the first byte that is not an ASCII character
+     */
+    static Track read(String fileName) throws IOException, FormatException {
+        if (!ASCII_COMPATIBLE) {
+            return null;
+        }
+        Track track = new Track(); // the track to be returned
+        JunctionTable junctions = new JunctionTable();
+        int lineNumber = 1; // the number of the line being read
+
+        try (FileInputStream in = new FileInputStream(fileName);
+                FileChannel channel = in.getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            boolean endOfFile = false;
+
+            while (!endOfFile) {
+                endOfFile = channel.read(buffer) < 0;
+                buffer.flip();
+
+                // the bytes read so far, and the start of the unread line
+                byte[] bytes = buffer.array();
+                int position = buffer.position();
+                int limit = buffer.limit();
+
+                while (position < limit) {
+                    // the end of the line, not including its terminator
+                    int end = position;
+                    while (end < limit && bytes[end] != '\n'
+                            && bytes[end] != '\r') {
+                        if (bytes[end] < 0) {
+                            return null; // not an ASCII character
+                        }
+                        end++;
+                    }
+                    if (!endOfFile
+                            && (end == limit || (bytes[end] == '\r'
+                                    && end + 1 == limit))) {
+                        // the rest of the line (or a "\r\n" terminator) has
+                        // not been read yet
+                        break;
+                    }
+
+                    Section section = readSection(junctions, lineNumber,
+                            bytes, position, end);
+                    TrackReader.addSection(track, lineNumber, section);
+                    lineNumber++;
+
+                    // skip the line terminator: "\n", "\r" or "\r\n"
+                    if (end < limit) {
+                        end += (bytes[end] == '\r' && end + 1 < limit
+                                && bytes[end + 1] == '\n') ? 2 : 1;
+                    }
+                    position = end;
+                }
+
+                // keep the unread bytes, making room for more if a single
+                // line fills the buffer
+                buffer.position(position);
+                buffer.compact();
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    buffer = ByteBuffer.allocate(2 * buffer.capacity()).put(
+                            buffer);
+                }
+            }
+        }
+        return track;
+    }
+
+    /**
+     * Reads the section from the bytes from index from (inclusive) to index to
+     * (exclusive) of the given array, which hold one line of the file.
+     *
+     * @require junctions != null && bytes != null && 0 <= from <= to <=
+     *          bytes.length, and the bytes of the line are ASCII characters
+     *          other than '\n' and '\r'
+     * @throws FormatException
+     *             if the line is not of the form described by
+     *             TrackReader.read, with the same message as the exception
+     *             thrown by TrackReader.readSection
+     */
+    private static Section readSection(JunctionTable junctions,
+            int lineNumber, byte[] bytes, int from, int to)
+            throws FormatException {
+        // the start and end of each of the five tokens on the line
+        int[] starts = new int[5];
+        int[] ends = new int[5];
+        int tokens = 0; // the number of tokens found
+
+        int i = from;
+        while (true) {
+            while (i < to && isWhitespace(bytes[i])) {
+                i++;
+            }
+            if (i == to) {
+                break;
+            }
+            if (tokens == starts.length) {
+                // additional information at the end of the line
+                return slowReadSection(lineNumber, bytes, from, to);
+            }
+            starts[tokens] = i;
+            while (i < to && !isWhitespace(bytes[i])) {
+                i++;
+            }
+            ends[tokens] = i;
+            tokens++;
+        }
+
+        int length = parseLength(bytes, starts[0], ends[0]);
+        Branch branch1 = parseBranch(bytes, starts[2], ends[2]);
+        Branch branch2 = parseBranch(bytes, starts[4], ends[4]);
+        if (tokens < starts.length || length <= 0 || branch1 == null
+                || branch2 == null) {
+            return slowReadSection(lineNumber, bytes, from, to);
+        }
+
+        JunctionBranch endPoint1 = junctions.endPoint(bytes, starts[1],
+                ends[1], branch1);
+        JunctionBranch endPoint2 = junctions.endPoint(bytes, starts[3],
+                ends[3], branch2);
+        if (endPoint1 == endPoint2) {
+            // the end-points of the section are not distinct
+            return slowReadSection(lineNumber, bytes, from, to);
+        }
+        return new Section(length, endPoint1, endPoint2);
+    }
+
+    /**
+     * Reads the section from the line in the same way as TrackReader.
+     */
+    private static Section slowReadSection(int lineNumber, byte[] bytes,
+            int from, int to) throws FormatException {
+        return TrackReader.readSection(lineNumber, new String(bytes, from, to
+                - from, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Returns the positive integer written in decimal digits between index
+     * from (inclusive) and index to (exclusive), or 0 if the token isn't made
+     * up of between one and nine digits (and may need to be read by a
+     * scanner).
+     */
+    private static int parseLength(byte[] bytes, int from, int to) {
+        if (to - from < 1 || to - from > 9) {
+            return 0;
+        }
+        int result = 0; // the value of the digits read so far
+        for (int i = from; i < to; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return 0;
+            }
+            result = 10 * result + (bytes[i] - '0');
+        }
+        return result;
+    }
+
+    /**
+     * Returns the branch named between index from (inclusive) and index to
+     * (exclusive), or null if there is no such branch.
+     */
+    private static Branch parseBranch(byte[] bytes, int from, int to) {
+        for (Branch branch : BRANCHES) {
+            byte[] name = BRANCH_NAMES[branch.ordinal()];
+            if (equal(name, bytes, from, to)) {
+                return branch;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the byte is an ASCII character that is a white space as
+     * defined by Character.isWhitespace.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+    }
+
+    /**
+     * Returns true if the array key holds the same bytes as those of the array
+     * bytes from index from (inclusive) to index to (exclusive).
+     */
+    private static boolean equal(byte[] key, byte[] bytes, int from, int to) {
+        if (key.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != bytes[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if each ASCII character is decoded from the same byte by the
+     * default charset, which FileReader uses.
+     */
+    private static boolean asciiCompatible() {
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return new String(ascii, Charset.defaultCharset()).equals(
+                new String(ascii, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * A hash table from the bytes of junction identifiers to the end-points of
+     * those junctions, using open addressing with linear probing.
+     */
+    private static class JunctionTable {
+
+        // the identifier of the junction in each slot, or null if empty
+        private byte[][] keys = new byte[64][];
+        // the end-points of the junction in each slot, indexed by branch
+        private JunctionBranch[][] endPoints = new JunctionBranch[64][];
+        // the number of junctions in the table
+        private int size = 0;
+
+        /**
+         * Returns the end-point with the given branch, of the junction whose
+         * identifier is made up of the bytes from index from (inclusive) to
+         * index to (exclusive), creating the junction if it is new.
+         */
+        JunctionBranch endPoint(byte[] bytes, int from, int to, Branch branch) {
+            int slot = find(keys, bytes, from, to);
+            if (keys[slot] == null) {
+                byte[] key = Arrays.copyOfRange(bytes, from, to);
+                Junction junction = Junction.valueOf(new String(key,
+                        StandardCharsets.US_ASCII));
+                keys[slot] = key;
+                endPoints[slot] = new JunctionBranch[BRANCHES.length];
+                for (Branch b : BRANCHES) {
+                    endPoints[slot][b.ordinal()] = JunctionBranch.valueOf(
+                            junction, b);
+                }
+                size++;
+                if (2 * size > keys.length) {
+                    grow();
+                    slot = find(keys, key, 0, key.length);
+                }
+            }
+            return endPoints[slot][branch.ordinal()];
+        }
+
+        /**
+         * Doubles the number of slots in the table.
+         */
+        private void grow() {
+            byte[][] oldKeys = keys;
+            JunctionBranch[][] oldEndPoints = endPoints;
+            keys = new byte[2 * oldKeys.length][];
+            endPoints = new JunctionBranch[2 * oldKeys.length][];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = find(keys, oldKeys[i], 0, oldKeys[i].length);
+                    keys[slot] = oldKeys[i];
+                    endPoints[slot] = oldEndPoints[i];
+                }
+            }
+        }
+
+        /**
+         * Returns the slot of the given table that holds the given identifier,
+         * or the empty slot where it belongs if it is not in the table.
+         */
+        private static int find(byte[][] table, byte[] bytes, int from, int to) {
+            int hash = 0; // the hash of the identifier
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            hash ^= (hash >>> 16);
+
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            while (table[slot] != null && !equal(table[slot], bytes, from, to)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package railway;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Provides a method to read a track from a binary file written by
+ * BinaryTrackWriter.
+ */
+public class BinaryTrackReader {
+
+    /**
+     * <p>
+     * Reads a binary file named fileName, in the format written by
+     * BinaryTrackWriter.write, and returns a track containing each of the
+     * sections in the file.
+     * </p>
+     *
+     * <p>
+     * The file is mapped into memory rather than parsed as text, and each
+     * junction (and each of its end-points) is created only once, so large
+     * tracks can be loaded quickly.
+     * </p>
+     *
+     * <p>
+     * The method throws an IOException if there is an input error with the
+     * input file (e.g. the file with name given by input parameter fileName
+     * does not exist); otherwise it throws a FormatException if the file is
+     * not a binary track file, or it is truncated, or it is too large to be
+     * mapped into memory (2 GiB or more), or a section record is
+     * invalid (this includes the case where there is a duplicate section, and
+     * the case where two or more sections have a common end-point); otherwise
+     * it returns a track that contains each of the sections described in the
+     * file (and no others).
+     * </p>
+     *
+     * @param fileName
+     *            the file to read from
+     * @return a track containing the sections from the file
+     * @throws IOException
+     *             if there is an error reading from the input file
+     * @throws FormatException
+     *             if there is an error with the format of the file. The
+     *             message of the exception describes the problem, including
+     *             the section record where the problem was detected.
+     */
+    public static Track read(String fileName) throws IOException,
+            FormatException {
+        try (FileInputStream in = new FileInputStream(fileName);
+                FileChannel channel = in.getChannel()) {
+            // a single mapping can hold at most Integer.MAX_VALUE bytes
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new FormatException("The file is too large.");
+            }
+            // the contents of the file
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return read(buffer);
+            } catch (BufferUnderflowException e) {
+                throw new FormatException("The file is truncated.");
+            }
+        }
+    }
+
+    /**
+     * Reads the track from the contents of a binary track file.
+     *
+     * @require buffer != null
+     * @throws BufferUnderflowException
+     *             if the contents end before the last section record
+     */
+    private static Track read(MappedByteBuffer buffer) throws FormatException {
+        if (buffer.remaining() < 4
+                || buffer.getInt() != BinaryTrackWriter.MAGIC) {
+            throw new FormatException("The file is not a binary track file.");
+        }
+        int junctionCount = buffer.getInt();
+        int sectionCount = buffer.getInt();
+        if (junctionCount < 0 || sectionCount < 0) {
+            throw new FormatException("The file is not a binary track file.");
+        }
+        // each entry of the junction table starts with a four-byte size, so
+        // a count that the rest of the file cannot hold is rejected before
+        // the table is allocated
+        if ((long) junctionCount * 4 > buffer.remaining()) {
+            throw new FormatException("The file is truncated.");
+        }
+
+        // the end-points of each junction in the table, indexed by branch
+        Branch[] branches = Branch.values();
+        JunctionBranch[][] endPoints = new JunctionBranch[junctionCount][];
+        for (int i = 0; i < junctionCount; i++) {
+            int size = buffer.getInt(); // the size of the identifier
+            if (size < 0 || size > buffer.remaining()) {
+                throw new FormatException("The file is truncated.");
+            }
+            byte[] identifier = new byte[size];
+            buffer.get(identifier);
+            Junction junction = Junction.valueOf(new String(identifier,
+                    StandardCharsets.UTF_8));
+            endPoints[i] = new JunctionBranch[branches.length];
+            for (Branch branch : branches) {
+                endPoints[i][branch.ordinal()] = JunctionBranch.valueOf(
+                        junction, branch);
+            }
+        }
+
+        if ((long) sectionCount * BinaryTrackWriter.SECTION_RECORD_SIZE > buffer
+                .remaining()) {
+            throw new FormatException("The file is truncated.");
+        }
+        Track track = new Track(); // the track to be returned
+        for (int record = 0; record < sectionCount; record++) {
+            int length = buffer.getInt();
+            int junction1 = buffer.getInt();
+            int junction2 = buffer.getInt();
+            int branch1 = buffer.get();
+            int branch2 = buffer.get();
+            buffer.getShort(); // padding
+
+            if (length <= 0) {
+                throw new FormatException(errorMessage(record,
+                        "length is less than or equal to zero"));
+            }
+            if (junction1 < 0 || junction1 >= junctionCount || junction2 < 0
+                    || junction2 >= junctionCount) {
+                throw new FormatException(errorMessage(record,
+                        "invalid junction number"));
+            }
+            if (branch1 < 0 || branch1 >= branches.length || branch2 < 0
+                    || branch2 >= branches.length) {
+                throw new FormatException(errorMessage(record,
+                        "invalid branch"));
+            }
+            JunctionBranch endPoint1 = endPoints[junction1][branch1];
+            JunctionBranch endPoint2 = endPoints[junction2][branch2];
+            if (endPoint1.equals(endPoint2)) {
+                throw new FormatException(errorMessage(record,
+                        "the end-points of a section must be distinct"));
+            }
+
+            // the section described by the record
+            Section section = new Section(length, endPoint1, endPoint2);
+            if (track.contains(section)) {
+                throw new FormatException(errorMessage(record,
+                        "duplicate section detected: " + section));
+            }
+            try {
+                track.addSection(section);
+            } catch (InvalidTrackException e) {
+                throw new FormatException(errorMessage(record,
+                        "cannot add section " + section + " to the track: "
+                                + e.getMessage()));
+            }
+        }
+        return track;
+    }
+
+    /**
+     * Returns an error message for a FormatException that contains the given
+     * record number and message.
+     *
+     * @require message != null
+     */
+    private static String errorMessage(int record, String message) {
+        return "Error in section record " + record + ": " + message;
+    }
+
+}
@@ -0,0 +1,103 @@
+package railway;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Provides a method to write a track to a binary file, which can be read back
+ * by BinaryTrackReader much faster than a text file can be read by
+ * TrackReader.
+ */
+public class BinaryTrackWriter {
+
+    // the first four bytes of a binary track file: "TRK" and a version number
+    static final int MAGIC = 0x54524B01;
+    // the number of bytes in each section record
+    static final int SECTION_RECORD_SIZE = 16;
+
+    /**
+     * <p>
+     * Writes the sections of the given track to a binary file named fileName,
+     * replacing the file if it already exists.
+     * </p>
+     *
+     * <p>
+     * The file consists of a header, a table of the identifiers of the
+     * junctions of the track, and a record for each section of the track. All
+     * integers are written as four bytes in big-endian order.
+     *
+     * The header is the integer MAGIC, followed by the number of junctions and
+     * the number of sections.
+     *
+     * Each entry of the junction table is the number of bytes in the UTF-8
+     * encoding of the junction's identifier, followed by those bytes. The
+     * junctions are numbered from zero in the order they appear in the table.
+     *
+     * Each section record has a fixed width of SECTION_RECORD_SIZE bytes: the
+     * length of the section, the number of the junction of its first
+     * end-point, the number of the junction of its second end-point, the
+     * ordinal of the branch of its first end-point, the ordinal of the branch
+     * of its second end-point, and two bytes of zero padding.
+     * </p>
+     *
+     * <p>
+     * The text format read by TrackReader remains the format for exchanging
+     * tracks; this format is only intended to make loading a large track
+     * quick.
+     * </p>
+     *
+     * @param track
+     *            the track to write
+     * @param fileName
+     *            the file to write to
+     * @throws NullPointerException
+     *             if either parameter is null
+     * @throws IOException
+     *             if there is an error writing to the file
+     */
+    public static void write(Track track, String fileName)
+            throws NullPointerException, IOException {
+        if (track == null || fileName == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+
+        // the number of each junction, in the order they are first found
+        Map<Junction, Integer> junctions = new LinkedHashMap<>();
+        // the sections of the track
+        List<Section> sections = new ArrayList<>();
+        for (Section section : track) {
+            sections.add(section);
+            junctions.putIfAbsent(section.getEndPoint1().getJunction(),
+                    junctions.size());
+            junctions.putIfAbsent(section.getEndPoint2().getJunction(),
+                    junctions.size());
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(junctions.size());
+            out.writeInt(sections.size());
+
+            for (Junction junction : junctions.keySet()) {
+                // the encoded identifier of the junction
+                byte[] identifier = junction.getJunctionId().getBytes(
+                        StandardCharsets.UTF_8);
+                out.writeInt(identifier.length);
+                out.write(identifier);
+            }
+
+            for (Section section : sections) {
+                JunctionBranch endPoint1 = section.getEndPoint1();
+                JunctionBranch endPoint2 = section.getEndPoint2();
+                out.writeInt(section.getLength());
+                out.writeInt(junctions.get(endPoint1.getJunction()));
+                out.writeInt(junctions.get(endPoint2.getJunction()));
+                out.writeByte(endPoint1.getBranch().ordinal());
+                out.writeByte(endPoint2.getBranch().ordinal());
+                out.writeShort(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package railway;
+
+import java.util.*;
+
+/**
+ * <p>
+ * An immutable representation of a railway track, that stores the sections of
+ * the track in arrays of primitive values rather than as objects, so that very
+ * large tracks can be held in memory.
+ * </p>
+ *
+ * <p>
+ * The junctions of the track are numbered from zero, and each end-point is
+ * encoded as an integer: the number of its junction times the number of
+ * branches, plus the ordinal of its branch. For each section there is an
+ * entry in an array of lengths and in two arrays of encoded end-points. The
+ * sections connected to each junction are listed in a compressed sparse row
+ * (CSR) adjacency array.
+ * </p>
+ *
+ * <p>
+ * A compact track answers the same queries as the Track it was created from.
+ * Sections (and their end-points) are only created as objects when they are
+ * returned by a query.
+ * </p>
+ */
+public class CompactTrack implements Iterable<Section> {
+
+    // the branches, indexed by ordinal
+    private static final Branch[] BRANCHES = Branch.values();
+    // the number of end-points of each junction
+    private static final int BRANCH_COUNT = BRANCHES.length;
+
+    // the junctions of the track, indexed by their number
+    private final Junction[] junctions;
+    // a hash table from the id of each junction of the track to its number,
+    // using open addressing with linear probing: each slot holds an id (or -1
+    // if it is empty) in junctionIds and its number in junctionNumbers
+    private final int[] junctionIds;
+    private final int[] junctionNumbers;
+
+    // the length and encoded end-points of each section
+    private final int[] lengths;
+    private final int[] endPoints1;
+    private final int[] endPoints2;
+
+    // the sections connected to junction j are adjacentSections[k] for
+    // adjacencyOffsets[j] <= k < adjacencyOffsets[j + 1], in branch order
+    private final int[] adjacencyOffsets;
+    private final int[] adjacentSections;
+
+    // an unmodifiable view of the junctions of the track
+    private final Set<Junction> junctionSet;
+
+    /*
+     * invariant: all arrays are non-null; lengths, endPoints1 and endPoints2
+     * have the same length; each length is positive; each encoded end-point
+     * is between 0 and BRANCH_COUNT * junctions.length (exclusive); no two
+     * sections share an end-point; the table of junction ids maps
+     * junctions[j].getId() to j for each junction number j, has no other
+     * entries, and is at most half full; and adjacencyOffsets and
+     * adjacentSections list, for each junction, the sections with an end-point
+     * at that junction.
+     */
+
+    /**
+     * Creates a compact track that contains the same sections as the given
+     * track.
+     *
+     * @param track
+     *            the track to copy
+     * @throws NullPointerException
+     *             if track is null
+     */
+    public CompactTrack(Track track) throws NullPointerException {
+        if (track == null) {
+            throw new NullPointerException("The track cannot be null.");
+        }
+
+        // count the sections
+        int sectionCount = 0;
+        for (Section section : track) {
+            sectionCount++;
+        }
+
+        lengths = new int[sectionCount];
+        endPoints1 = new int[sectionCount];
+        endPoints2 = new int[sectionCount];
+
+        // the junctions found so far, in the order they were numbered, and a
+        // table of their numbers with room for two junctions per section
+        List<Junction> found = new ArrayList<>();
+        int[] foundIds = emptyTable(2 * sectionCount);
+        int[] foundNumbers = new int[foundIds.length];
+        int index = 0; // the index of the section being copied
+        for (Section section : track) {
+            lengths[index] = section.getLength();
+            endPoints1[index] = number(section.getEndPoint1(), found,
+                    foundIds, foundNumbers);
+            endPoints2[index] = number(section.getEndPoint2(), found,
+                    foundIds, foundNumbers);
+            index++;
+        }
+        junctions = found.toArray(new Junction[found.size()]);
+
+        // a table of the junction numbers sized for the junctions found
+        junctionIds = emptyTable(junctions.length);
+        junctionNumbers = new int[junctionIds.length];
+        for (int junction = 0; junction < junctions.length; junction++) {
+            int slot = slotOf(junctionIds, junctions[junction].getId());
+            junctionIds[slot] = junctions[junction].getId();
+            junctionNumbers[slot] = junction;
+        }
+
+        // the section with each encoded end-point, or -1 if there is none
+        int[] sectionsByEndPoint = new int[BRANCH_COUNT * junctions.length];
+        Arrays.fill(sectionsByEndPoint, -1);
+        for (int section = 0; section < sectionCount; section++) {
+            sectionsByEndPoint[endPoints1[section]] = section;
+            sectionsByEndPoint[endPoints2[section]] = section;
+        }
+
+        // list the sections in order of their encoded end-points, which
+        // orders them by junction, and then by branch
+        adjacencyOffsets = new int[junctions.length + 1];
+        adjacentSections = new int[2 * sectionCount];
+        int next = 0; // the next free entry of adjacentSections
+        for (int endPoint = 0; endPoint < sectionsByEndPoint.length;
+                endPoint++) {
+            if (sectionsByEndPoint[endPoint] >= 0) {
+                adjacentSections[next++] = sectionsByEndPoint[endPoint];
+            }
+            if (endPoint % BRANCH_COUNT == BRANCH_COUNT - 1) {
+                adjacencyOffsets[endPoint / BRANCH_COUNT + 1] = next;
+            }
+        }
+
+        junctionSet = new JunctionSet();
+    }
+
+    /**
+     * Returns the number of sections in the track.
+     *
+     * @return the number of sections in the track
+     */
+    public int size() {
+        return lengths.length;
+    }
+
+    /**
+     * Returns true if and only if the track contains a section that is
+     * equivalent to the given section.
+     *
+     * @param section
+     *            the section whose presence in the track is to be tested
+     * @return true if the track contains the section, and false otherwise
+     */
+    public boolean contains(Section section) {
+        if (section == null) {
+            return false;
+        }
+        int index = sectionAt(encode(section.getEndPoint1()));
+        return index >= 0 && lengths[index] == section.getLength()
+                && hasEndPoint(index, encode(section.getEndPoint2()));
+    }
+
+    /**
+     * Returns an unmodifiable view of the junctions in the track that are
+     * connected to at least one section of the track.
+     *
+     * @return the set of junctions in the track
+     */
+    public Set<Junction> getJunctions() {
+        return junctionSet;
+    }
+
+    /**
+     * If there is a section on the track that is connected to the given
+     * junction along the given branch, then that section is returned,
+     * otherwise null is returned.
+     *
+     * @param junction
+     *            the junction of the end-point
+     * @param branch
+     *            the branch of the end-point
+     * @return the section on the track connected to junction along branch, or
+     *         null if there is no such section.
+     */
+    public Section getTrackSection(Junction junction, Branch branch) {
+        if (junction == null || branch == null) {
+            return null;
+        }
+        int index = sectionAt(encode(JunctionBranch.valueOf(junction,
+                branch)));
+        return index < 0 ? null : section(index);
+    }
+
+    /**
+     * Returns an iterator over the sections in the track. The sections are
+     * created as they are iterated over.
+     */
+    @Override
+    public Iterator<Section> iterator() {
+        return new Iterator<Section>() {
+
+            // the index of the next section to return
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < lengths.length;
+            }
+
+            @Override
+            public Section next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return section(index++);
+            }
+        };
+    }
+
+    /**
+     * Determines whether this class is internally consistent (i.e. it satisfies
+     * its class invariant).
+     *
+     * This method is only intended for testing purposes.
+     *
+     * @return true if this class is internally consistent, and false otherwise.
+     */
+    public boolean checkInvariant() {
+        if (junctions == null || junctionIds == null
+                || junctionNumbers == null || lengths == null
+                || endPoints1 == null || endPoints2 == null
+                || adjacencyOffsets == null || adjacentSections == null
+                || junctionSet == null) {
+            return false;
+        }
+        if (endPoints1.length != lengths.length
+                || endPoints2.length != lengths.length
+                || adjacencyOffsets.length != junctions.length + 1
+                || adjacentSections.length != 2 * lengths.length) {
+            return false;
+        }
+        if (Integer.bitCount(junctionIds.length) != 1
+                || junctionNumbers.length != junctionIds.length
+                || 2 * junctions.length > junctionIds.length) {
+            return false;
+        }
+        int entries = 0; // the number of non-empty slots of the table
+        for (int id : junctionIds) {
+            if (id >= 0) {
+                entries++;
+            }
+        }
+        for (int junction = 0; junction < junctions.length; junction++) {
+            if (junctions[junction] == null || number(junctions[junction]
+                    .getId()) != junction) {
+                return false;
+            }
+        }
+        if (entries != junctions.length) {
+            return false;
+        }
+
+        // each end-point belongs to at most one section
+        Set<Integer> endPoints = new HashSet<>();
+        for (int section = 0; section < lengths.length; section++) {
+            if (lengths[section] <= 0 || !validEndPoint(endPoints1[section])
+                    || !validEndPoint(endPoints2[section])
+                    || endPoints1[section] == endPoints2[section]
+                    || !endPoints.add(endPoints1[section])
+                    || !endPoints.add(endPoints2[section])) {
+                return false;
+            }
+        }
+
+        // the adjacency lists the sections at each junction
+        for (int junction = 0; junction < junctions.length; junction++) {
+            int previousBranch = -1;
+            int end = adjacencyOffsets[junction + 1];
+            for (int k = adjacencyOffsets[junction]; k < end; k++) {
+                int endPoint = endPointAt(adjacentSections[k], junction,
+                        previousBranch + 1);
+                if (endPoint < 0) {
+                    return false;
+                }
+                previousBranch = endPoint % BRANCH_COUNT;
+            }
+        }
+        return adjacencyOffsets[0] == 0
+                && adjacencyOffsets[junctions.length]
+                        == adjacentSections.length;
+    }
+
+    /**
+     * Returns the encoded form of the given end-point, numbering its junction
+     * if it hasn't been numbered yet, in the given table of the numbers of the
+     * junctions found so far.
+     *
+     * @require endPoint != null && the table has room for the junction
+     */
+    private static int number(JunctionBranch endPoint, List<Junction> found,
+            int[] ids, int[] numbers) {
+        Junction junction = endPoint.getJunction();
+        int slot = slotOf(ids, junction.getId());
+        if (ids[slot] < 0) {
+            ids[slot] = junction.getId();
+            numbers[slot] = found.size();
+            found.add(junction);
+        }
+        return BRANCH_COUNT * numbers[slot] + endPoint.getBranch().ordinal();
+    }
+
+    /**
+     * Returns the number of the junction with the given id, or -1 if it is
+     * not on the track.
+     */
+    private int number(int id) {
+        int slot = slotOf(junctionIds, id);
+        return junctionIds[slot] < 0 ? -1 : junctionNumbers[slot];
+    }
+
+    /**
+     * Returns the encoded form of the given end-point, or -1 if its junction
+     * is not on the track.
+     *
+     * @require endPoint != null
+     */
+    private int encode(JunctionBranch endPoint) {
+        int number = number(endPoint.getJunction().getId());
+        if (number < 0) {
+            return -1;
+        }
+        return BRANCH_COUNT * number + endPoint.getBranch().ordinal();
+    }
+
+    /**
+     * Returns an empty table of junction ids that can hold the given number of
+     * ids while staying at most half full.
+     */
+    private static int[] emptyTable(int entries) {
+        int[] ids = new int[Integer.highestOneBit(Math.max(2 * entries, 2)
+                - 1) << 1];
+        Arrays.fill(ids, -1);
+        return ids;
+    }
+
+    /**
+     * Returns the slot of the given table of junction ids where the given id
+     * is, or the empty slot where it would be added.
+     *
+     * @require the table has an empty slot
+     */
+    private static int slotOf(int[] ids, int id) {
+        int mask = ids.length - 1;
+        int hash = id * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (ids[slot] >= 0 && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the index of the section with the given encoded end-point, or -1
+     * if there is no such section.
+     */
+    private int sectionAt(int endPoint) {
+        if (endPoint < 0) {
+            return -1;
+        }
+        int junction = endPoint / BRANCH_COUNT;
+        int end = adjacencyOffsets[junction + 1];
+        for (int k = adjacencyOffsets[junction]; k < end; k++) {
+            if (hasEndPoint(adjacentSections[k], endPoint)) {
+                return adjacentSections[k];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the section with the given index has the given encoded
+     * end-point.
+     */
+    private boolean hasEndPoint(int section, int endPoint) {
+        return endPoints1[section] == endPoint
+                || endPoints2[section] == endPoint;
+    }
+
+    /**
+     * Returns the encoded end-point of the given section at the given junction
+     * with the lowest branch ordinal that is at least minimumBranch, or -1 if
+     * there is no such end-point.
+     */
+    private int endPointAt(int section, int junction, int minimumBranch) {
+        int result = -1; // the end-point found so far
+        if (atJunction(endPoints1[section], junction, minimumBranch)) {
+            result = endPoints1[section];
+        }
+        if (atJunction(endPoints2[section], junction, minimumBranch)
+                && (result < 0 || endPoints2[section] < result)) {
+            result = endPoints2[section];
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if the encoded end-point is at the given junction, on a
+     * branch whose ordinal is at least minimumBranch.
+     */
+    private static boolean atJunction(int endPoint, int junction,
+            int minimumBranch) {
+        return endPoint / BRANCH_COUNT == junction
+                && endPoint % BRANCH_COUNT >= minimumBranch;
+    }
+
+    /**
+     * Returns true if the given value could be an encoded end-point.
+     */
+    private boolean validEndPoint(int endPoint) {
+        return endPoint >= 0 && endPoint < BRANCH_COUNT * junctions.length;
+    }
+
+    /**
+     * Returns the section with the given index.
+     */
+    private Section section(int index) {
+        return new Section(lengths[index], endPoint(endPoints1[index]),
+                endPoint(endPoints2[index]));
+    }
+
+    /**
+     * Returns the end-point with the given encoding.
+     */
+    private JunctionBranch endPoint(int endPoint) {
+        return JunctionBranch.valueOf(junctions[endPoint / BRANCH_COUNT],
+                BRANCHES[endPoint % BRANCH_COUNT]);
+    }
+
+    /**
+     * An unmodifiable view of the junctions of the track.
+     */
+    private class JunctionSet extends AbstractSet<Junction> {
+
+        @Override
+        public boolean contains(Object object) {
+            if (!(object instanceof Junction)) {
+                return false;
+            }
+            return number(((Junction) object).getId()) >= 0;
+        }
+
+        @Override
+        public Iterator<Junction> iterator() {
+            return Collections.unmodifiableList(Arrays.asList(junctions))
+                    .iterator();
+        }
+
+        @Override
+        public int size() {
+            return junctions.length;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package railway;
+
+import java.util.*;
+
+/**
+ * A section store that keeps the sections of a track in hash tables on the
+ * Java heap. This is the store used by a Track unless another one is given.
+ */
+public class HeapSectionStore implements SectionStore {
+
+    // the sections in the store
+    private Set<Section> sections;
+    // the section with each end-point
+    private Map<JunctionBranch, Section> sectionsByEndPoint;
+    // the number of end-points of the sections at each junction
+    private Map<Junction, Integer> junctionDegrees;
+    // an unmodifiable view of the keys of junctionDegrees
+    private Set<Junction> junctions;
+
+    /*
+     * invariant: sections != null && !sections.contains(null) &&
+     * sectionsByEndPoint maps each end-point of the sections (and no others)
+     * to its section && junctionDegrees maps each junction of those
+     * end-points (and no others) to the number of them at the junction &&
+     * junctions is an unmodifiable view of junctionDegrees.keySet()
+     */
+
+    /**
+     * Creates a new store with no sections.
+     */
+    public HeapSectionStore() {
+        sections = new HashSet<>();
+        sectionsByEndPoint = new HashMap<>();
+        junctionDegrees = new HashMap<>();
+        junctions = Collections.unmodifiableSet(junctionDegrees.keySet());
+    }
+
+    @Override
+    public int size() {
+        return sections.size();
+    }
+
+    @Override
+    public boolean contains(Section section) {
+        return sections.contains(section);
+    }
+
+    @Override
+    public Section get(JunctionBranch endPoint) {
+        return sectionsByEndPoint.get(endPoint);
+    }
+
+    @Override
+    public void add(Section section) {
+        sections.add(section);
+        addEndPoint(section, section.getEndPoint1());
+        addEndPoint(section, section.getEndPoint2());
+    }
+
+    @Override
+    public void remove(Section section) {
+        sections.remove(section);
+        removeEndPoint(section.getEndPoint1());
+        removeEndPoint(section.getEndPoint2());
+    }
+
+    @Override
+    public Set<Junction> junctions() {
+        return junctions;
+    }
+
+    /**
+     * Returns an iterator over the sections in the store, in no particular
+     * order.
+     */
+    @Override
+    public Iterator<Section> iterator() {
+        return sections.iterator();
+    }
+
+    /**
+     * Determines whether this class is internally consistent (i.e. it satisfies
+     * its class invariant).
+     *
+     * This method is only intended for testing purposes.
+     *
+     * @return true if this class is internally consistent, and false otherwise.
+     */
+    public boolean checkInvariant() {
+        if (sections == null || sectionsByEndPoint == null
+                || junctionDegrees == null || junctions == null
+                || sections.contains(null)
+                || sectionsByEndPoint.size() != 2 * sections.size()) {
+            return false;
+        }
+        // the expected number of end-points at each junction
+        Map<Junction, Integer> degrees = new HashMap<>();
+        for (Section section : sections) {
+            for (JunctionBranch endPoint : Arrays.asList(
+                    section.getEndPoint1(), section.getEndPoint2())) {
+                if (!section.equals(sectionsByEndPoint.get(endPoint))) {
+                    return false;
+                }
+                degrees.merge(endPoint.getJunction(), 1, Integer::sum);
+            }
+        }
+        return degrees.equals(junctionDegrees)
+                && junctions.equals(junctionDegrees.keySet());
+    }
+
+    /**
+     * Records the given end-point of a section that has been added.
+     */
+    private void addEndPoint(Section section, JunctionBranch endPoint) {
+        sectionsByEndPoint.put(endPoint, section);
+        junctionDegrees.merge(endPoint.getJunction(), 1, Integer::sum);
+    }
+
+    /**
+     * Forgets the given end-point of a section that has been removed.
+     */
+    private void removeEndPoint(JunctionBranch endPoint) {
+        sectionsByEndPoint.remove(endPoint);
+        // the number of end-points left at the junction, or null if none
+        junctionDegrees.computeIfPresent(endPoint.getJunction(),
+                (junction, degree) -> degree == 1 ? null : degree - 1);
+    }
+}
@@ -1,5 +1,10 @@
 package railway;
 
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * <p>
  * An immutable class representing a junction on a railway track.
@@ -11,14 +16,40 @@ package railway;
  * can have at most one branch of each type. (I.e. a junction may have not have
  * two branches of type Branch.FACING.)
  * </p>
+ * 
+ * <p>
+ * Each junction identifier is given a unique integer id the first time a
+ * junction with that identifier is created. The ids are allocated densely
+ * from zero, so they can be used to index arrays, and two junctions are equal
+ * if and only if their ids are equal. The method valueOf returns the canonical
+ * junction for an identifier, which can be shared instead of creating an
+ * equivalent junction.
+ * </p>
  */
 public class Junction {
 
+    // the canonical junction for each identifier that has been given an id
+    private static final ConcurrentMap<String, Junction> registry =
+            new ConcurrentHashMap<>();
+    // the id to be given to the next new identifier
+    private static final AtomicInteger nextId = new AtomicInteger();
+    // the canonical junctions indexed by id (only replaced or written to
+    // while holding the class lock)
+    private static volatile Junction[] canonicalById = new Junction[16];
+
     // the identifier of this junction
     private String junctionIdentifier;
+    // the unique id of junctionIdentifier
+    private int id;
+    // the canonical junction with the same identifier (possibly this one)
+    private Junction canonical;
+    // the end-points of this junction indexed by branch ordinal, if canonical
+    private JunctionBranch[] endPoints;
 
     /*
-     * invariant: junctionIdentifier != null
+     * invariant: junctionIdentifier != null && canonical != null &&
+     * canonical.junctionIdentifier.equals(junctionIdentifier) && id ==
+     * canonical.id && (canonical == this) == (endPoints != null)
      */
 
     /**
@@ -35,6 +66,74 @@ public class Junction {
                     "The parameter junctionIdentifier cannot be null.");
         }
         this.junctionIdentifier = junctionIdentifier;
+        this.canonical = valueOf(junctionIdentifier);
+        this.id = canonical.id;
+    }
+
+    /**
+     * Creates the canonical junction for the given identifier, with the given
+     * id.
+     */
+    private Junction(String junctionIdentifier, int id) {
+        this.junctionIdentifier = junctionIdentifier;
+        this.id = id;
+        this.canonical = this;
+        this.endPoints = new JunctionBranch[Branch.values().length];
+        for (Branch branch : Branch.values()) {
+            endPoints[branch.ordinal()] = new JunctionBranch(this, branch);
+        }
+        register(this);
+    }
+
+    /**
+     * Records the canonical junction under its id.
+     */
+    private static synchronized void register(Junction junction) {
+        if (junction.id >= canonicalById.length) {
+            canonicalById = Arrays.copyOf(canonicalById, Math.max(
+                    2 * canonicalById.length, junction.id + 1));
+        }
+        canonicalById[junction.id] = junction;
+    }
+
+    /**
+     * Returns the canonical junction with the given id, or null if no
+     * identifier has been given that id.
+     * 
+     * A junction is registered before it is published by valueOf, so the id
+     * of any junction that the caller has seen can be found without locking.
+     */
+    static Junction byId(int id) {
+        // the current table of canonical junctions
+        Junction[] table = canonicalById;
+        return (id >= 0 && id < table.length) ? table[id] : null;
+    }
+
+    /**
+     * Returns the canonical junction with the given identifier, creating it
+     * (and giving the identifier an id) if there is no junction with that
+     * identifier yet.
+     * 
+     * @param junctionIdentifier
+     *            the identifier of the junction
+     * @throws NullPointerException
+     *             if junctionIdentifier is null
+     * @return the canonical junction with the given identifier
+     */
+    public static Junction valueOf(String junctionIdentifier)
+            throws NullPointerException {
+        if (junctionIdentifier == null) {
+            throw new NullPointerException(
+                    "The parameter junctionIdentifier cannot be null.");
+        }
+        // the canonical junction, if the identifier already has one
+        Junction junction = registry.get(junctionIdentifier);
+        if (junction == null) {
+            junction = registry.computeIfAbsent(junctionIdentifier,
+                    identifier -> new Junction(identifier, nextId
+                            .getAndIncrement()));
+        }
+        return junction;
     }
 
     /**
@@ -46,6 +145,25 @@ public class Junction {
         return junctionIdentifier;
     }
 
+    /**
+     * Returns the unique integer id of the identifier of this junction. Ids
+     * are allocated from zero, in the order that identifiers are first used.
+     * 
+     * @return the id of the junction
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the canonical end-point of this junction with the given branch.
+     * 
+     * @require branch != null
+     */
+    JunctionBranch endPoint(Branch branch) {
+        return canonical.endPoints[branch.ordinal()];
+    }
+
     @Override
     public String toString() {
         return junctionIdentifier;
@@ -61,7 +179,8 @@ public class Junction {
             return false;
         }
         Junction other = (Junction) object; // the junction to compare
-        return (this.junctionIdentifier.equals(other.junctionIdentifier));
+        // equivalent identifiers have the same id
+        return this.id == other.id;
     }
 
     @Override
@@ -78,7 +197,10 @@ public class Junction {
      * @return true if this class is internally consistent, and false otherwise.
      */
     public boolean checkInvariant() {
-        return (junctionIdentifier != null);
+        return junctionIdentifier != null && canonical != null
+                && canonical.junctionIdentifier.equals(junctionIdentifier)
+                && id == canonical.id
+                && (canonical == this) == (endPoints != null);
     }
 
 }
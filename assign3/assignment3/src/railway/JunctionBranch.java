@@ -8,12 +8,19 @@ package railway;
  */
 public class JunctionBranch {
 
+    // the number of branches that a junction can have
+    private static final int BRANCH_COUNT = Branch.values().length;
+
     // the junction and its branch
     private Junction junction;
     private Branch branch;
+    // a number identifying the junction and branch: the id of the junction
+    // times the number of branches, plus the ordinal of the branch
+    private final int code;
 
     /*
-     * invariant: junction!= null && branch != null
+     * invariant: junction!= null && branch != null && code == BRANCH_COUNT
+     * * junction.getId() + branch.ordinal()
      */
 
     /**
@@ -35,6 +42,29 @@ public class JunctionBranch {
         }
         this.junction = junction;
         this.branch = branch;
+        this.code = BRANCH_COUNT * junction.getId() + branch.ordinal();
+    }
+
+    /**
+     * Returns the canonical instance representing the given junction and its
+     * branch. Unlike the constructor, this does not create a new object: each
+     * canonical junction holds one instance for each of its branches.
+     * 
+     * @param junction
+     *            the Junction of this pair
+     * @param branch
+     *            the Branch of this pair
+     * @throws NullPointerException
+     *             if either parameter is null
+     * @return the canonical pair of the junction and branch
+     */
+    public static JunctionBranch valueOf(Junction junction, Branch branch)
+            throws NullPointerException {
+        if (junction == null || branch == null) {
+            throw new NullPointerException(
+                    "The method paramters cannot be null.");
+        }
+        return junction.endPoint(branch);
     }
 
     /**
@@ -55,6 +85,15 @@ public class JunctionBranch {
         return branch;
     }
 
+    /**
+     * Returns a number that identifies this end-point. Two end-points have the
+     * same number if and only if they are equivalent, and the end-points of
+     * the junction with id i have the numbers 3i, 3i + 1 and 3i + 2.
+     */
+    int code() {
+        return code;
+    }
+
     /**
      * Returns a string of the form
      * 
@@ -74,22 +113,21 @@ public class JunctionBranch {
      */
     @Override
     public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
         if (!(object instanceof JunctionBranch)) {
             return false;
         }
         JunctionBranch other = (JunctionBranch) object; // the pair to compare
-        return (this.junction.equals(other.junction) && this.branch
-                .equals(other.branch));
+        // equivalent junctions have the same id
+        return this.code == other.code;
     }
 
     @Override
     public int hashCode() {
-        // creates a polynomial hash-code based on the fields of the class.
-        final int prime = 31; // an odd base prime
-        int result = 1; // the hash code under construction
-        result = prime * result + junction.hashCode();
-        result = prime * result + branch.hashCode();
-        return result;
+        // the codes of distinct end-points are distinct
+        return code;
     }
 
     /**
@@ -101,7 +139,8 @@ public class JunctionBranch {
      * @return true if this class is internally consistent, and false otherwise.
      */
     public boolean checkInvariant() {
-        return (junction != null && branch != null);
+        return (junction != null && branch != null
+                && code == BRANCH_COUNT * junction.getId() + branch.ordinal());
     }
 
 }
@@ -37,10 +37,31 @@ public class Location {
     // the offset of the location in relation to endPoint
     private int offset;
 
+    // the canonical form of the location, which every equivalent description
+    // of it shares: at a junction, the id of the junction, and otherwise the
+    // codes of the end-points of its section (lower first), the length of the
+    // section, and the offset of the location from the lower end-point
+    private final int place;
+    private final int highEnd;
+    private final int length;
+    private final int distance;
+    // the hash code of the canonical form
+    private final int hash;
+
     /*
      * invariant: section != null && endPoint != null &&
      * section.getEndPoints().contains(endPoint) && 0 <= offset <
      * section.getLength()
+     * 
+     * && if offset == 0, then place == endPoint.getJunction().getId() &&
+     * highEnd == -1 && length == 0 && distance == 0
+     * 
+     * && if offset > 0, then place == section.lowEnd() && highEnd ==
+     * section.highEnd() && length == section.getLength() && distance is the
+     * offset of the location from the end-point of the section with code
+     * place
+     * 
+     * && hash is the polynomial hash of place, highEnd, length and distance
      */
 
     /**
@@ -73,7 +94,7 @@ public class Location {
                     "Parameter offset must be a non-negative value "
                             + "less than the section length.");
         }
-        if (!(section.getEndPoints().contains(endPoint))) {
+        if (!(section.hasEndPoint(endPoint))) {
             throw new IllegalArgumentException(
                     "The parameter endPoint must be an end-point of the "
                             + "given section.");
@@ -81,6 +102,33 @@ public class Location {
         this.section = section;
         this.endPoint = endPoint;
         this.offset = offset;
+
+        if (offset == 0) {
+            place = endPoint.getJunction().getId();
+            highEnd = -1;
+            length = 0;
+            distance = 0;
+        } else {
+            place = section.lowEnd();
+            highEnd = section.highEnd();
+            length = section.getLength();
+            distance = (endPoint.code() == place) ? offset : length - offset;
+        }
+        hash = hash(place, highEnd, length, distance);
+    }
+
+    /**
+     * Returns a polynomial hash-code based on the canonical form of a
+     * location.
+     */
+    private static int hash(int place, int highEnd, int length, int distance) {
+        final int prime = 31; // an odd base prime
+        int result = 1; // the hash code under construction
+        result = prime * result + place;
+        result = prime * result + highEnd;
+        result = prime * result + length;
+        result = prime * result + distance;
+        return result;
     }
 
     /**
@@ -174,12 +222,8 @@ public class Location {
             // the junction this location lies on
             Junction junction = this.getEndPoint().getJunction();
             // check whether or not junction is at an end-point of section
-            for (JunctionBranch endPoint : section.getEndPoints()) {
-                if (junction.equals(endPoint.getJunction())) {
-                    return true;
-                }
-            }
-            return false;
+            return junction.equals(section.getEndPoint1().getJunction())
+                    || junction.equals(section.getEndPoint2().getJunction());
         } else {
             // this location is not at a junction
             return (section.equals(this.getSection()));
@@ -229,7 +273,8 @@ public class Location {
      * equivalent according to the equals method of the Junction class) or <br>
      * <br>
      * 
-     * (ii) if their end-points are equivalent and their offsets are equal, or <br>
+     * (ii) if they lie on the same section, their end-points are equivalent
+     * and their offsets are equal, or <br>
      * <br>
      * 
      * (iii) if their end-points are not equivalent, but they lie on the same
@@ -246,6 +291,11 @@ public class Location {
      * of the class Location, and the locations are equivalent according to the
      * above definition.
      * </p>
+     * 
+     * <p>
+     * Equivalent locations have the same canonical form, which is computed
+     * when a location is created, so this method only compares a few numbers.
+     * </p>
      */
     @Override
     public boolean equals(Object object) {
@@ -253,56 +303,14 @@ public class Location {
             return false;
         }
         Location other = (Location) object; // the location to compare
-        if (this.offset == 0
-                && other.offset == 0
-                && this.endPoint.getJunction().equals(
-                        other.endPoint.getJunction())) {
-            // (i) at offset zero from the same junction
-            return true;
-        }
-        if (this.endPoint.equals(other.endPoint) 
-                && this.offset == other.offset) {
-            // (ii) at the same offset from the same endPoint
-            return true;
-        }
-        if (this.section.equals(other.section)
-                && !(this.endPoint.equals(other.endPoint))
-                && this.section.getLength() == this.offset + other.offset) {
-            // (iii) on the same section, offset is equivalent but measured from
-            // different endPoints
-            return true;
-        }
-        return false;
+        return this.hash == other.hash && this.distance == other.distance
+                && this.place == other.place && this.highEnd == other.highEnd
+                && this.length == other.length;
     }
 
     @Override
     public int hashCode() {
-        if (offset == 0) {
-            /*
-             * The location is at a junction.
-             * 
-             * It is equivalent to any other location at that junction.
-             */
-            return endPoint.getJunction().hashCode();
-        } else {
-            /*
-             * The location is not at a junction.
-             * 
-             * There are two equivalent representations of this location. Both
-             * are on the same section, but they may have different distances
-             * from different end-points.
-             * 
-             * We create a polynomial hashcode based on the section that the
-             * location lies on and the minimum offset from either end-point.
-             */
-            final int prime = 31; // an odd base prime
-            int result = 1; // the hash code under construction
-            // the minimum offset from either end of the section
-            int minOffset = Math.min(offset, section.getLength() - offset);
-            result = prime * result + section.hashCode();
-            result = prime * result + minOffset;
-            return result;
-        }
+        return hash;
     }
 
     /**
@@ -314,8 +322,21 @@ public class Location {
      * @return true if this class is internally consistent, and false otherwise.
      */
     public boolean checkInvariant() {
-        return section != null && endPoint != null
-                && section.getEndPoints().contains(endPoint) && 0 <= offset
-                && offset < section.getLength();
+        if (!(section != null && endPoint != null
+                && section.hasEndPoint(endPoint) && 0 <= offset
+                && offset < section.getLength())) {
+            return false;
+        }
+        if (hash != hash(place, highEnd, length, distance)) {
+            return false;
+        }
+        if (offset == 0) {
+            return place == endPoint.getJunction().getId() && highEnd == -1
+                    && length == 0 && distance == 0;
+        }
+        return place == section.lowEnd() && highEnd == section.highEnd()
+                && length == section.getLength()
+                && distance == ((endPoint.code() == place) ? offset
+                        : length - offset);
     }
 }
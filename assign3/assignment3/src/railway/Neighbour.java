@@ -0,0 +1,142 @@
+package railway;
+
+/**
+ * <p>
+ * An immutable class describing how a junction on a railway track is connected
+ * to one of its neighbouring junctions.
+ * </p>
+ *
+ * <p>
+ * A neighbour is identified from the point of view of a particular junction:
+ * it consists of the branch of that junction, the section of track connected
+ * to the junction on that branch, and the end-point at the opposite end of the
+ * section (whose junction is the neighbouring junction).
+ * </p>
+ */
+public class Neighbour {
+
+    // the branch of the junction that the section is connected to
+    private Branch branch;
+    // the section connected to the junction on branch
+    private Section section;
+    // the end-point at the opposite end of section
+    private JunctionBranch neighbourEndPoint;
+
+    /*
+     * invariant: branch != null && section != null && neighbourEndPoint !=
+     * null && section.hasEndPoint(neighbourEndPoint)
+     */
+
+    /**
+     * Creates a new neighbour reached from a junction along the given branch
+     * and section, arriving at the given end-point.
+     *
+     * @param branch
+     *            the branch of the junction that section is connected to
+     * @param section
+     *            the section connecting the junction to its neighbour
+     * @param neighbourEndPoint
+     *            the end-point of section at the opposite end to the junction
+     * @throws NullPointerException
+     *             if any parameter is null
+     * @throws IllegalArgumentException
+     *             if neighbourEndPoint is not an end-point of section
+     */
+    public Neighbour(Branch branch, Section section,
+            JunctionBranch neighbourEndPoint) throws NullPointerException,
+            IllegalArgumentException {
+        if (branch == null || section == null || neighbourEndPoint == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        if (!section.hasEndPoint(neighbourEndPoint)) {
+            throw new IllegalArgumentException("The end-point "
+                    + neighbourEndPoint + " is not an end-point of section "
+                    + section);
+        }
+        this.branch = branch;
+        this.section = section;
+        this.neighbourEndPoint = neighbourEndPoint;
+    }
+
+    /**
+     * Returns the branch of the junction that the section is connected to.
+     *
+     * @return the branch leading to the neighbour.
+     */
+    public Branch getBranch() {
+        return branch;
+    }
+
+    /**
+     * Returns the section connecting the junction to its neighbour.
+     *
+     * @return the section leading to the neighbour.
+     */
+    public Section getSection() {
+        return section;
+    }
+
+    /**
+     * Returns the neighbouring junction.
+     *
+     * @return the junction at the opposite end of the section.
+     */
+    public Junction getNeighbour() {
+        return neighbourEndPoint.getJunction();
+    }
+
+    /**
+     * Returns the end-point of the section at the neighbouring junction.
+     *
+     * @return the end-point at the opposite end of the section.
+     */
+    public JunctionBranch getNeighbourEndPoint() {
+        return neighbourEndPoint;
+    }
+
+    @Override
+    public String toString() {
+        return branch + " -> " + neighbourEndPoint + " on section " + section;
+    }
+
+    /**
+     * Returns true if and only if the given object is an instance of the class
+     * Neighbour with an equivalent branch, section and neighbour end-point to
+     * this one.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof Neighbour)) {
+            return false;
+        }
+        Neighbour other = (Neighbour) object;
+        return this.branch.equals(other.branch)
+                && this.section.equals(other.section)
+                && this.neighbourEndPoint.equals(other.neighbourEndPoint);
+    }
+
+    @Override
+    public int hashCode() {
+        // creates a polynomial hash-code based on the fields of the class.
+        final int prime = 31; // an odd base prime
+        int result = 1; // the hash code under construction
+        result = prime * result + branch.hashCode();
+        result = prime * result + section.hashCode();
+        result = prime * result + neighbourEndPoint.hashCode();
+        return result;
+    }
+
+    /**
+     * Determines whether this class is internally consistent (i.e. it satisfies
+     * its class invariant).
+     *
+     * This method is only intended for testing purposes.
+     *
+     * @return true if this class is internally consistent, and false otherwise.
+     */
+    public boolean checkInvariant() {
+        return branch != null && section != null && neighbourEndPoint != null
+                && section.hasEndPoint(neighbourEndPoint);
+    }
+
+}
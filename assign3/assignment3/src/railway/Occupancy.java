@@ -0,0 +1,477 @@
+package railway;
+
+import java.util.*;
+
+/**
+ * <p>
+ * An index of the routes occupied by a number of trains, used to determine
+ * whether a route requested by one train intersects with the routes occupied
+ * by the others.
+ * </p>
+ *
+ * <p>
+ * Each train is identified by an integer. The index records, for each section,
+ * the intervals of offsets occupied by the segments of each train's route
+ * (measured from one reference end-point of the section), and for each
+ * junction, the sections of the segments that have a first or last location
+ * at that junction. Routes intersect as defined by Route.intersects: two
+ * segments intersect if they are on the same section and their intervals
+ * overlap, or if they are on different sections and both have a first or last
+ * location at the same junction.
+ * </p>
+ *
+ * <p>
+ * Checking a route with m segments takes O(m log k) time, where k is the
+ * number of segments occupying a single section, independent of the number of
+ * trains.
+ * </p>
+ *
+ * <p>
+ * The index is held in persistent maps, so the methods with and without can
+ * return an updated copy of an index in time proportional to the length of
+ * the route, leaving the original unchanged. An index that is no longer
+ * changed with add or remove may be read by many threads at once.
+ * </p>
+ */
+public class Occupancy {
+
+    // the intervals occupied on each section
+    private PersistentMap<Section, SectionOccupancy> sections;
+    // the segments with a first or last location at each junction
+    private PersistentMap<Junction, JunctionOccupancy> junctions;
+
+    /*
+     * invariant: sections != null && junctions != null && neither map
+     * contains an empty entry
+     */
+
+    /**
+     * Creates a new index in which no routes are occupied.
+     */
+    public Occupancy() {
+        this(PersistentMap.empty(), PersistentMap.empty());
+    }
+
+    private Occupancy(PersistentMap<Section, SectionOccupancy> sections,
+            PersistentMap<Junction, JunctionOccupancy> junctions) {
+        this.sections = sections;
+        this.junctions = junctions;
+    }
+
+    /**
+     * Records that the given train occupies each of the segments of the given
+     * route.
+     *
+     * @param train
+     *            the identifier of the train
+     * @param route
+     *            the route occupied by the train
+     * @throws NullPointerException
+     *             if route is null
+     */
+    public void add(int train, Route route) throws NullPointerException {
+        Occupancy result = with(train, route);
+        sections = result.sections;
+        junctions = result.junctions;
+    }
+
+    /**
+     * Records that the given train no longer occupies the segments of the
+     * given route, which must have been added for the train earlier.
+     *
+     * @param train
+     *            the identifier of the train
+     * @param route
+     *            the route that is no longer occupied by the train
+     * @throws NullPointerException
+     *             if route is null
+     */
+    public void remove(int train, Route route) throws NullPointerException {
+        Occupancy result = without(train, route);
+        sections = result.sections;
+        junctions = result.junctions;
+    }
+
+    /**
+     * Returns a copy of this index in which the given train also occupies
+     * each of the given segments, such as the segments of a route. This index
+     * is unchanged.
+     *
+     * @param train
+     *            the identifier of the train
+     * @param segments
+     *            the segments occupied by the train
+     * @throws NullPointerException
+     *             if segments is null
+     * @return the index with the segments added
+     */
+    public Occupancy with(int train, Iterable<Segment> segments)
+            throws NullPointerException {
+        // the maps of the copy
+        PersistentMap<Section, SectionOccupancy> newSections = sections;
+        PersistentMap<Junction, JunctionOccupancy> newJunctions = junctions;
+        for (Segment segment : segments) {
+            Section section = segment.getSection();
+            SectionOccupancy occupied = newSections.get(section);
+            if (occupied == null) {
+                occupied = new SectionOccupancy(segment.getDepartingEndPoint());
+            }
+            newSections = newSections.plus(section, occupied.with(train,
+                    segment));
+            for (Junction junction : junctionsAtEnds(segment)) {
+                JunctionOccupancy touches = newJunctions.get(junction);
+                if (touches == null) {
+                    touches = JunctionOccupancy.EMPTY;
+                }
+                newJunctions = newJunctions.plus(junction, touches.with(train,
+                        section));
+            }
+        }
+        return new Occupancy(newSections, newJunctions);
+    }
+
+    /**
+     * Returns a copy of this index in which the given train no longer
+     * occupies the given segments, each of which must have been added for the
+     * train earlier. This index is unchanged.
+     *
+     * @param train
+     *            the identifier of the train
+     * @param segments
+     *            the segments that are no longer occupied by the train
+     * @throws NullPointerException
+     *             if segments is null
+     * @return the index with the segments removed
+     */
+    public Occupancy without(int train, Iterable<Segment> segments)
+            throws NullPointerException {
+        // the maps of the copy
+        PersistentMap<Section, SectionOccupancy> newSections = sections;
+        PersistentMap<Junction, JunctionOccupancy> newJunctions = junctions;
+        for (Segment segment : segments) {
+            Section section = segment.getSection();
+            SectionOccupancy occupied = newSections.get(section);
+            if (occupied != null) {
+                occupied = occupied.without(train, segment);
+                newSections = (occupied == null) ? newSections.minus(section)
+                        : newSections.plus(section, occupied);
+            }
+            for (Junction junction : junctionsAtEnds(segment)) {
+                JunctionOccupancy touches = newJunctions.get(junction);
+                if (touches != null) {
+                    touches = touches.without(train, section);
+                    newJunctions = (touches == null) ? newJunctions
+                            .minus(junction) : newJunctions.plus(junction,
+                            touches);
+                }
+            }
+        }
+        return new Occupancy(newSections, newJunctions);
+    }
+
+    /**
+     * Returns true if and only if the given route intersects with a route
+     * occupied by a train other than the given one.
+     *
+     * @param train
+     *            the identifier of the train requesting the route; the routes
+     *            occupied by this train are ignored
+     * @param route
+     *            the route to check
+     * @throws NullPointerException
+     *             if route is null
+     * @return true if the route intersects with a route occupied by another
+     *         train, and false otherwise.
+     */
+    public boolean intersects(int train, Route route)
+            throws NullPointerException {
+        for (Segment segment : route) {
+            Section section = segment.getSection();
+            SectionOccupancy occupied = sections.get(section);
+            if (occupied != null && occupied.overlaps(train, segment)) {
+                return true;
+            }
+            if (segment.getStartOffset() == 0
+                    && touched(train, segment.getDepartingEndPoint()
+                            .getJunction(), section)) {
+                return true;
+            }
+            if (segment.getEndOffset() == section.getLength()
+                    && touched(train, segment.getApproachingEndPoint()
+                            .getJunction(), section)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether this class is internally consistent (i.e. it satisfies
+     * its class invariant).
+     *
+     * This method is only intended for testing purposes.
+     *
+     * @return true if this class is internally consistent, and false otherwise.
+     */
+    public boolean checkInvariant() {
+        if (sections == null || junctions == null) {
+            return false;
+        }
+        // whether an empty entry has been found
+        boolean[] empty = new boolean[1];
+        sections.forEach((section, occupied) -> empty[0] |=
+                occupied.starts.length == 0);
+        junctions.forEach((junction, touches) -> empty[0] |=
+                touches.trains.length == 0);
+        return !empty[0] && sections.checkInvariant()
+                && junctions.checkInvariant();
+    }
+
+    /**
+     * Returns true if a train other than the given one occupies a segment on a
+     * section other than the given one, with a first or last location at the
+     * given junction.
+     */
+    private boolean touched(int train, Junction junction, Section section) {
+        JunctionOccupancy touches = junctions.get(junction);
+        return touches != null && touches.touched(train, section);
+    }
+
+    /**
+     * Returns the junctions where the given segment has its first or last
+     * location.
+     */
+    private static List<Junction> junctionsAtEnds(Segment segment) {
+        // the junctions to return
+        List<Junction> result = new ArrayList<>(2);
+        if (segment.getStartOffset() == 0) {
+            result.add(segment.getDepartingEndPoint().getJunction());
+        }
+        if (segment.getEndOffset() == segment.getSection().getLength()) {
+            result.add(segment.getApproachingEndPoint().getJunction());
+        }
+        return result;
+    }
+
+    /**
+     * The closed intervals of offsets occupied on one section, measured from a
+     * reference end-point and sorted by their start. Instances are immutable:
+     * adding or removing an interval returns a copy.
+     */
+    private static class SectionOccupancy {
+
+        // the end-point that the offsets are measured from
+        final JunctionBranch reference;
+        // the start, end and train of each interval, in ascending start order
+        final int[] starts;
+        final int[] ends;
+        final int[] trains;
+        // maxEnds[i] is the greatest end of the intervals 0 to i
+        final int[] maxEnds;
+
+        SectionOccupancy(JunctionBranch reference) {
+            this(reference, new int[0], new int[0], new int[0]);
+        }
+
+        private SectionOccupancy(JunctionBranch reference, int[] starts,
+                int[] ends, int[] trains) {
+            this.reference = reference;
+            this.starts = starts;
+            this.ends = ends;
+            this.trains = trains;
+            this.maxEnds = new int[starts.length];
+            for (int i = 0; i < starts.length; i++) {
+                maxEnds[i] = (i == 0) ? ends[i] : Math.max(maxEnds[i - 1],
+                        ends[i]);
+            }
+        }
+
+        /**
+         * Returns a copy of this occupancy that also has the interval of the
+         * given segment of the given train.
+         */
+        SectionOccupancy with(int train, Segment segment) {
+            int start = start(segment);
+            int end = end(segment);
+            // the position of the new interval in the sorted arrays
+            int position = upperBound(starts, start);
+            int size = starts.length + 1;
+            int[] newStarts = new int[size];
+            int[] newEnds = new int[size];
+            int[] newTrains = new int[size];
+            for (int i = 0, j = 0; i < size; i++) {
+                if (i == position) {
+                    newStarts[i] = start;
+                    newEnds[i] = end;
+                    newTrains[i] = train;
+                } else {
+                    newStarts[i] = starts[j];
+                    newEnds[i] = ends[j];
+                    newTrains[i] = trains[j];
+                    j++;
+                }
+            }
+            return new SectionOccupancy(reference, newStarts, newEnds,
+                    newTrains);
+        }
+
+        /**
+         * Returns a copy of this occupancy without the interval of the given
+         * segment of the given train, or null if the copy would be empty.
+         */
+        SectionOccupancy without(int train, Segment segment) {
+            int start = start(segment);
+            int end = end(segment);
+            for (int i = 0; i < starts.length; i++) {
+                if (starts[i] == start && ends[i] == end && trains[i] == train) {
+                    if (starts.length == 1) {
+                        return null;
+                    }
+                    return new SectionOccupancy(reference, remove(starts, i),
+                            remove(ends, i), remove(trains, i));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Returns true if the interval of the given segment overlaps with an
+         * interval occupied by a train other than the given one.
+         */
+        boolean overlaps(int train, Segment segment) {
+            int start = start(segment);
+            int end = end(segment);
+            /*
+             * Look back from the last interval that starts at or before end,
+             * stopping once no earlier interval reaches start. Since the
+             * intervals of different trains do not overlap, the only intervals
+             * passed over on the way are those of the excluded train, or those
+             * lying within another interval of the same train.
+             */
+            for (int i = upperBound(starts, end) - 1; i >= 0
+                    && maxEnds[i] >= start; i--) {
+                if (ends[i] >= start && trains[i] != train) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the start of the segment's interval w.r.t. the reference.
+         */
+        private int start(Segment segment) {
+            if (segment.getDepartingEndPoint().equals(reference)) {
+                return segment.getStartOffset();
+            }
+            return segment.getSection().getLength() - segment.getEndOffset();
+        }
+
+        /**
+         * Returns the end of the segment's interval w.r.t. the reference.
+         */
+        private int end(Segment segment) {
+            if (segment.getDepartingEndPoint().equals(reference)) {
+                return segment.getEndOffset();
+            }
+            return segment.getSection().getLength() - segment.getStartOffset();
+        }
+    }
+
+    /**
+     * The sections and trains of the segments that have a first or last
+     * location at one junction. Instances are immutable: adding or removing
+     * a segment returns a copy.
+     */
+    private static class JunctionOccupancy {
+
+        // an occupancy with no segments
+        static final JunctionOccupancy EMPTY = new JunctionOccupancy(
+                new Section[0], new int[0]);
+
+        // the section and train of each segment
+        final Section[] sections;
+        final int[] trains;
+
+        private JunctionOccupancy(Section[] sections, int[] trains) {
+            this.sections = sections;
+            this.trains = trains;
+        }
+
+        /**
+         * Returns a copy of this occupancy that also has a segment of the
+         * given train on the given section.
+         */
+        JunctionOccupancy with(int train, Section section) {
+            Section[] newSections = Arrays.copyOf(sections,
+                    sections.length + 1);
+            int[] newTrains = Arrays.copyOf(trains, trains.length + 1);
+            newSections[sections.length] = section;
+            newTrains[trains.length] = train;
+            return new JunctionOccupancy(newSections, newTrains);
+        }
+
+        /**
+         * Returns a copy of this occupancy without a segment of the given
+         * train on the given section, or null if the copy would be empty.
+         */
+        JunctionOccupancy without(int train, Section section) {
+            for (int i = 0; i < trains.length; i++) {
+                if (trains[i] == train && sections[i].equals(section)) {
+                    if (trains.length == 1) {
+                        return null;
+                    }
+                    Section[] newSections = new Section[sections.length - 1];
+                    System.arraycopy(sections, 0, newSections, 0, i);
+                    System.arraycopy(sections, i + 1, newSections, i,
+                            sections.length - i - 1);
+                    return new JunctionOccupancy(newSections, remove(trains,
+                            i));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Returns true if a train other than the given one has a segment on a
+         * section other than the given one.
+         */
+        boolean touched(int train, Section section) {
+            for (int i = 0; i < trains.length; i++) {
+                if (trains[i] != train && !sections[i].equals(section)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns a copy of the array without the element at the given index.
+     */
+    private static int[] remove(int[] array, int index) {
+        int[] result = new int[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index
+                - 1);
+        return result;
+    }
+
+    /**
+     * Returns the number of values in the sorted array that are less than or
+     * equal to key.
+     */
+    private static int upperBound(int[] sorted, int key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,561 @@
+package railway;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * <p>
+ * A section store that keeps the sections of a track outside of the Java
+ * heap, in direct byte buffers, so that very large tracks add little work for
+ * the garbage collector.
+ * </p>
+ *
+ * <p>
+ * Each end-point is encoded as an integer: the id of its junction times the
+ * number of branches, plus the ordinal of its branch. The store holds a
+ * fixed-width record for each section (its length and its two encoded
+ * end-points), a hash table from each encoded end-point to the record of its
+ * section, a fixed-width record for each junction with end-points in the
+ * store (its id and its number of end-points), and a hash table from each
+ * junction id to the record of its junction. The hash tables use open
+ * addressing with linear probing. The memory used by a store depends only on
+ * the sections in it, not on how many junctions have been created elsewhere.
+ * Section objects are only created when they are returned by a query or an
+ * iterator.
+ * </p>
+ */
+public class OffHeapSectionStore implements SectionStore {
+
+    // the branches, indexed by ordinal
+    private static final Branch[] BRANCHES = Branch.values();
+    // the number of end-points of each junction
+    private static final int BRANCH_COUNT = BRANCHES.length;
+
+    // the number of bytes in a section record: length, end-points 1 and 2
+    private static final int RECORD_SIZE = 12;
+    // the number of bytes in a junction record: id, number of end-points
+    private static final int JUNCTION_RECORD_SIZE = 8;
+    // the number of bytes in a slot of a hash table: key, value
+    private static final int SLOT_SIZE = 8;
+    // the key of an empty slot of a hash table
+    private static final int EMPTY = -1;
+
+    // the section records, of which the first size are in use
+    private ByteBuffer records;
+    private int size;
+    // the record of each encoded end-point
+    private final Table sectionsByEndPoint;
+    // the junction records, of which the first junctionCount are in use
+    private ByteBuffer junctionRecords;
+    private int junctionCount;
+    // the junction record of each junction id
+    private final Table junctionsById;
+    // the number of times the store has been changed, for the iterators
+    private int modifications;
+    // an unmodifiable view of the junctions of the store
+    private final Set<Junction> junctions = new JunctionView();
+
+    /*
+     * invariant: 0 <= size <= records.capacity() / RECORD_SIZE &&
+     * sectionsByEndPoint maps the two end-points of each of the first size
+     * records (and no others) to the index of that record && 0 <=
+     * junctionCount <= junctionRecords.capacity() / JUNCTION_RECORD_SIZE &&
+     * the first junctionCount junction records are the distinct junctions of
+     * the end-points of those records, each with its positive number of
+     * end-points && junctionsById maps the id of each of those junctions (and
+     * no others) to the index of its junction record
+     */
+
+    /**
+     * Creates a new store with no sections.
+     */
+    public OffHeapSectionStore() {
+        this(1024);
+    }
+
+    /**
+     * Creates a new store with no sections, with room for the given number of
+     * sections before its buffers have to grow.
+     *
+     * @param expectedSections
+     *            the number of sections expected to be added to the store
+     * @throws IllegalArgumentException
+     *             if expectedSections is negative
+     */
+    public OffHeapSectionStore(int expectedSections)
+            throws IllegalArgumentException {
+        if (expectedSections < 0) {
+            throw new IllegalArgumentException(
+                    "The expected number of sections cannot be negative.");
+        }
+        records = ByteBuffer.allocateDirect(RECORD_SIZE
+                * Math.max(expectedSections, 1));
+        sectionsByEndPoint = new Table(2 * expectedSections);
+        junctionRecords = ByteBuffer.allocateDirect(JUNCTION_RECORD_SIZE
+                * Math.max(expectedSections, 16));
+        junctionsById = new Table(expectedSections);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Section section) {
+        if (section == null) {
+            return false;
+        }
+        int record = sectionsByEndPoint.get(encode(section.getEndPoint1()));
+        int endPoint2 = encode(section.getEndPoint2());
+        return record >= 0
+                && records.getInt(RECORD_SIZE * record) == section.getLength()
+                && (endPoint1(record) == endPoint2
+                        || endPoint2(record) == endPoint2);
+    }
+
+    @Override
+    public Section get(JunctionBranch endPoint) {
+        int record = sectionsByEndPoint.get(encode(endPoint));
+        return record < 0 ? null : section(record);
+    }
+
+    @Override
+    public void add(Section section) {
+        if (RECORD_SIZE * (size + 1) > records.capacity()) {
+            records = grow(records, RECORD_SIZE * (size + 1));
+        }
+        int endPoint1 = encode(section.getEndPoint1());
+        int endPoint2 = encode(section.getEndPoint2());
+        records.putInt(RECORD_SIZE * size, section.getLength());
+        records.putInt(RECORD_SIZE * size + 4, endPoint1);
+        records.putInt(RECORD_SIZE * size + 8, endPoint2);
+        sectionsByEndPoint.put(endPoint1, size);
+        sectionsByEndPoint.put(endPoint2, size);
+        addDegree(endPoint1 / BRANCH_COUNT, 1);
+        addDegree(endPoint2 / BRANCH_COUNT, 1);
+        size++;
+        modifications++;
+    }
+
+    @Override
+    public void remove(Section section) {
+        int record = sectionsByEndPoint.get(encode(section.getEndPoint1()));
+        int endPoint1 = endPoint1(record);
+        int endPoint2 = endPoint2(record);
+        sectionsByEndPoint.remove(endPoint1);
+        sectionsByEndPoint.remove(endPoint2);
+        addDegree(endPoint1 / BRANCH_COUNT, -1);
+        addDegree(endPoint2 / BRANCH_COUNT, -1);
+
+        // move the last record into the gap, so the records stay contiguous
+        int last = size - 1;
+        if (record != last) {
+            for (int offset = 0; offset < RECORD_SIZE; offset += 4) {
+                records.putInt(RECORD_SIZE * record + offset,
+                        records.getInt(RECORD_SIZE * last + offset));
+            }
+            sectionsByEndPoint.put(endPoint1(record), record);
+            sectionsByEndPoint.put(endPoint2(record), record);
+        }
+        size--;
+        modifications++;
+    }
+
+    @Override
+    public Set<Junction> junctions() {
+        return junctions;
+    }
+
+    /**
+     * Returns an iterator over the sections in the store, which are created
+     * as they are iterated over. The iterator does not support removal.
+     */
+    @Override
+    public Iterator<Section> iterator() {
+        return new Iterator<Section>() {
+
+            // the index of the next record to return
+            private int record = 0;
+            // the number of modifications the iterator is consistent with
+            private final int expected = modifications;
+
+            @Override
+            public boolean hasNext() {
+                return record < size;
+            }
+
+            @Override
+            public Section next() {
+                if (modifications != expected) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return section(record++);
+            }
+        };
+    }
+
+    /**
+     * Determines whether this class is internally consistent (i.e. it satisfies
+     * its class invariant).
+     *
+     * This method is only intended for testing purposes.
+     *
+     * @return true if this class is internally consistent, and false otherwise.
+     */
+    public boolean checkInvariant() {
+        if (size < 0 || RECORD_SIZE * size > records.capacity()
+                || junctionCount < 0 || JUNCTION_RECORD_SIZE
+                        * junctionCount > junctionRecords.capacity()
+                || !sectionsByEndPoint.checkInvariant()
+                || !junctionsById.checkInvariant()
+                || sectionsByEndPoint.size() != 2 * size
+                || junctionsById.size() != junctionCount) {
+            return false;
+        }
+
+        // the expected number of end-points at each junction id
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int record = 0; record < size; record++) {
+            for (int endPoint : new int[] { endPoint1(record),
+                    endPoint2(record) }) {
+                if (sectionsByEndPoint.get(endPoint) != record) {
+                    return false;
+                }
+                expected.merge(endPoint / BRANCH_COUNT, 1, Integer::sum);
+            }
+        }
+        for (int index = 0; index < junctionCount; index++) {
+            int id = junctionId(index);
+            if (junctionsById.get(id) != index
+                    || degreeAt(index) != expected.getOrDefault(id, 0)) {
+                return false;
+            }
+        }
+        return junctionCount == expected.size();
+    }
+
+    /**
+     * Returns the encoded form of the given end-point.
+     */
+    private static int encode(JunctionBranch endPoint) {
+        return BRANCH_COUNT * endPoint.getJunction().getId()
+                + endPoint.getBranch().ordinal();
+    }
+
+    /**
+     * Returns the end-point with the given encoding.
+     */
+    private static JunctionBranch decode(int endPoint) {
+        return JunctionBranch.valueOf(Junction.byId(endPoint / BRANCH_COUNT),
+                BRANCHES[endPoint % BRANCH_COUNT]);
+    }
+
+    /**
+     * Returns the section described by the given record.
+     */
+    private Section section(int record) {
+        return new Section(records.getInt(RECORD_SIZE * record),
+                decode(endPoint1(record)), decode(endPoint2(record)));
+    }
+
+    /**
+     * Returns the first encoded end-point of the given record.
+     */
+    private int endPoint1(int record) {
+        return records.getInt(RECORD_SIZE * record + 4);
+    }
+
+    /**
+     * Returns the second encoded end-point of the given record.
+     */
+    private int endPoint2(int record) {
+        return records.getInt(RECORD_SIZE * record + 8);
+    }
+
+    /**
+     * Returns the junction id of the given junction record.
+     */
+    private int junctionId(int index) {
+        return junctionRecords.getInt(JUNCTION_RECORD_SIZE * index);
+    }
+
+    /**
+     * Returns the number of end-points of the given junction record.
+     */
+    private int degreeAt(int index) {
+        return junctionRecords.getInt(JUNCTION_RECORD_SIZE * index + 4);
+    }
+
+    /**
+     * Adds the given amount to the number of end-points at the junction with
+     * the given id, adding a record for the junction if it had none, and
+     * removing its record if it has none left.
+     *
+     * @require the junction has at least -amount end-points
+     */
+    private void addDegree(int id, int amount) {
+        int index = junctionsById.get(id);
+        if (index < 0) {
+            if (JUNCTION_RECORD_SIZE * (junctionCount + 1) > junctionRecords
+                    .capacity()) {
+                junctionRecords = grow(junctionRecords, JUNCTION_RECORD_SIZE
+                        * (junctionCount + 1));
+            }
+            index = junctionCount++;
+            junctionRecords.putInt(JUNCTION_RECORD_SIZE * index, id);
+            junctionRecords.putInt(JUNCTION_RECORD_SIZE * index + 4, 0);
+            junctionsById.put(id, index);
+        }
+        int degree = degreeAt(index) + amount;
+        if (degree > 0) {
+            junctionRecords.putInt(JUNCTION_RECORD_SIZE * index + 4, degree);
+            return;
+        }
+
+        // move the last junction record into the gap, so the junction
+        // records stay contiguous
+        junctionsById.remove(id);
+        int last = --junctionCount;
+        if (index != last) {
+            int lastId = junctionId(last);
+            junctionRecords.putInt(JUNCTION_RECORD_SIZE * index, lastId);
+            junctionRecords.putInt(JUNCTION_RECORD_SIZE * index + 4,
+                    degreeAt(last));
+            junctionsById.put(lastId, index);
+        }
+    }
+
+    /**
+     * Returns a copy of the buffer with a capacity of at least the given
+     * number of bytes, and at least twice its current capacity; the rest of
+     * the copy is zero.
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, int minimum) {
+        ByteBuffer result = ByteBuffer.allocateDirect(Math.max(minimum,
+                2 * buffer.capacity()));
+        ByteBuffer contents = buffer.duplicate();
+        contents.clear();
+        result.put(contents);
+        result.clear();
+        return result;
+    }
+
+    /**
+     * A hash table from non-negative integer keys to integer values, held in
+     * a direct byte buffer. It uses open addressing with linear probing, and
+     * doubles in size to stay at most half full.
+     */
+    private static class Table {
+
+        // the slots of the table, each a key (or EMPTY) and its value
+        private ByteBuffer buffer;
+        private int slots; // a power of two
+        // the number of keys in the table
+        private int entries;
+
+        /*
+         * invariant: buffer.capacity() == SLOT_SIZE * slots && entries is the
+         * number of non-empty slots && 2 * entries <= slots && each key can be
+         * reached by probing from its home slot without passing an empty slot
+         */
+
+        /**
+         * Creates an empty table with room for the given number of keys before
+         * it has to grow.
+         *
+         * @require expectedEntries >= 0
+         */
+        Table(int expectedEntries) {
+            // the smallest power of two that keeps the table at most half full
+            slots = Integer.highestOneBit(Math.max(2 * expectedEntries, 16)
+                    - 1) << 1;
+            buffer = emptyBuffer(slots);
+        }
+
+        /**
+         * Returns the number of keys in the table.
+         */
+        int size() {
+            return entries;
+        }
+
+        /**
+         * Returns the value of the given key, or -1 if the key is not in the
+         * table.
+         */
+        int get(int key) {
+            int slot = slotOf(key);
+            return buffer.getInt(SLOT_SIZE * slot) == EMPTY ? -1 : buffer
+                    .getInt(SLOT_SIZE * slot + 4);
+        }
+
+        /**
+         * Sets the value of the given key, adding the key if it is not in the
+         * table.
+         *
+         * @require key >= 0
+         */
+        void put(int key, int value) {
+            int slot = slotOf(key);
+            if (buffer.getInt(SLOT_SIZE * slot) == EMPTY) {
+                if (2 * (entries + 1) > slots) {
+                    rehash(2 * slots);
+                    slot = slotOf(key);
+                }
+                buffer.putInt(SLOT_SIZE * slot, key);
+                entries++;
+            }
+            buffer.putInt(SLOT_SIZE * slot + 4, value);
+        }
+
+        /**
+         * Removes the given key from the table, shifting back any later keys
+         * of its probe sequence so that no markers of removed keys are needed.
+         *
+         * @require the key is in the table
+         */
+        void remove(int key) {
+            int mask = slots - 1;
+            int gap = slotOf(key);
+            int slot = gap;
+            while (true) {
+                slot = (slot + 1) & mask;
+                int other = buffer.getInt(SLOT_SIZE * slot);
+                if (other == EMPTY) {
+                    break;
+                }
+                // the slot that the key would ideally be in
+                int home = hash(other) & mask;
+                // move the key into the gap unless its home lies after the
+                // gap (cyclically), up to and including its current slot
+                if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                    buffer.putInt(SLOT_SIZE * gap, other);
+                    buffer.putInt(SLOT_SIZE * gap + 4, buffer.getInt(
+                            SLOT_SIZE * slot + 4));
+                    gap = slot;
+                }
+            }
+            buffer.putInt(SLOT_SIZE * gap, EMPTY);
+            entries--;
+        }
+
+        /**
+         * Determines whether the table satisfies its invariant.
+         */
+        boolean checkInvariant() {
+            if (Integer.bitCount(slots) != 1
+                    || buffer.capacity() != SLOT_SIZE * slots) {
+                return false;
+            }
+            int count = 0; // the number of non-empty slots
+            for (int slot = 0; slot < slots; slot++) {
+                int key = buffer.getInt(SLOT_SIZE * slot);
+                if (key != EMPTY) {
+                    if (key < 0 || slotOf(key) != slot) {
+                        return false;
+                    }
+                    count++;
+                }
+            }
+            return count == entries && 2 * entries <= slots;
+        }
+
+        /**
+         * Returns the slot where the given key is, or the empty slot where it
+         * would be added.
+         */
+        private int slotOf(int key) {
+            int mask = slots - 1;
+            int slot = hash(key) & mask;
+            while (true) {
+                int found = buffer.getInt(SLOT_SIZE * slot);
+                if (found == EMPTY || found == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        /**
+         * Replaces the buffer with an empty one with the given number of
+         * slots, and adds the keys of the old buffer to it.
+         */
+        private void rehash(int newSlots) {
+            ByteBuffer old = buffer;
+            int oldSlots = slots;
+            slots = newSlots;
+            buffer = emptyBuffer(newSlots);
+            for (int slot = 0; slot < oldSlots; slot++) {
+                int key = old.getInt(SLOT_SIZE * slot);
+                if (key != EMPTY) {
+                    int target = slotOf(key);
+                    buffer.putInt(SLOT_SIZE * target, key);
+                    buffer.putInt(SLOT_SIZE * target + 4, old.getInt(SLOT_SIZE
+                            * slot + 4));
+                }
+            }
+        }
+
+        /**
+         * Returns a buffer with the given number of empty slots.
+         */
+        private static ByteBuffer emptyBuffer(int slots) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(SLOT_SIZE * slots);
+            for (int slot = 0; slot < slots; slot++) {
+                buffer.putInt(SLOT_SIZE * slot, EMPTY);
+            }
+            return buffer;
+        }
+
+        /**
+         * Spreads the bits of a key.
+         */
+        private static int hash(int key) {
+            int hash = key * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * An unmodifiable view of the junctions with end-points in the store.
+     */
+    private class JunctionView extends AbstractSet<Junction> {
+
+        @Override
+        public boolean contains(Object object) {
+            return object instanceof Junction && junctionsById.get(
+                    ((Junction) object).getId()) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return junctionCount;
+        }
+
+        @Override
+        public Iterator<Junction> iterator() {
+            return new Iterator<Junction>() {
+
+                // the index of the next junction record to return
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return index < junctionCount;
+                }
+
+                @Override
+                public Junction next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return Junction.byId(junctionId(index++));
+                }
+            };
+        }
+    }
+}
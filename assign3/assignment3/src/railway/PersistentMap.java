@@ -0,0 +1,459 @@
+package railway;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>
+ * An immutable map from keys to values. Adding or removing a mapping returns a
+ * new map, which shares all but O(log n) of its structure with the original,
+ * so keeping many versions of a large map is cheap.
+ * </p>
+ *
+ * <p>
+ * The map is a hash array mapped trie: each level of the trie is indexed by
+ * five bits of the hash of a key, and keys with equal hashes are kept
+ * together in a list. Neither keys nor values may be null. Since instances
+ * are immutable they may be shared between threads without synchronisation.
+ * </p>
+ *
+ * @param <K>
+ *            the type of the keys of the map
+ * @param <V>
+ *            the type of the values of the map
+ */
+public final class PersistentMap<K, V> {
+
+    // the number of hash bits used at each level of the trie
+    private static final int BITS = 5;
+    // the map with no mappings
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(
+            BitmapNode.EMPTY, 0);
+
+    // the root of the trie
+    private final Node root;
+    // the number of mappings in the map
+    private final int size;
+
+    /*
+     * invariant: root != null && size is the number of mappings in the trie
+     * rooted at root
+     */
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the map with no mappings.
+     *
+     * @return an empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns the number of mappings in the map.
+     *
+     * @return the number of mappings in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the map has no mappings.
+     *
+     * @return true iff size() == 0
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value that the given key is mapped to, or null if the map
+     * has no mapping for the key.
+     *
+     * @param key
+     *            the key whose value is to be returned
+     * @return the value of the key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        return (V) root.find(key, hash(key), 0);
+    }
+
+    /**
+     * Returns true if the map has a mapping for the given key.
+     *
+     * @param key
+     *            the key to look for
+     * @return true iff get(key) != null
+     */
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a map with the same mappings as this one, except that the given
+     * key is mapped to the given value.
+     *
+     * @param key
+     *            the key to map
+     * @param value
+     *            the value to map the key to
+     * @return a map with the given mapping in place of any for the key
+     * @throws NullPointerException
+     *             if either parameter is null
+     */
+    public PersistentMap<K, V> plus(K key, V value)
+            throws NullPointerException {
+        if (key == null || value == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        int hash = hash(key);
+        Node newRoot = root.plus(key, hash, value, 0);
+        if (newRoot == root) {
+            return this;
+        }
+        int newSize = root.find(key, hash, 0) == null ? size + 1 : size;
+        return new PersistentMap<>(newRoot, newSize);
+    }
+
+    /**
+     * Returns a map with the same mappings as this one, except that it has
+     * no mapping for the given key.
+     *
+     * @param key
+     *            the key to remove
+     * @return a map without a mapping for the key
+     */
+    public PersistentMap<K, V> minus(Object key) {
+        if (key == null) {
+            return this;
+        }
+        Node newRoot = root.minus(key, hash(key), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentMap<>(newRoot == null ? BitmapNode.EMPTY
+                : newRoot, size - 1);
+    }
+
+    /**
+     * Performs the given action on each mapping in the map, in no particular
+     * order.
+     *
+     * @param action
+     *            the action to perform on each key and its value
+     * @throws NullPointerException
+     *             if action is null
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action)
+            throws NullPointerException {
+        if (action == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    /**
+     * Returns a mutable copy of the mappings in the map.
+     *
+     * @return a map with the same mappings as this one
+     */
+    public Map<K, V> toMap() {
+        Map<K, V> result = new HashMap<>();
+        forEach(result::put);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    /**
+     * Determines whether this class is internally consistent (i.e. it satisfies
+     * its class invariant).
+     *
+     * This method is only intended for testing purposes.
+     *
+     * @return true if this class is internally consistent, and false otherwise.
+     */
+    public boolean checkInvariant() {
+        if (root == null) {
+            return false;
+        }
+        int[] count = new int[1];
+        root.forEach((key, value) -> count[0]++);
+        return count[0] == size;
+    }
+
+    /**
+     * Returns the hash of the given key, with its high bits spread into the
+     * low bits that index the first levels of the trie.
+     */
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the position of the hash within the node at the given shift.
+     */
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & ((1 << BITS) - 1));
+    }
+
+    /**
+     * A node of the trie. Nodes are immutable: adding or removing a mapping
+     * returns a new node, or the same node if nothing changed.
+     */
+    private interface Node {
+
+        /**
+         * Returns the value of the key with the given hash, or null.
+         */
+        Object find(Object key, int hash, int shift);
+
+        /**
+         * Returns the node with the key with the given hash mapped to value.
+         */
+        Node plus(Object key, int hash, Object value, int shift);
+
+        /**
+         * Returns the node without the key with the given hash, or null if
+         * that node would be empty.
+         */
+        Node minus(Object key, int hash, int shift);
+
+        /**
+         * Performs the action on each mapping under this node.
+         */
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * A node with a slot for each of the hashes whose bit is set in its
+     * bitmap. Slot i is held in entries[2 * i] and entries[2 * i + 1]: either
+     * a key and its value, or null and a child node.
+     */
+    private static final class BitmapNode implements Node {
+
+        // a node with no slots
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        // the hashes of the slots of the node
+        final int bitmap;
+        // the contents of the slots, in ascending order of their hashes
+        final Object[] entries;
+
+        BitmapNode(int bitmap, Object[] entries) {
+            this.bitmap = bitmap;
+            this.entries = entries;
+        }
+
+        @Override
+        public Object find(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object slotKey = entries[index];
+            if (slotKey == null) {
+                return ((Node) entries[index + 1]).find(key, hash, shift
+                        + BITS);
+            }
+            return key.equals(slotKey) ? entries[index + 1] : null;
+        }
+
+        @Override
+        public Node plus(Object key, int hash, Object value, int shift) {
+            int bit = bit(hash, shift);
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                Object[] newEntries = new Object[entries.length + 2];
+                System.arraycopy(entries, 0, newEntries, 0, index);
+                newEntries[index] = key;
+                newEntries[index + 1] = value;
+                System.arraycopy(entries, index, newEntries, index + 2,
+                        entries.length - index);
+                return new BitmapNode(bitmap | bit, newEntries);
+            }
+            Object slotKey = entries[index];
+            Object slotValue = entries[index + 1];
+            if (slotKey == null) {
+                Node child = (Node) slotValue;
+                Node newChild = child.plus(key, hash, value, shift + BITS);
+                return newChild == child ? this : replace(index, null,
+                        newChild);
+            }
+            if (key.equals(slotKey)) {
+                return slotValue == value ? this : replace(index, slotKey,
+                        value);
+            }
+            return replace(index, null, pair(slotKey, slotValue, key, hash,
+                    value, shift + BITS));
+        }
+
+        @Override
+        public Node minus(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object slotKey = entries[index];
+            if (slotKey == null) {
+                Node child = (Node) entries[index + 1];
+                Node newChild = child.minus(key, hash, shift + BITS);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild != null) {
+                    return replace(index, null, newChild);
+                }
+            } else if (!key.equals(slotKey)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] newEntries = new Object[entries.length - 2];
+            System.arraycopy(entries, 0, newEntries, 0, index);
+            System.arraycopy(entries, index + 2, newEntries, index,
+                    entries.length - index - 2);
+            return new BitmapNode(bitmap & ~bit, newEntries);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int index = 0; index < entries.length; index += 2) {
+                if (entries[index] == null) {
+                    ((Node) entries[index + 1]).forEach(action);
+                } else {
+                    action.accept(entries[index], entries[index + 1]);
+                }
+            }
+        }
+
+        /**
+         * Returns a copy of this node with the slot at the given index
+         * replaced.
+         */
+        private BitmapNode replace(int index, Object key, Object value) {
+            Object[] newEntries = entries.clone();
+            newEntries[index] = key;
+            newEntries[index + 1] = value;
+            return new BitmapNode(bitmap, newEntries);
+        }
+
+        /**
+         * Returns a node, at the given shift, holding two mappings whose keys
+         * are not equal.
+         */
+        private static Node pair(Object key1, Object value1, Object key2,
+                int hash2, Object value2, int shift) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] { key1, value1,
+                        key2, value2 });
+            }
+            return EMPTY.plus(key1, hash1, value1, shift).plus(key2, hash2,
+                    value2, shift);
+        }
+    }
+
+    /**
+     * A node holding the mappings of keys that all have the same hash, as
+     * consecutive keys and values.
+     */
+    private static final class CollisionNode implements Node {
+
+        // the hash of the keys
+        final int hash;
+        // the keys and their values
+        final Object[] entries;
+
+        CollisionNode(int hash, Object[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+
+        @Override
+        public Object find(Object key, int hash, int shift) {
+            int index = indexOf(key, hash);
+            return index < 0 ? null : entries[index + 1];
+        }
+
+        @Override
+        public Node plus(Object key, int hash, Object value, int shift) {
+            if (hash != this.hash) {
+                // move this node down a level, beside the new key
+                Node wrapper = new BitmapNode(bit(this.hash, shift),
+                        new Object[] { null, this });
+                return wrapper.plus(key, hash, value, shift);
+            }
+            int index = indexOf(key, hash);
+            if (index >= 0) {
+                if (entries[index + 1] == value) {
+                    return this;
+                }
+                Object[] newEntries = entries.clone();
+                newEntries[index + 1] = value;
+                return new CollisionNode(hash, newEntries);
+            }
+            Object[] newEntries = Arrays.copyOf(entries, entries.length + 2);
+            newEntries[entries.length] = key;
+            newEntries[entries.length + 1] = value;
+            return new CollisionNode(hash, newEntries);
+        }
+
+        @Override
+        public Node minus(Object key, int hash, int shift) {
+            int index = indexOf(key, hash);
+            if (index < 0) {
+                return this;
+            }
+            if (entries.length == 2) {
+                return null;
+            }
+            Object[] newEntries = new Object[entries.length - 2];
+            System.arraycopy(entries, 0, newEntries, 0, index);
+            System.arraycopy(entries, index + 2, newEntries, index,
+                    entries.length - index - 2);
+            return new CollisionNode(hash, newEntries);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int index = 0; index < entries.length; index += 2) {
+                action.accept(entries[index], entries[index + 1]);
+            }
+        }
+
+        /**
+         * Returns the index of the given key in entries, or -1 if it is not
+         * there.
+         */
+        private int indexOf(Object key, int hash) {
+            if (hash == this.hash) {
+                for (int index = 0; index < entries.length; index += 2) {
+                    if (key.equals(entries[index])) {
+                        return index;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -6,23 +6,64 @@ import java.util.*;
  * <p>
  * An immutable class corresponding to a train route.
  * </p>
+ * 
+ * <p>
+ * A sub-route returned by getSubroute is a view of the route it was taken
+ * from: it shares that route's array of segments, and records only the
+ * distances along the route where it starts and ends. Its first and last
+ * segments, which may be parts of segments of the original route, are only
+ * created when they are first needed. Taking a sub-route therefore does not
+ * depend on its length, but a sub-route keeps all the segments of the
+ * original route reachable.
+ * </p>
  */
 public class Route implements Iterable<Segment> {
 
-    // the segments that make up the route
-    private List<Segment> segments;
+    // the segments of the route that this route is a view of (its base)
+    private final Segment[] segments;
+    // offsets[i] is the distance along the base to the start of segment i,
+    // and offsets[segments.length] is the length of the base
+    private final int[] offsets;
+    // the segments of the base that are (partly) on this route are those
+    // with indices first <= i < end
+    private final int first;
+    private final int end;
+    // the distances along the base where this route starts and ends
+    private final int startOffset;
+    private final int endOffset;
+    // the first and last segments of this route, created when first needed
+    // (segments have only final fields, so threads that race to create them
+    // at worst each create their own)
+    private Segment firstSegment;
+    private Segment lastSegment;
+    // an index of the segments, created when it is first needed
+    private RouteIndex index;
 
     /*
      * invariant:
      * 
-     * segments != null &&
-     * 
-     * !segments.contains(null) &&
+     * segments != null && no element of segments is null && offsets != null
+     * &&
      * 
-     * for each segment on the route that is not the last, the last location on
-     * that segment equals the first location of the next segment on the route,
+     * for each segment on the base that is not the last, the last location on
+     * that segment equals the first location of the next segment on the base,
      * and that location is at a junction and the direction of travel through
-     * that junction is possible.
+     * that junction is possible &&
+     * 
+     * offsets are the prefix sums of the lengths of the segments of the base:
+     * offsets.length == segments.length + 1 && offsets[0] == 0 &&
+     * offsets[i + 1] == offsets[i] + segments[i].getLength() for each segment
+     * index i &&
+     * 
+     * 0 <= first <= end <= segments.length &&
+     * 
+     * either the route is empty (first == end and startOffset == endOffset)
+     * or first < end and the start and end offsets fall inside the first and
+     * last segments of the view: offsets[first] <= startOffset <
+     * offsets[first + 1] and offsets[end - 1] < endOffset <= offsets[end] &&
+     * 
+     * firstSegment and lastSegment are null, or the parts of segments[first]
+     * and segments[end - 1] that lie between startOffset and endOffset.
      */
 
     /**
@@ -72,7 +113,32 @@ public class Route implements Iterable<Segment> {
                                 + ") is not possible.");
             }
         }
-        this.segments = new ArrayList<>(segments);
+        this.segments = segments.toArray(new Segment[segments.size()]);
+        this.offsets = new int[this.segments.length + 1];
+        for (int i = 0; i < this.segments.length; i++) {
+            offsets[i + 1] = offsets[i] + this.segments[i].getLength();
+        }
+        this.first = 0;
+        this.end = this.segments.length;
+        this.startOffset = 0;
+        this.endOffset = offsets[end];
+    }
+
+    /**
+     * Creates a view of the part of the given route's base that lies between
+     * two distances along the base. The view is valid since its base is, so
+     * it is not checked again.
+     * 
+     * @require 0 <= startOffset < endOffset <= the length of the base of
+     *          route
+     */
+    private Route(Route route, int startOffset, int endOffset) {
+        this.segments = route.segments;
+        this.offsets = route.offsets;
+        this.first = upperBound(offsets, route.first, route.end, startOffset);
+        this.end = lowerBound(offsets, first, route.end, endOffset);
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
     }
 
     /**
@@ -82,11 +148,7 @@ public class Route implements Iterable<Segment> {
      * @return the length of the route.
      */
     public int getLength() {
-        int result = 0;
-        for (Segment segment : segments) {
-            result += segment.getLength();
-        }
-        return result;
+        return endOffset - startOffset;
     }
 
     /**
@@ -104,8 +166,9 @@ public class Route implements Iterable<Segment> {
         if (track == null) {
             throw new NullPointerException("Parameter cannot be null");
         }
-        for (Segment segment : segments) {
-            if (!track.contains(segment.getSection())) {
+        for (int i = first; i < end; i++) {
+            // every part of a segment is on the same section
+            if (!track.contains(segments[i].getSection())) {
                 return false;
             }
         }
@@ -116,6 +179,9 @@ public class Route implements Iterable<Segment> {
      * Returns the sub-route of this route that starts at startOffset meters
      * into this route and ends endOffset meters into this route.
      * 
+     * The sub-route is a view of this route, so it is returned in constant
+     * time, and only the segments within it are visited when it is used.
+     * 
      * @param startOffset
      *            the start offset of the sub-route to return
      * @param endOffset
@@ -131,32 +197,28 @@ public class Route implements Iterable<Segment> {
                 .getLength())) {
             throw new IllegalArgumentException("Subroute is out of bounds.");
         }
-        // the sub-segments that will make up the sub-route
-        List<Segment> subsegments = new ArrayList<>();
-        // variable offset is the distance along the route to the start of the
-        // segment currently being examined
-        int offset = 0;
-        for (Segment segment : segments) {
-            if (startOffset - offset < segment.getLength()
-                    && 0 < endOffset - offset) {
-                // part of the segment belongs on the sub-route
-                int subsegmentStartOffset =
-                        segment.getStartOffset()
-                                + Math.max(startOffset - offset, 0);
-                int subsegmentLength =
-                        (Math.min(endOffset - offset, segment.getLength()) - 
-                                Math.max(startOffset - offset, 0));
-                subsegments.add(new Segment(segment.getSection(), segment
-                        .getDepartingEndPoint(), subsegmentStartOffset,
-                        subsegmentStartOffset + subsegmentLength));
-            }
-            offset += segment.getLength();
-        }
-        return new Route(subsegments);
+        return new Route(this, this.startOffset + startOffset,
+                this.startOffset + endOffset);
     }
 
     /**
+     * <p>
      * Returns true if and only if the route given intersects with this route.
+     * </p>
+     * 
+     * <p>
+     * Two routes intersect if a segment of one intersects a segment of the
+     * other. Two segments intersect if either (i) they are on the same section
+     * and they overlap (their first or last locations may coincide), or (ii)
+     * they are on different sections and the first or last location of one of
+     * them is at a junction where the other has its first or last location.
+     * </p>
+     * 
+     * <p>
+     * The segments of this route are indexed by section the first time that
+     * this method is called, so that checking a route with m segments against
+     * a route with n segments takes O(m log n) time.
+     * </p>
      * 
      * @param other
      *            the route to check for intersection
@@ -169,13 +231,47 @@ public class Route implements Iterable<Segment> {
         if (other == null) {
             throw new NullPointerException("Parameter cannot be null.");
         }
-        Route longestDisjointPrefix = longestDisjointPrefix(this, other);
-        return (!this.equals(longestDisjointPrefix));
+        if (index == null) {
+            index = new RouteIndex(this);
+        }
+        return index.intersects(other);
     }
 
+    /**
+     * Returns an unmodifiable list of the segments of the route, in order.
+     * The list is a view of the route, so it is returned in constant time
+     * and supports constant time access to any of its segments.
+     * 
+     * @return the segments of the route
+     */
+    public List<Segment> getSegments() {
+        return new SegmentList();
+    }
+
+    /**
+     * Returns an iterator over the segments of the route, in order. The
+     * iterator does not support removal.
+     */
     @Override
     public Iterator<Segment> iterator() {
-        return segments.iterator();
+        return new Iterator<Segment>() {
+
+            // the index in the base of the next segment to return
+            private int next = first;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public Segment next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return segment(next++);
+            }
+        };
     }
 
     /**
@@ -187,7 +283,7 @@ public class Route implements Iterable<Segment> {
     public String toString() {
         // the string representation to be constructed
         String result = "";
-        for (Segment segment : segments) {
+        for (Segment segment : this) {
             if (!result.equals("")) {
                 result += System.getProperty("line.separator");
             }
@@ -206,139 +302,124 @@ public class Route implements Iterable<Segment> {
             return false;
         }
         Route other = (Route) object;
-        return this.segments.equals(other.segments);
+        if (this.end - this.first != other.end - other.first) {
+            return false;
+        }
+        for (int i = 0; i < end - first; i++) {
+            if (!segment(first + i).equals(other.segment(other.first + i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    /**
+     * Returns the hash code of the list of segments of the route.
+     */
     @Override
     public int hashCode() {
-        return segments.hashCode();
+        int result = 1;
+        for (Segment segment : this) {
+            result = 31 * result + segment.hashCode();
+        }
+        return result;
     }
 
     /**
-     * Returns the longest prefix of routeA that doesn't intersect with routeB.
+     * Returns the segment of this route that is the part of the segment of
+     * the base with index i that lies on this route.
      * 
-     * @throws NullPointerException
-     *             if routeA == null or routeB == null
-     * @ensure returns the longest prefix of routeA that doesn't overlap with
-     *         any of the locations in routeB.
+     * @require first <= i < end
      */
-    private static Route longestDisjointPrefix(Route routeA, Route routeB) {
-        if (routeA == null || routeB == null) {
-            throw new NullPointerException("Parameters cannot be null");
-        }
-
-        // the segments of the longest disjoint prefix of routeA
-        List<Segment> segments = new ArrayList<Segment>();
-
-        for (Segment segmentA : routeA) {
-            // calculate the longest disjoint prefix of segmentA and routeB
-            Segment prefix = segmentA;
-            for (Segment segmentB : routeB) {
-                prefix = longestDisjointPrefix(prefix, segmentB);
-                if (prefix == null) {
-                    // only the empty prefix of segmentA doesn't intersect: the
-                    // result calculated so far is the longest disjoint prefix
-                    return new Route(segments);
-                }
+    private Segment segment(int i) {
+        if (i == first) {
+            if (firstSegment == null) {
+                firstSegment = trim(i);
             }
-            segments.add(prefix);
-            if (!segmentA.equals(prefix)) {
-                // segmentA does intersect with routeB: the
-                // result calculated so far is the longest disjoint prefix
-                return new Route(segments);
+            return firstSegment;
+        }
+        if (i == end - 1) {
+            if (lastSegment == null) {
+                lastSegment = trim(i);
             }
+            return lastSegment;
         }
-        return new Route(segments);
+        return segments[i];
     }
 
     /**
-     * Returns the longest prefix of segmentA that doesn't intersect with
-     * segmentB. The value null is returned if such a segment would be empty or
-     * have length 0.
-     * 
-     * @throws NullPointerException
-     *             if segmentA == null or segmentB == null
-     * @return returns the longest prefix of segmentA that doesn't overlap with
-     *         any of the locations in segmentB. The value null is returned if
-     *         such a segment would be empty or have length 0.
+     * Returns the part of the segment of the base with index i that lies
+     * between startOffset and endOffset.
      */
-    private static Segment longestDisjointPrefix(Segment segmentA,
-            Segment segmentB) {
-
-        if (segmentA == null || segmentB == null) {
-            throw new NullPointerException("Parameters cannot be null");
+    private Segment trim(int i) {
+        Segment segment = segments[i];
+        // the distances into the segment where the part starts and ends
+        int from = Math.max(startOffset - offsets[i], 0);
+        int to = Math.min(endOffset - offsets[i], segment.getLength());
+        if (from == 0 && to == segment.getLength()) {
+            return segment;
         }
+        return new Segment(segment.getSection(), segment
+                .getDepartingEndPoint(), segment.getStartOffset() + from,
+                segment.getStartOffset() + to);
+    }
 
-        if (!segmentA.getSection().equals(segmentB.getSection())) {
-            // (i) They are not on the same section.
-            // Only the first or last locations might overlap in this case.
+    /**
+     * An unmodifiable list view of the segments of the route.
+     */
+    private class SegmentList extends AbstractList<Segment> implements
+            RandomAccess {
 
-            if (segmentB.contains(segmentA.getFirstLocation())) {
-                // the longest disjoint prefix is empty
-                return null;
-            } else if (segmentB.contains(segmentA.getLastLocation())) {
-                // the prefix has all but the last location of segmentA
-                if (segmentA.getLength() == 1) {
-                    return null; // the longest disjoint prefix has length 0
-                } else {
-                    return new Segment(segmentA.getSection(), segmentA
-                            .getDepartingEndPoint(), segmentA.getStartOffset(),
-                            segmentA.getEndOffset() - 1);
-                }
-            } else {
-                // segmentA and segmentB do not intersect
-                return segmentA;
-            }
-        } else {
-            // (ii) They are on the same section.
-            // We first invert segmentB's direction if necessary so that its
-            // interval on the section can be readily compared to segmentA's.
-            if (!segmentB.getDepartingEndPoint().equals(
-                    segmentA.getDepartingEndPoint())) {
-                segmentB = invertDirection(segmentB);
+        @Override
+        public Segment get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index);
             }
+            return segment(first + index);
+        }
+
+        @Override
+        public int size() {
+            return end - first;
+        }
+    }
 
-            if (segmentA.getEndOffset() < segmentB.getStartOffset()
-                    || segmentB.getEndOffset() < segmentA.getStartOffset()) {
-                // the intervals do not overlap
-                return segmentA;
+    /**
+     * Returns the number of segments with indices from <= i < to whose start
+     * offset is less than key, plus from. Since the segments have positive
+     * lengths, this is the index of the first of those segments that starts
+     * at or after key.
+     */
+    private static int lowerBound(int[] offsets, int from, int to, int key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (offsets[middle] < key) {
+                low = middle + 1;
             } else {
-                // the intervals do overlap
-                if (segmentB.getStartOffset() <= segmentA.getStartOffset()) {
-                    // the first location in segmentA is also in segmentB.
-                    return null; // the longest disjoint prefix is empty
-                } else {
-                    // the first location of segmentA is not in segmentB.
-                    if (segmentB.getStartOffset() - 1
-                            - segmentA.getStartOffset() < 1) {
-                        return null; // the longest disjoint prefix has length 0
-                    } else {
-                        return new Segment(segmentA.getSection(), segmentA
-                                .getDepartingEndPoint(), segmentA
-                                .getStartOffset(),
-                                segmentB.getStartOffset() - 1);
-                    }
-                }
+                high = middle;
             }
         }
+        return low;
     }
 
     /**
-     * Returns a segment that occupies the same locations as the given segment,
-     * but whose direction of travel has been reversed.
-     * 
-     * @throws NullPointerException
-     *             if segment == null
-     * @return returns the inverted segment
+     * Returns the number of segments with indices from <= i < to that end at
+     * or before key, plus from. This is the index of the first of those
+     * segments that ends after key.
      */
-    private static Segment invertDirection(Segment segment) {
-        // the parameters of the inverted section
-        Section section = segment.getSection();
-        JunctionBranch endPoint =
-                section.otherEndPoint(segment.getDepartingEndPoint());
-        int startOffset = section.getLength() - segment.getEndOffset();
-        int endOffset = section.getLength() - segment.getStartOffset();
-        return new Segment(section, endPoint, startOffset, endOffset);
+    private static int upperBound(int[] offsets, int from, int to, int key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (offsets[middle + 1] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
     }
-
 }
@@ -0,0 +1,229 @@
+package railway;
+
+import java.util.*;
+
+/**
+ * <p>
+ * An immutable index of the segments of a route, used to determine whether
+ * another route intersects with it without comparing every pair of segments.
+ * </p>
+ *
+ * <p>
+ * Two segments intersect if either (i) they lie on the same section and their
+ * intervals of offsets overlap, once both are measured from the same
+ * end-point of the section, or (ii) they lie on different sections and the
+ * first or last location of one of them is at a junction where the other one
+ * also has its first or last location. Two routes intersect if a segment of
+ * one intersects a segment of the other.
+ * </p>
+ */
+class RouteIndex {
+
+    // the intervals occupied by the segments on each section
+    private final Map<Section, Intervals> sections;
+    // the sections of segments with a first or last location at each junction
+    private final Map<Junction, Touches> junctions;
+
+    /**
+     * Creates an index of the given segments.
+     *
+     * @require segments != null && !segments.contains(null)
+     */
+    RouteIndex(Iterable<Segment> segments) {
+        // the intervals of each section, in the order they were found
+        Map<Section, List<int[]>> found = new HashMap<>();
+        // the reference end-point of each section
+        Map<Section, JunctionBranch> references = new HashMap<>();
+        junctions = new HashMap<>();
+
+        for (Segment segment : segments) {
+            Section section = segment.getSection();
+            if (!references.containsKey(section)) {
+                references.put(section, segment.getDepartingEndPoint());
+                found.put(section, new ArrayList<int[]>());
+            }
+            found.get(section).add(
+                    normalise(segment, references.get(section)));
+
+            if (segment.getStartOffset() == 0) {
+                touch(segment.getDepartingEndPoint().getJunction(), section);
+            }
+            if (segment.getEndOffset() == section.getLength()) {
+                touch(segment.getApproachingEndPoint().getJunction(), section);
+            }
+        }
+
+        sections = new HashMap<>();
+        for (Map.Entry<Section, List<int[]>> entry : found.entrySet()) {
+            sections.put(entry.getKey(), new Intervals(references.get(entry
+                    .getKey()), entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns true if and only if the given route intersects with the route
+     * that this index was created from.
+     *
+     * @require route != null
+     */
+    boolean intersects(Iterable<Segment> route) {
+        for (Segment segment : route) {
+            if (intersects(segment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if and only if the given segment intersects with a segment
+     * of the route that this index was created from.
+     *
+     * @require segment != null
+     */
+    boolean intersects(Segment segment) {
+        Section section = segment.getSection();
+
+        // (i) overlapping intervals on the same section
+        Intervals intervals = sections.get(section);
+        if (intervals != null) {
+            int start, end; // the segment's interval w.r.t. the reference
+            if (segment.getDepartingEndPoint().equals(intervals.reference)) {
+                start = segment.getStartOffset();
+                end = segment.getEndOffset();
+            } else {
+                start = section.getLength() - segment.getEndOffset();
+                end = section.getLength() - segment.getStartOffset();
+            }
+            if (intervals.overlaps(start, end)) {
+                return true;
+            }
+        }
+
+        // (ii) a common junction at the end of segments on different sections
+        if (segment.getStartOffset() == 0
+                && touchedFromOtherSection(segment.getDepartingEndPoint()
+                        .getJunction(), section)) {
+            return true;
+        }
+        if (segment.getEndOffset() == section.getLength()
+                && touchedFromOtherSection(segment.getApproachingEndPoint()
+                        .getJunction(), section)) {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if a segment on a section other than the given one has a
+     * first or last location at the given junction.
+     */
+    private boolean touchedFromOtherSection(Junction junction, Section section) {
+        Touches touches = junctions.get(junction);
+        return touches != null
+                && (touches.several || !touches.section.equals(section));
+    }
+
+    /**
+     * Records that a segment on the given section has a first or last location
+     * at the given junction.
+     */
+    private void touch(Junction junction, Section section) {
+        Touches touches = junctions.get(junction);
+        if (touches == null) {
+            junctions.put(junction, new Touches(section));
+        } else if (!touches.section.equals(section)) {
+            touches.several = true;
+        }
+    }
+
+    /**
+     * Returns the interval of offsets of the given segment, measured from the
+     * given end-point of its section.
+     *
+     * @require segment != null &&
+     *          segment.getSection().hasEndPoint(reference)
+     */
+    private static int[] normalise(Segment segment, JunctionBranch reference) {
+        if (segment.getDepartingEndPoint().equals(reference)) {
+            return new int[] { segment.getStartOffset(),
+                    segment.getEndOffset() };
+        } else {
+            // the direction of the segment is inverted
+            int length = segment.getSection().getLength();
+            return new int[] { length - segment.getEndOffset(),
+                    length - segment.getStartOffset() };
+        }
+    }
+
+    /**
+     * The closed intervals of offsets on one section, measured from a
+     * reference end-point, sorted by their start so that an overlap can be
+     * found with a binary search.
+     */
+    private static class Intervals {
+
+        // the end-point that the offsets are measured from
+        final JunctionBranch reference;
+        // the start of each interval, in ascending order
+        final int[] starts;
+        // maxEnds[i] is the greatest end of the intervals 0 to i
+        final int[] maxEnds;
+
+        Intervals(JunctionBranch reference, List<int[]> intervals) {
+            this.reference = reference;
+            intervals.sort((a, b) -> Integer.compare(a[0], b[0]));
+            starts = new int[intervals.size()];
+            maxEnds = new int[intervals.size()];
+            for (int i = 0; i < intervals.size(); i++) {
+                starts[i] = intervals.get(i)[0];
+                maxEnds[i] = (i == 0) ? intervals.get(i)[1] : Math.max(
+                        maxEnds[i - 1], intervals.get(i)[1]);
+            }
+        }
+
+        /**
+         * Returns true if any of the intervals overlaps with the closed
+         * interval from start to end.
+         */
+        boolean overlaps(int start, int end) {
+            // the number of intervals that start at or before end
+            int count = upperBound(starts, end);
+            return count > 0 && maxEnds[count - 1] >= start;
+        }
+
+        /**
+         * Returns the number of values in the sorted array that are less than
+         * or equal to key.
+         */
+        private static int upperBound(int[] sorted, int key) {
+            int low = 0;
+            int high = sorted.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (sorted[middle] <= key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * The sections of the segments that have a first or last location at one
+     * junction.
+     */
+    private static class Touches {
+
+        // a section with a segment at the junction
+        final Section section;
+        // whether segments on more than one section are at the junction
+        boolean several;
+
+        Touches(Section section) {
+            this.section = section;
+        }
+    }
+}
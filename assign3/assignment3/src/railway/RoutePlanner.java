@@ -0,0 +1,274 @@
+package railway;
+
+import java.util.*;
+
+/**
+ * Provides a method to plan the shortest route between two locations on a
+ * track.
+ */
+public class RoutePlanner {
+
+    /**
+     * <p>
+     * Returns the shortest valid route on the given track that starts at
+     * location from and ends at location to, or null if there is no such
+     * route.
+     * </p>
+     *
+     * <p>
+     * The length of a route is the sum of the lengths of its segments. A route
+     * is valid if it satisfies the conditions checked by the constructor of
+     * the Route class: consecutive segments meet at a junction, and a train
+     * that approaches a junction along its FACING branch departs along one of
+     * its other branches, while a train that approaches along a NORMAL or
+     * REVERSE branch departs along the FACING branch. There is no restriction
+     * on the direction of travel at the start of the route.
+     * </p>
+     *
+     * <p>
+     * If from and to are equivalent locations, then the route returned has no
+     * segments.
+     * </p>
+     *
+     * <p>
+     * The route is found using Dijkstra's algorithm, where the states of the
+     * search are the end-points that a train may arrive at, and the edges are
+     * the sections of the track weighted by their length.
+     * </p>
+     *
+     * @param track
+     *            the track on which the route will be planned
+     * @param from
+     *            the first location of the route
+     * @param to
+     *            the last location of the route
+     * @throws NullPointerException
+     *             if any parameter is null
+     * @throws IllegalArgumentException
+     *             if either location is not on the track
+     * @return the shortest valid route from location from to location to, or
+     *         null if there is no such route.
+     */
+    public static Route shortestRoute(Track track, Location from, Location to)
+            throws NullPointerException, IllegalArgumentException {
+        if (track == null || from == null || to == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        checkOnTrack(track, from);
+        checkOnTrack(track, to);
+
+        if (from.equals(to)) {
+            return new Route(new ArrayList<Segment>());
+        }
+
+        // the candidate routes ordered by length
+        PriorityQueue<Candidate> heap = new PriorityQueue<>();
+        // the shortest distance found so far to each end-point
+        Map<JunctionBranch, Long> best = new HashMap<>();
+        // the end-points whose shortest distance is known
+        Set<JunctionBranch> settled = new HashSet<>();
+
+        if (from.atAJunction()) {
+            // the train may depart the junction along any of its branches
+            expand(track, to, heap, best, from.getEndPoint().getJunction(),
+                    null, null);
+        } else {
+            // the train may travel in either direction along its section
+            Section section = from.getSection();
+            JunctionBranch endPoint = from.getEndPoint();
+            JunctionBranch otherEndPoint = section.otherEndPoint(endPoint);
+            int offset = from.getOffset();
+            int length = section.getLength();
+
+            offer(heap, best, new Candidate(length - offset, otherEndPoint,
+                    section, endPoint, offset, length, null));
+            offer(heap, best, new Candidate(offset, endPoint, section,
+                    otherEndPoint, length - offset, length, null));
+
+            if (!to.atAJunction() && to.getSection().equals(section)) {
+                // the offset of the destination with respect to endPoint
+                int target = offsetFrom(to, endPoint);
+                if (target > offset) {
+                    heap.add(new Candidate(target - offset, null, section,
+                            endPoint, offset, target, null));
+                } else {
+                    heap.add(new Candidate(offset - target, null, section,
+                            otherEndPoint, length - offset, length - target,
+                            null));
+                }
+            }
+        }
+
+        while (!heap.isEmpty()) {
+            Candidate candidate = heap.poll();
+            if (candidate.arrival == null) {
+                // the candidate ends at the destination
+                return toRoute(candidate);
+            }
+            if (!settled.add(candidate.arrival)) {
+                // a shorter route to this end-point has already been expanded
+                continue;
+            }
+            if (to.atAJunction()
+                    && candidate.arrival.getJunction().equals(
+                            to.getEndPoint().getJunction())) {
+                return toRoute(candidate);
+            }
+            expand(track, to, heap, best, candidate.arrival.getJunction(),
+                    candidate.arrival.getBranch(), candidate);
+        }
+        return null; // the destination cannot be reached
+    }
+
+    /**
+     * Adds to the heap a candidate for each section that a train at the given
+     * junction may depart along, having approached it along the given branch.
+     * A candidate ending at the destination is also added for each of those
+     * sections that the destination lies within.
+     *
+     * @require track, to, heap, best and junction are not null, and the
+     *          distance of parent (or zero if parent is null) is the shortest
+     *          distance to the junction when approached along branch
+     *          approach.
+     * @ensure If approach is null, then the train may depart the junction
+     *         along any of its branches.
+     */
+    private static void expand(Track track, Location to,
+            PriorityQueue<Candidate> heap, Map<JunctionBranch, Long> best,
+            Junction junction, Branch approach, Candidate parent) {
+        // the distance travelled to reach the junction
+        long distance = (parent == null) ? 0 : parent.distance;
+        for (Branch departure : Branch.values()) {
+            if (approach != null
+                    && (approach == Branch.FACING) == (departure == Branch.FACING)) {
+                // the direction of travel through the junction is not possible
+                continue;
+            }
+            // the section connected to the junction on the departure branch
+            Section section = track.getTrackSection(junction, departure);
+            if (section == null) {
+                continue;
+            }
+            JunctionBranch endPoint = JunctionBranch.valueOf(junction,
+                    departure);
+            if (!to.atAJunction() && to.getSection().equals(section)) {
+                // the offset of the destination with respect to endPoint
+                int target = offsetFrom(to, endPoint);
+                heap.add(new Candidate(distance + target, null, section,
+                        endPoint, 0, target, parent));
+            }
+            offer(heap, best, new Candidate(distance + section.getLength(),
+                    section.otherEndPoint(endPoint), section, endPoint, 0,
+                    section.getLength(), parent));
+        }
+    }
+
+    /**
+     * Adds the candidate to the heap if it is shorter than any candidate found
+     * so far that arrives at the same end-point.
+     *
+     * @require heap, best and candidate are not null, and candidate.arrival !=
+     *          null
+     */
+    private static void offer(PriorityQueue<Candidate> heap,
+            Map<JunctionBranch, Long> best, Candidate candidate) {
+        // the shortest distance found so far to the candidate's end-point
+        Long shortest = best.get(candidate.arrival);
+        if (shortest == null || candidate.distance < shortest) {
+            best.put(candidate.arrival, candidate.distance);
+            heap.add(candidate);
+        }
+    }
+
+    /**
+     * Returns the route made up of the segments of the given candidate and
+     * its predecessors.
+     *
+     * @require candidate != null
+     */
+    private static Route toRoute(Candidate candidate) {
+        // the segments of the route in reverse order
+        List<Segment> segments = new ArrayList<>();
+        for (Candidate step = candidate; step != null; step = step.previous) {
+            segments.add(new Segment(step.section, step.departure,
+                    step.startOffset, step.endOffset));
+        }
+        Collections.reverse(segments);
+        return new Route(segments);
+    }
+
+    /**
+     * Returns the offset of the given location with respect to the given
+     * end-point of its section.
+     *
+     * @require location != null && endPoint != null &&
+     *          !location.atAJunction() &&
+     *          location.getSection().hasEndPoint(endPoint)
+     */
+    private static int offsetFrom(Location location, JunctionBranch endPoint) {
+        if (location.getEndPoint().equals(endPoint)) {
+            return location.getOffset();
+        } else {
+            return location.getSection().getLength() - location.getOffset();
+        }
+    }
+
+    /**
+     * Checks that the given location lies on the track.
+     *
+     * @require track != null && location != null
+     * @throws IllegalArgumentException
+     *             if the location is at a junction that is not on the track,
+     *             or if it is not at a junction and its section is not on the
+     *             track.
+     */
+    private static void checkOnTrack(Track track, Location location)
+            throws IllegalArgumentException {
+        if (location.atAJunction()) {
+            if (!track.getJunctions().contains(
+                    location.getEndPoint().getJunction())) {
+                throw new IllegalArgumentException("The location " + location
+                        + " is not on the track.");
+            }
+        } else if (!track.contains(location.getSection())) {
+            throw new IllegalArgumentException("The location " + location
+                    + " is not on the track.");
+        }
+    }
+
+    /**
+     * A route under consideration by the search: the last segment of the
+     * route, and the candidate that it extends.
+     */
+    private static class Candidate implements Comparable<Candidate> {
+
+        // the length of the route
+        final long distance;
+        // the end-point reached, or null if the route ends at the destination
+        final JunctionBranch arrival;
+        // the parameters of the last segment of the route
+        final Section section;
+        final JunctionBranch departure;
+        final int startOffset;
+        final int endOffset;
+        // the candidate that this one extends, or null if it is the first
+        final Candidate previous;
+
+        Candidate(long distance, JunctionBranch arrival, Section section,
+                JunctionBranch departure, int startOffset, int endOffset,
+                Candidate previous) {
+            this.distance = distance;
+            this.arrival = arrival;
+            this.section = section;
+            this.departure = departure;
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.previous = previous;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Long.compare(this.distance, other.distance);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package railway;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * An immutable record of the outcome of reading one route file in a batch,
+ * as returned by RouteReader.readAll.
+ * </p>
+ *
+ * <p>
+ * If the file was read, the result has the route read from it and whether
+ * that route is on the track it was checked against. Otherwise the result has
+ * the IOException or FormatException that RouteReader.read threw for the file.
+ * </p>
+ */
+public class RouteReadResult {
+
+    // the name of the file that was read
+    private final String fileName;
+    // the route read from the file, or null if it could not be read
+    private final Route route;
+    // whether the route is on the track it was checked against
+    private final boolean onTrack;
+    // the exception thrown reading the file, or null if it was read
+    private final Exception error;
+
+    /*
+     * invariant: fileName != null && exactly one of route and error is null
+     * && error is null or an IOException or a FormatException && !onTrack if
+     * route is null
+     */
+
+    /**
+     * Creates the result of reading the given route from a file, and
+     * checking whether it is on a track.
+     *
+     * @require fileName != null && route != null
+     */
+    RouteReadResult(String fileName, Route route, boolean onTrack) {
+        this.fileName = fileName;
+        this.route = route;
+        this.onTrack = onTrack;
+        this.error = null;
+    }
+
+    /**
+     * Creates the result of failing to read a file.
+     *
+     * @require fileName != null && error is an IOException or a
+     *          FormatException
+     */
+    RouteReadResult(String fileName, Exception error) {
+        this.fileName = fileName;
+        this.route = null;
+        this.onTrack = false;
+        this.error = error;
+    }
+
+    /**
+     * Returns the name of the file that was read.
+     *
+     * @return the name of the file
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns true if the route was read from the file and is on the track
+     * it was checked against.
+     *
+     * @return whether a route on the track was read from the file
+     */
+    public boolean isValid() {
+        return route != null && onTrack;
+    }
+
+    /**
+     * Returns the route read from the file, whether or not it is on the
+     * track, or null if the file could not be read.
+     *
+     * @return the route read, or null
+     */
+    public Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Returns true if the route read from the file is on the track that it
+     * was checked against, and false if it is not or the file could not be
+     * read.
+     *
+     * @return whether the route is on the track
+     */
+    public boolean isOnTrack() {
+        return onTrack;
+    }
+
+    /**
+     * Returns the IOException or FormatException thrown reading the file, or
+     * null if the route was read.
+     *
+     * @return the exception thrown reading the file, or null
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        if (error != null) {
+            return fileName + ": " + error;
+        }
+        return fileName + ": " + (onTrack ? "on the track"
+                : "not on the track");
+    }
+
+    /**
+     * Determines whether this class is internally consistent (i.e. it
+     * satisfies its class invariant).
+     *
+     * This method is only intended for testing purposes.
+     *
+     * @return true if this class is internally consistent, and false
+     *         otherwise.
+     */
+    public boolean checkInvariant() {
+        return fileName != null && ((route == null) != (error == null))
+                && (error == null || error instanceof IOException
+                        || error instanceof FormatException)
+                && (route != null || !onTrack);
+    }
+}
@@ -1,7 +1,14 @@
 package railway;
 
+import railway.metrics.Operation;
+import railway.metrics.RailwayMetrics;
+
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Provides a method to read a route from a text file.
@@ -76,6 +83,111 @@ public class RouteReader {
      */
     public static Route read(String fileName) throws IOException,
             FormatException {
+        long started = RailwayMetrics.start();
+        try {
+            return readSegments(fileName);
+        } finally {
+            RailwayMetrics.stop(Operation.READ_ROUTE, started);
+        }
+    }
+
+    /**
+     * <p>
+     * Reads the routes in each of the given files, in parallel, and checks
+     * whether each of them is on the given track.
+     * </p>
+     *
+     * <p>
+     * Each file is read by the read method on a pool of at most threads
+     * threads, which is shut down before this method returns. A file that
+     * cannot be read does not stop the others from being read: its result
+     * has the IOException or FormatException that read threw for it instead
+     * of a route. The results are returned in the same order as the file
+     * names.
+     * </p>
+     *
+     * <p>
+     * The track must not be changed while the routes are being read.
+     * </p>
+     *
+     * @param fileNames
+     *            the names of the files to read from
+     * @param track
+     *            the track to check the routes against
+     * @param threads
+     *            the largest number of files to read at once
+     * @return the result of reading each file, in the order of fileNames
+     * @throws NullPointerException
+     *             if fileNames or track is null, or fileNames contains null
+     * @throws IllegalArgumentException
+     *             if threads is not positive
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting for the
+     *             files to be read, in which case the reads still in progress
+     *             are cancelled
+     */
+    public static List<RouteReadResult> readAll(List<String> fileNames,
+            Track track, int threads) throws NullPointerException,
+            IllegalArgumentException, InterruptedException {
+        if (fileNames == null || track == null || fileNames.contains(null)) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be"
+                    + " positive.");
+        }
+        List<RouteReadResult> results = new ArrayList<>();
+        if (fileNames.isEmpty()) {
+            return results;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads,
+                fileNames.size()));
+        try {
+            // the reads of the files, in order
+            List<Future<RouteReadResult>> reads = new ArrayList<>();
+            for (String fileName : fileNames) {
+                reads.add(pool.submit(() -> readChecked(fileName, track)));
+            }
+            for (Future<RouteReadResult> read : reads) {
+                try {
+                    results.add(read.get());
+                } catch (ExecutionException e) {
+                    // only unchecked exceptions are not caught by the task
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw (RuntimeException) cause;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Reads the route from the file named fileName, and returns the result of
+     * reading it and checking it against the track.
+     *
+     * @require fileName != null && track != null
+     */
+    private static RouteReadResult readChecked(String fileName, Track track) {
+        try {
+            Route route = read(fileName);
+            return new RouteReadResult(fileName, route, route.onTrack(track));
+        } catch (IOException | FormatException e) {
+            return new RouteReadResult(fileName, e);
+        }
+    }
+
+    /**
+     * Reads the route from the file named fileName, as described by the read
+     * method.
+     */
+    private static Route readSegments(String fileName) throws IOException,
+            FormatException {
         // scanner for reading the file a line at a time
         Scanner in = new Scanner(new FileReader(fileName));
         // segments on the route to be returned
@@ -189,7 +301,7 @@ public class RouteReader {
             Scanner lineScanner) throws FormatException {
         try {
             // the junction read from lineScanner
-            Junction junction = new Junction(lineScanner.next());
+            Junction junction = Junction.valueOf(lineScanner.next());
             // the string representation of the branch read from lineScanner
             String branchString = lineScanner.next();
             // the corresponding enumerated type of the branch string
@@ -200,7 +312,7 @@ public class RouteReader {
                 throw new FormatException(errorMessage(lineNumber,
                         "invalid branch: " + branchString));
             }
-            return new JunctionBranch(junction, branch);
+            return JunctionBranch.valueOf(junction, branch);
         } catch (NoSuchElementException e) {
             // thrown if there are not two tokens on the scanner to consume
             throw new FormatException(errorMessage(lineNumber,
@@ -36,11 +36,19 @@ public class Section {
     // the length of the section
     private int length;
     // the end-points of the section
-    private List<JunctionBranch> endPoints;
+    private final JunctionBranch endPoint1;
+    private final JunctionBranch endPoint2;
+    // the lower and higher of the codes of the end-points, which identify the
+    // section together with its length whichever order the end-points are in
+    private final int lowEnd;
+    private final int highEnd;
+    // the hash code of the section
+    private final int hash;
 
     /*
-     * invariant: length > 0 && endPoints != null && !endPoints.contains(null)
-     * && endPoints.size() == 2 && !endPoints.get(0).equals(endPoints.get(1))
+     * invariant: length > 0 && endPoint1 != null && endPoint2 != null &&
+     * !endPoint1.equals(endPoint2) && lowEnd < highEnd && {lowEnd, highEnd}
+     * == {endPoint1.code(), endPoint2.code()}
      */
 
     /**
@@ -75,10 +83,20 @@ public class Section {
             throw new IllegalArgumentException("End-points must be distinct.");
         }
 
-        endPoints = new ArrayList<>();
-        endPoints.add(endPoint1);
-        endPoints.add(endPoint2);
+        this.endPoint1 = endPoint1;
+        this.endPoint2 = endPoint2;
         this.length = length;
+        this.lowEnd = Math.min(endPoint1.code(), endPoint2.code());
+        this.highEnd = Math.max(endPoint1.code(), endPoint2.code());
+
+        // creates a polynomial hash-code based on the length of the section and
+        // its two end-points (in a fixed order).
+        final int prime = 31; // an odd base prime
+        int result = 1; // the hash code under construction
+        result = prime * result + length;
+        result = prime * result + lowEnd;
+        result = prime * result + highEnd;
+        this.hash = result;
     }
 
     /**
@@ -90,13 +108,60 @@ public class Section {
         return length;
     }
 
+    /**
+     * Returns the lower of the codes of the end-points of the section.
+     */
+    int lowEnd() {
+        return lowEnd;
+    }
+
+    /**
+     * Returns the higher of the codes of the end-points of the section.
+     */
+    int highEnd() {
+        return highEnd;
+    }
+
     /**
      * Returns the end-points of the section.
      * 
      * @return a set of the end-points of the section.
      */
     public Set<JunctionBranch> getEndPoints() {
-        return new HashSet<>(endPoints);
+        return new HashSet<>(Arrays.asList(endPoint1, endPoint2));
+    }
+
+    /**
+     * Returns the first end-point that the section was created with. Unlike
+     * getEndPoints, this does not create a new object.
+     * 
+     * @return the first end-point of the section.
+     */
+    public JunctionBranch getEndPoint1() {
+        return endPoint1;
+    }
+
+    /**
+     * Returns the second end-point that the section was created with. Unlike
+     * getEndPoints, this does not create a new object.
+     * 
+     * @return the second end-point of the section.
+     */
+    public JunctionBranch getEndPoint2() {
+        return endPoint2;
+    }
+
+    /**
+     * Returns true if and only if the given end-point is equivalent to one of
+     * the end-points of the section. This is equivalent to
+     * getEndPoints().contains(endPoint), without creating a new set.
+     * 
+     * @param endPoint
+     *            the end-point to check
+     * @return true iff endPoint is an end-point of this section
+     */
+    public boolean hasEndPoint(JunctionBranch endPoint) {
+        return endPoint1.equals(endPoint) || endPoint2.equals(endPoint);
     }
 
     /**
@@ -112,14 +177,14 @@ public class Section {
      * @return the end-point at the opposite end of the section to endPoint
      */
     public JunctionBranch otherEndPoint(JunctionBranch endPoint) {
-        if (!endPoints.contains(endPoint)) {
+        if (!hasEndPoint(endPoint)) {
             throw new IllegalArgumentException("The given parameter "
                     + endPoint + " is not an end-point of this section.");
         }
-        if (endPoints.get(0).equals(endPoint)) {
-            return endPoints.get(1);
+        if (endPoint1.equals(endPoint)) {
+            return endPoint2;
         } else {
-            return endPoints.get(0);
+            return endPoint1;
         }
     }
 
@@ -141,7 +206,7 @@ public class Section {
      */
     @Override
     public String toString() {
-        return length + " " + endPoints.get(0) + " " + endPoints.get(1);
+        return length + " " + endPoint1 + " " + endPoint2;
     }
 
     /**
@@ -163,23 +228,14 @@ public class Section {
             return false;
         }
         Section other = (Section) object;
-        return this.length == other.length
-                && this.endPoints.contains(other.endPoints.get(0))
-                && this.endPoints.contains(other.endPoints.get(1));
+        return this.hash == other.hash && this.length == other.length
+                && this.lowEnd == other.lowEnd
+                && this.highEnd == other.highEnd;
     }
 
     @Override
     public int hashCode() {
-        /*
-         * creates a polynomial hash-code based on the length of the section and
-         * its two end-points (which can appear in either order).
-         */
-        final int prime = 31; // an odd base prime
-        int result = 1; // the hash code under construction
-        result = prime * result + length;
-        result = prime * result + endPoints.get(0).hashCode()
-                        + endPoints.get(1).hashCode();
-        return result;
+        return hash;
     }
 
     /**
@@ -191,9 +247,10 @@ public class Section {
      * @return true if this class is internally consistent, and false otherwise.
      */
     public boolean checkInvariant() {
-        return length > 0 && endPoints != null && !endPoints.contains(null)
-                && endPoints.size() == 2
-                && !endPoints.get(0).equals(endPoints.get(1));
+        return length > 0 && endPoint1 != null && endPoint2 != null
+                && !endPoint1.equals(endPoint2) && lowEnd < highEnd
+                && lowEnd == Math.min(endPoint1.code(), endPoint2.code())
+                && highEnd == Math.max(endPoint1.code(), endPoint2.code());
     }
 
 }
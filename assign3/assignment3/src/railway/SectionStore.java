@@ -0,0 +1,73 @@
+package railway;
+
+import java.util.*;
+
+/**
+ * <p>
+ * The storage used by a Track to hold its sections, and to look them up by
+ * their end-points.
+ * </p>
+ *
+ * <p>
+ * A store may hold at most one section with each end-point; it is up to the
+ * track to check that before adding a section. The iterator of a store need
+ * not support removal.
+ * </p>
+ */
+public interface SectionStore extends Iterable<Section> {
+
+    /**
+     * Returns the number of sections in the store.
+     *
+     * @return the number of sections in the store
+     */
+    int size();
+
+    /**
+     * Returns true if the store holds a section that is equivalent to the
+     * given one.
+     *
+     * @param section
+     *            the section to look for
+     * @return true iff an equivalent section is in the store
+     */
+    boolean contains(Section section);
+
+    /**
+     * Returns the section in the store with the given end-point, or null if
+     * there is no such section.
+     *
+     * @param endPoint
+     *            the end-point of the section
+     * @require endPoint != null
+     * @return the section with the given end-point, or null
+     */
+    Section get(JunctionBranch endPoint);
+
+    /**
+     * Adds the given section to the store.
+     *
+     * @param section
+     *            the section to add
+     * @require section != null && get(section.getEndPoint1()) == null &&
+     *          get(section.getEndPoint2()) == null
+     */
+    void add(Section section);
+
+    /**
+     * Removes the section equivalent to the given one from the store.
+     *
+     * @param section
+     *            the section to remove
+     * @require section != null && contains(section)
+     */
+    void remove(Section section);
+
+    /**
+     * Returns an unmodifiable view of the junctions at the end-points of the
+     * sections in the store. The view reflects later changes to the store.
+     *
+     * @return the junctions of the sections in the store
+     */
+    Set<Junction> junctions();
+}
@@ -44,13 +44,15 @@ package railway;
 public class Segment {
 
     // the section that this segment is part of
-    private Section section;
+    private final Section section;
     // the departing end-point of the segment
-    private JunctionBranch departingEndPoint;
+    private final JunctionBranch departingEndPoint;
     // the offset of the first location with respect to departingEndPoint
-    private int startOffset;
+    private final int startOffset;
     // the offset of the last location with respect to the departingEndPoint
-    private int endOffset;
+    private final int endOffset;
+    // the hash code of the segment
+    private final int hash;
 
     /*
      * invariant:
@@ -60,6 +62,9 @@ public class Segment {
      * && section.getEndPoints().contains(departingEndPoint)
      * 
      * && 0 <= startOffset < endOffset <= section.getLength()
+     * 
+     * && hash is the polynomial hash of section, departingEndPoint,
+     * startOffset and endOffset
      */
 
     /**
@@ -96,7 +101,7 @@ public class Segment {
         if (section == null || departingEndPoint == null) {
             throw new NullPointerException("Parameters cannot be null.");
         }
-        if (!section.getEndPoints().contains(departingEndPoint)) {
+        if (!section.hasEndPoint(departingEndPoint)) {
             throw new IllegalArgumentException(
                     "Parameter departingEndPoint must be "
                             + " and end-point of the given section.");
@@ -113,6 +118,22 @@ public class Segment {
         this.departingEndPoint = departingEndPoint;
         this.startOffset = startOffset;
         this.endOffset = endOffset;
+        this.hash = hash(section, departingEndPoint, startOffset, endOffset);
+    }
+
+    /**
+     * Returns a polynomial hash-code based on the section, departing
+     * end-point, and start and end offsets of a segment.
+     */
+    private static int hash(Section section, JunctionBranch departingEndPoint,
+            int startOffset, int endOffset) {
+        final int prime = 31; // an odd base prime
+        int result = 1; // the hash code under construction
+        result = prime * result + section.hashCode();
+        result = prime * result + departingEndPoint.hashCode();
+        result = prime * result + startOffset;
+        result = prime * result + endOffset;
+        return result;
     }
 
     /**
@@ -238,10 +259,14 @@ public class Segment {
              * The location is at a junction.
              * 
              * The only locations on this segment where it could be are the
-             * first and last location of the segment.
+             * first and last location of the segment, if they are at the
+             * departing and approaching junctions respectively.
              */
-            return (location.equals(this.getFirstLocation()) || location
-                    .equals(this.getLastLocation()));
+            Junction junction = location.getEndPoint().getJunction();
+            return (startOffset == 0 && junction.equals(departingEndPoint
+                    .getJunction()))
+                    || (endOffset == section.getLength() && junction
+                            .equals(getApproachingEndPoint().getJunction()));
         } else {
             /*
              * The location is not at a junction.
@@ -281,7 +306,7 @@ public class Segment {
             return false;
         }
         Segment other = (Segment) object;
-        return this.section.equals(other.section)
+        return this.hash == other.hash && this.section.equals(other.section)
                 && this.departingEndPoint.equals(other.departingEndPoint)
                 && this.startOffset == other.startOffset
                 && this.endOffset == other.endOffset;
@@ -289,17 +314,7 @@ public class Segment {
 
     @Override
     public int hashCode() {
-        /*
-         * creates a polynomial hash-code based on the section, departing
-         * end-point, and start and end offsets.
-         */
-        final int prime = 31; // an odd base prime
-        int result = 1; // the hash code under construction
-        result = prime * result + section.hashCode();
-        result = prime * result + departingEndPoint.hashCode();
-        result = prime * result + startOffset;
-        result = prime * result + endOffset;
-        return result;
+        return hash;
     }
 
     /**
@@ -312,9 +327,11 @@ public class Segment {
      */
     public boolean checkInvariant() {
         return section != null
-                && section.getEndPoints().contains(departingEndPoint)
+                && section.hasEndPoint(departingEndPoint)
                 && 0 <= startOffset && startOffset < endOffset
-                && endOffset <= section.getLength();
+                && endOffset <= section.getLength()
+                && hash == hash(section, departingEndPoint, startOffset,
+                        endOffset);
     }
 
 }
@@ -0,0 +1,120 @@
+package railway;
+
+import java.util.*;
+
+/**
+ * <p>
+ * The segments that change when a train moves from one subroute of its route
+ * to another: those of the old subroute that are not on the new one, and
+ * those of the new subroute that were not on the old one. Releasing the first
+ * from an occupancy index and adding the second has the same effect as
+ * replacing the whole of the old subroute by the new one.
+ * </p>
+ *
+ * <p>
+ * The segments of both subroutes are those of the route, except that the
+ * first and last may be cut short, so the segments of the two subroutes differ
+ * only near their fronts and backs. Those differences are found by walking in
+ * from both ends of both subroutes until segments at the same place on the
+ * route match. This takes time proportional to the distance that the train
+ * has moved, rather than the length of the subroutes.
+ * </p>
+ */
+public class SubrouteChange {
+
+    // the segments of the old subroute that are not on the new one
+    private final List<Segment> released;
+    // the segments of the new subroute that are not on the old one
+    private final List<Segment> allocated;
+
+    /**
+     * Finds the segments that change when a train moves from one subroute of
+     * its route to another.
+     *
+     * @param before
+     *            the old subroute
+     * @param after
+     *            the new subroute
+     * @param shift
+     *            the distance along the route from the start of before to the
+     *            start of after
+     * @require before and after are subroutes of the same route
+     * @throws NullPointerException
+     *             if before or after is null
+     */
+    public SubrouteChange(Route before, Route after, int shift)
+            throws NullPointerException {
+        if (before == null || after == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        released = new ArrayList<>();
+        allocated = new ArrayList<>();
+        List<Segment> olds = before.getSegments();
+        List<Segment> news = after.getSegments();
+
+        // walk in from the starts, measuring from the start of before
+        int i = 0;
+        int j = 0;
+        int oldStart = 0;
+        int newStart = shift;
+        while (i < olds.size() && j < news.size()
+                && !(oldStart == newStart && olds.get(i).equals(news.get(j)))) {
+            int oldNext = oldStart;
+            if (oldStart <= newStart) {
+                released.add(olds.get(i));
+                oldNext += olds.get(i++).getLength();
+            }
+            if (newStart <= oldStart) {
+                allocated.add(news.get(j));
+                newStart += news.get(j++).getLength();
+            }
+            oldStart = oldNext;
+        }
+
+        // when the subroutes share no segment, one of them is left over
+        if (i == olds.size() || j == news.size()) {
+            released.addAll(olds.subList(i, olds.size()));
+            allocated.addAll(news.subList(j, news.size()));
+            return;
+        }
+
+        // otherwise walk in from the ends, which stops at the latest at the
+        // shared segment found from the starts
+        int k = olds.size() - 1;
+        int l = news.size() - 1;
+        int oldEnd = before.getLength();
+        int newEnd = shift + after.getLength();
+        while (!(oldEnd == newEnd && olds.get(k).equals(news.get(l)))) {
+            int oldNext = oldEnd;
+            if (oldEnd >= newEnd) {
+                released.add(olds.get(k));
+                oldNext -= olds.get(k--).getLength();
+            }
+            if (newEnd >= oldEnd) {
+                allocated.add(news.get(l));
+                newEnd -= news.get(l--).getLength();
+            }
+            oldEnd = oldNext;
+        }
+    }
+
+    /**
+     * Returns the segments of the old subroute that are not on the new one,
+     * in no particular order.
+     *
+     * @return an unmodifiable list of the released segments
+     */
+    public List<Segment> getReleased() {
+        return Collections.unmodifiableList(released);
+    }
+
+    /**
+     * Returns the segments of the new subroute that were not on the old one,
+     * in no particular order.
+     *
+     * @return an unmodifiable list of the allocated segments
+     */
+    public List<Segment> getAllocated() {
+        return Collections.unmodifiableList(allocated);
+    }
+}
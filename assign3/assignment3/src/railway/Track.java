@@ -25,29 +25,47 @@ public class Track implements Iterable<Section> {
     private final static String LINE_SEPARATOR = System
             .getProperty("line.separator");
 
-    // the sections of the track
-    private Set<Section> sections;
-    // the end-points of the sections in the track
-    private Set<JunctionBranch> endPoints;
+    // the storage holding the sections of the track
+    private SectionStore store;
 
     /*
      * invariant:
      * 
-     * sections!= null && endPoints!=null && !sections.contains(null) &&
+     * store != null && the store does not contain null &&
      * 
-     * endPoints contains an end-point if and only if it is the end-point of a
-     * section in sections &&
-     * 
-     * for each endPoint in endPoints, there is only one section in sections
-     * that has that end-point
+     * for each end-point of a section in the store, there is only one section
+     * in the store that has that end-point
      */
 
     /**
-     * Creates a new track with no sections.
+     * Creates a new track with no sections, that holds its sections in hash
+     * tables on the heap.
      */
     public Track() {
-        sections = new HashSet<>();
-        endPoints = new HashSet<>();
+        this(new HeapSectionStore());
+    }
+
+    /**
+     * Creates a new track with no sections, that holds its sections in the
+     * given store. (E.g. an OffHeapSectionStore can be used for very large
+     * tracks.) The store must not be used by anything other than this track.
+     * 
+     * @param store
+     *            the empty store to hold the sections of the track
+     * @throws NullPointerException
+     *             if store is null
+     * @throws IllegalArgumentException
+     *             if store is not empty
+     */
+    public Track(SectionStore store) throws NullPointerException,
+            IllegalArgumentException {
+        if (store == null) {
+            throw new NullPointerException("The store cannot be null.");
+        }
+        if (store.size() != 0) {
+            throw new IllegalArgumentException("The store must be empty.");
+        }
+        this.store = store;
     }
 
     /**
@@ -96,26 +114,17 @@ public class Track implements Iterable<Section> {
         }
 
         // do nothing if the track already contains an equivalent section
-        if (sections.contains(section)) {
+        if (store.contains(section)) {
             return;
         }
 
         // for each end-point (j,b) of the section, check that the junction j
         // isn't already connected to a section on branch b.
-        for (JunctionBranch endPoint : section.getEndPoints()) {
-            if (endPoints.contains(endPoint)) {
-                throw new InvalidTrackException("The junction "
-                        + endPoint.getJunction()
-                        + " is already connected to a section along branch "
-                        + endPoint.getBranch());
-            }
-        }
+        checkNotConnected(section.getEndPoint1());
+        checkNotConnected(section.getEndPoint2());
 
         // add the section to the track
-        sections.add(section);
-        for (JunctionBranch endPoint : section.getEndPoints()) {
-            endPoints.add(endPoint);
-        }
+        store.add(section);
     }
 
     /**
@@ -127,11 +136,8 @@ public class Track implements Iterable<Section> {
      *            the section to be removed from the track
      */
     public void removeSection(Section section) {
-        if (section != null && sections.contains(section)) {
-            sections.remove(section);
-            for (JunctionBranch endPoint : section.getEndPoints()) {
-                endPoints.remove(endPoint);
-            }
+        if (section != null && store.contains(section)) {
+            store.remove(section);
         }
     }
 
@@ -144,23 +150,46 @@ public class Track implements Iterable<Section> {
      *         given parameter.
      */
     public boolean contains(Section section) {
-        return sections.contains(section);
+        return store.contains(section);
     }
 
     /**
      * Returns a set of all the junctions in the track that are connected to at
      * least one section of the track.
      * 
+     * The set returned is an unmodifiable view of the junctions of the track:
+     * it reflects any later changes to the track.
+     * 
      * @return The set of junctions in the track.
      */
     public Set<Junction> getJunctions() {
-        Set<Junction> junctions = new HashSet<>(); // junctions to return
-        for (Section section : sections) {
-            for (JunctionBranch endPoint : section.getEndPoints()) {
-                junctions.add(endPoint.getJunction());
+        return store.junctions();
+    }
+
+    /**
+     * Returns the neighbours of the given junction on the track: one for each
+     * branch of the junction that is connected to a section of the track.
+     * 
+     * The collection returned is unmodifiable, ordered by branch, and empty
+     * if the junction is not on the track.
+     * 
+     * @param junction
+     *            the junction whose neighbours will be returned
+     * @return the neighbours of the junction on the track.
+     */
+    public Collection<Neighbour> neighbours(Junction junction) {
+        // the neighbours of the junction, in branch order
+        List<Neighbour> neighbours = new ArrayList<>(Branch.values().length);
+        for (Branch branch : Branch.values()) {
+            // the end-point of the junction on the branch
+            JunctionBranch endPoint = JunctionBranch.valueOf(junction, branch);
+            Section section = store.get(endPoint);
+            if (section != null) {
+                neighbours.add(new Neighbour(branch, section, section
+                        .otherEndPoint(endPoint)));
             }
         }
-        return junctions;
+        return Collections.unmodifiableList(neighbours);
     }
 
     /**
@@ -178,13 +207,8 @@ public class Track implements Iterable<Section> {
      */
     public Section getTrackSection(Junction junction, Branch branch) {
         // the end-point made up of the junction and branch
-        JunctionBranch endPoint = new JunctionBranch(junction, branch);
-        for (Section section : sections) {
-            if (section.getEndPoints().contains(endPoint)) {
-                return section;
-            }
-        }
-        return null;
+        JunctionBranch endPoint = JunctionBranch.valueOf(junction, branch);
+        return store.get(endPoint);
     }
 
     /**
@@ -193,7 +217,7 @@ public class Track implements Iterable<Section> {
      */
     @Override
     public Iterator<Section> iterator() {
-        return sections.iterator();
+        return store.iterator();
     }
 
     /**
@@ -209,7 +233,7 @@ public class Track implements Iterable<Section> {
     public String toString() {
         // the string representation under construction
         String result = "";
-        for (Section section : sections) {
+        for (Section section : store) {
             if (!result.equals("")) {
                 result += LINE_SEPARATOR;
             }
@@ -227,40 +251,46 @@ public class Track implements Iterable<Section> {
      * @return true if this class is internally consistent, and false otherwise.
      */
     public boolean checkInvariant() {
-        // check for null values
-        if (sections == null || endPoints == null || sections.contains(null)) {
+        if (store == null) {
             return false;
         }
 
-        // the end-points of the sections in this.sections
-        Set<JunctionBranch> expectedEndPoints = calculateEndPoints(sections);
-
-        // check that endPoints is the same as expectedEndPoints, and that each
-        // end-point belongs to only one section.
-        if (!expectedEndPoints.equals(endPoints)
-                || endPoints.size() != 2 * sections.size()) {
-            return false;
+        // the number of sections, and the junctions of their end-points
+        int count = 0;
+        Set<Junction> junctions = new HashSet<>();
+        for (Section section : store) {
+            if (section == null) {
+                return false;
+            }
+            // check that each end-point belongs to this section only
+            for (JunctionBranch endPoint : Arrays.asList(
+                    section.getEndPoint1(), section.getEndPoint2())) {
+                if (!section.equals(store.get(endPoint))) {
+                    return false;
+                }
+                junctions.add(endPoint.getJunction());
+            }
+            count++;
         }
-
-        return true; // otherwise OK
+        return count == store.size() && junctions.equals(store.junctions());
     }
 
     /**
-     * Calculates and returns the set of all of the end-points of the sections
-     * in the given set.
+     * Checks that the junction of the given end-point isn't already connected
+     * to a section on the branch of the end-point.
      * 
-     * @param sections
-     *            a set of sections from which the end-points will be derived.
-     * @return the set of all end-points of the sections in sections.
+     * @require endPoint != null
+     * @throws InvalidTrackException
+     *             if the track already contains a section with the given
+     *             end-point
      */
-    private Set<JunctionBranch> calculateEndPoints(Set<Section> sections) {
-        // the end-points of sections under construction
-        Set<JunctionBranch> endPoints = new HashSet<>();
-        for (Section section : sections) {
-            for (JunctionBranch endPoint : section.getEndPoints()) {
-                endPoints.add(endPoint);
-            }
+    private void checkNotConnected(JunctionBranch endPoint)
+            throws InvalidTrackException {
+        if (store.get(endPoint) != null) {
+            throw new InvalidTrackException("The junction "
+                    + endPoint.getJunction()
+                    + " is already connected to a section along branch "
+                    + endPoint.getBranch());
         }
-        return endPoints;
     }
 }
@@ -1,5 +1,8 @@
 package railway;
 
+import railway.metrics.Operation;
+import railway.metrics.RailwayMetrics;
+
 import java.io.*;
 import java.util.*;
 
@@ -83,6 +86,41 @@ public class TrackReader {
      */
     public static Track read(String fileName) throws IOException,
             FormatException {
+        long started = RailwayMetrics.start();
+        try {
+            // the track read from the raw bytes of the file, or null if the
+            // file has to be decoded
+            Track track = AsciiTrackReader.read(fileName);
+            if (track == null) {
+                track = readWithScanner(fileName);
+            }
+            return track;
+        } finally {
+            RailwayMetrics.stop(Operation.READ_TRACK, started);
+        }
+    }
+
+    /**
+     * Reads a track from the file named fileName, in the format described by
+     * the read method, by scanning one line of the file at a time.
+     * 
+     * The read method only uses this method for files that contain characters
+     * outside of the ASCII character set; otherwise it reads the bytes of the
+     * file directly, which is much faster. Both methods return equivalent
+     * tracks, and throw FormatExceptions with the same messages, for any file;
+     * this method is public so that the two can be compared.
+     * 
+     * @param fileName
+     *            the file to read from
+     * @return a track containing the sections from the file
+     * @throws IOException
+     *             if there is an error reading from the input file
+     * @throws FormatException
+     *             if there is an error with the input format, as described by
+     *             the read method.
+     */
+    public static Track readWithScanner(String fileName) throws IOException,
+            FormatException {
         // scanner for reading the file a line at a time
         Scanner in = new Scanner(new FileReader(fileName));
         Track track = new Track(); // the track to be returned
@@ -92,20 +130,7 @@ public class TrackReader {
             while (in.hasNextLine()) {
                 // the section read from the line
                 Section section = readSection(lineNumber, in.nextLine());
-
-                // add section to the track unless it is a duplicate, or adding
-                // it would cause the track to become invalid
-                if (track.contains(section)) {
-                    throw new FormatException(errorMessage(lineNumber,
-                            "duplicate section detected: " + section));
-                }
-                try {
-                    track.addSection(section);
-                } catch (InvalidTrackException e) {
-                    throw new FormatException(errorMessage(lineNumber,
-                            "cannot add section " + section + " to the track: "
-                                    + e.getMessage()));
-                }
+                addSection(track, lineNumber, section);
                 lineNumber++;
             }
         } finally {
@@ -114,6 +139,33 @@ public class TrackReader {
         return track;
     }
 
+    /**
+     * Adds the section read from the given line to the track.
+     * 
+     * @require track != null && section != null
+     * @throws FormatException
+     *             if the track already contains the section, or if adding it
+     *             would cause the track to become invalid. The exception has a
+     *             message that identifies the lineNumber given, and describes
+     *             the nature of the error.
+     */
+    static void addSection(Track track, int lineNumber, Section section)
+            throws FormatException {
+        // add section to the track unless it is a duplicate, or adding
+        // it would cause the track to become invalid
+        if (track.contains(section)) {
+            throw new FormatException(errorMessage(lineNumber,
+                    "duplicate section detected: " + section));
+        }
+        try {
+            track.addSection(section);
+        } catch (InvalidTrackException e) {
+            throw new FormatException(errorMessage(lineNumber,
+                    "cannot add section " + section + " to the track: "
+                            + e.getMessage()));
+        }
+    }
+
     /**
      * Reads the section from the given line.
      * 
@@ -125,7 +177,7 @@ public class TrackReader {
      *             has a message that identifies the lineNumber given, and
      *             describes the nature of the error.
      */
-    private static Section readSection(int lineNumber, String line)
+    static Section readSection(int lineNumber, String line)
             throws FormatException {
         // a scanner for the line
         Scanner lineScanner = new Scanner(line);
@@ -196,7 +248,7 @@ public class TrackReader {
             Scanner lineScanner) throws FormatException {
         try {
             // the junction read from lineScanner
-            Junction junction = new Junction(lineScanner.next());
+            Junction junction = Junction.valueOf(lineScanner.next());
             // the string representation of the branch read from lineScanner
             String branchString = lineScanner.next();
             // the corresponding enumerated type of the branch string
@@ -207,7 +259,7 @@ public class TrackReader {
                 throw new FormatException(errorMessage(lineNumber,
                         "invalid branch: " + branchString));
             }
-            return new JunctionBranch(junction, branch);
+            return JunctionBranch.valueOf(junction, branch);
         } catch (NoSuchElementException e) {
             // thrown if there are not two tokens on the scanner to consume
             throw new FormatException(errorMessage(lineNumber,
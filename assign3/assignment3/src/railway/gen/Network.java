@@ -0,0 +1,406 @@
+package railway.gen;
+
+import railway.Branch;
+import railway.Junction;
+import railway.JunctionBranch;
+import railway.Route;
+import railway.Section;
+import railway.Segment;
+import railway.Track;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * <p>
+ * An immutable network of sections made by a NetworkGenerator, held in arrays
+ * rather than as Section objects so that networks with millions of sections
+ * can be generated and written to a file without building a Track.
+ * </p>
+ *
+ * <p>
+ * The sections of a network form a valid track: no two sections share an
+ * end-point, and no section joins an end-point to itself. The sections are
+ * numbered from zero in the order they were generated.
+ * </p>
+ */
+public class Network {
+
+    // the branches, indexed by their ordinals
+    private static final Branch[] BRANCHES = Branch.values();
+
+    // the identifiers of the junctions, indexed by junction number
+    private final String[] junctions;
+    // for each section, its length, and the junction numbers and branch
+    // ordinals of its first and second end-points
+    private final int[] lengths;
+    private final int[] junctions1;
+    private final byte[] branches1;
+    private final int[] junctions2;
+    private final byte[] branches2;
+    // the section at each end-point, indexed by 3 * junction + branch
+    // ordinal, or -1 if there is none
+    private final int[] sectionAt;
+
+    /*
+     * invariant: the section arrays all have the same length && every
+     * junction number in them is an index of junctions && sectionAt has three
+     * entries per junction && for each section s and each of its end-points
+     * (j, b), sectionAt[3 * j + b] == s && every other entry of sectionAt is
+     * -1 && no section has two equal end-points
+     */
+
+    /**
+     * Creates a network from arrays filled in by Builder.
+     */
+    private Network(String[] junctions, int[] lengths, int[] junctions1,
+            byte[] branches1, int[] junctions2, byte[] branches2,
+            int[] sectionAt) {
+        this.junctions = junctions;
+        this.lengths = lengths;
+        this.junctions1 = junctions1;
+        this.branches1 = branches1;
+        this.junctions2 = junctions2;
+        this.branches2 = branches2;
+        this.sectionAt = sectionAt;
+    }
+
+    /**
+     * Returns the number of junctions in the network.
+     *
+     * @return the number of junctions
+     */
+    public int getJunctionCount() {
+        return junctions.length;
+    }
+
+    /**
+     * Returns the number of sections in the network.
+     *
+     * @return the number of sections
+     */
+    public int getSectionCount() {
+        return lengths.length;
+    }
+
+    /**
+     * Returns the section of the network with the given number.
+     *
+     * @param index
+     *            the number of the section
+     * @throws IndexOutOfBoundsException
+     *             if there is no section with the given number
+     * @return the section with that number
+     */
+    public Section getSection(int index) throws IndexOutOfBoundsException {
+        return new Section(lengths[index], endPoint(junctions1[index],
+                branches1[index]), endPoint(junctions2[index],
+                        branches2[index]));
+    }
+
+    /**
+     * Returns a new track made up of the sections of the network.
+     *
+     * @return a track containing every section of the network
+     */
+    public Track toTrack() {
+        Track track = new Track();
+        for (int i = 0; i < lengths.length; i++) {
+            track.addSection(getSection(i));
+        }
+        return track;
+    }
+
+    /**
+     * Writes the sections of the network to a text file named fileName, one
+     * line per section in the format read by TrackReader, replacing the file
+     * if it already exists.
+     *
+     * @param fileName
+     *            the file to write to
+     * @throws NullPointerException
+     *             if fileName is null
+     * @throws IOException
+     *             if there is an error writing to the file
+     */
+    public void writeTrack(String fileName) throws NullPointerException,
+            IOException {
+        if (fileName == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        try (Writer out = writer(fileName)) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < lengths.length; i++) {
+                line.setLength(0);
+                line.append(lengths[i]).append(' ');
+                appendEndPoint(line, junctions1[i], branches1[i]);
+                line.append(' ');
+                appendEndPoint(line, junctions2[i], branches2[i]);
+                out.append(line.append('\n'));
+            }
+        }
+    }
+
+    /**
+     * Writes the segments of the given route to a text file named fileName,
+     * one line per segment in the format read by RouteReader, replacing the
+     * file if it already exists.
+     *
+     * @param route
+     *            the route to write
+     * @param fileName
+     *            the file to write to
+     * @throws NullPointerException
+     *             if either parameter is null
+     * @throws IOException
+     *             if there is an error writing to the file
+     */
+    public static void writeRoute(Route route, String fileName)
+            throws NullPointerException, IOException {
+        if (route == null || fileName == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        try (Writer out = writer(fileName)) {
+            StringBuilder line = new StringBuilder();
+            for (Segment segment : route.getSegments()) {
+                JunctionBranch departing = segment.getDepartingEndPoint();
+                JunctionBranch approaching = segment.getApproachingEndPoint();
+                line.setLength(0);
+                line.append(segment.getSection().getLength()).append(' ');
+                line.append(departing.getJunction().getJunctionId()).append(
+                        ' ').append(departing.getBranch()).append(' ');
+                line.append(approaching.getJunction().getJunctionId()).append(
+                        ' ').append(approaching.getBranch()).append(' ');
+                line.append(segment.getStartOffset()).append(' ').append(
+                        segment.getEndOffset()).append('\n');
+                out.append(line);
+            }
+        }
+    }
+
+    /**
+     * Returns a route along the network, made by starting at a random
+     * location on a random section, travelling in a random direction, and
+     * choosing a random branch at each facing junction, until the route has
+     * maxSections segments, reaches the end of the line, or would return to a
+     * section that it has already been on. The route ends at a random
+     * location on its last section.
+     *
+     * @require getSectionCount() > 0 && random != null && maxSections > 0
+     */
+    Route route(Random random, int maxSections) {
+        // the sections that the route has been on
+        Set<Integer> visited = new HashSet<>();
+        List<Segment> segments = new ArrayList<>();
+        int section = random.nextInt(lengths.length);
+        boolean fromFirst = random.nextBoolean();
+        int junction = fromFirst ? junctions1[section] : junctions2[section];
+        int branch = fromFirst ? branches1[section] : branches2[section];
+        while (true) {
+            visited.add(section);
+            segments.add(new Segment(getSection(section), endPoint(junction,
+                    branch), 0, lengths[section]));
+            if (segments.size() == maxSections) {
+                break;
+            }
+            // the end-point that the route arrives at
+            boolean toSecond = (junctions1[section] == junction
+                    && branches1[section] == branch);
+            junction = toSecond ? junctions2[section] : junctions1[section];
+            int arrival = toSecond ? branches2[section] : branches1[section];
+            branch = departure(random, junction, arrival);
+            if (branch < 0 || visited.contains(sectionAt[3 * junction
+                    + branch])) {
+                break;
+            }
+            section = sectionAt[3 * junction + branch];
+        }
+
+        Segment first = segments.get(0);
+        int start = random.nextInt(first.getEndOffset());
+        segments.set(0, new Segment(first.getSection(), first
+                .getDepartingEndPoint(), start, first.getEndOffset()));
+        Segment last = segments.get(segments.size() - 1);
+        int end = last.getStartOffset() + 1 + random.nextInt(last
+                .getEndOffset() - last.getStartOffset());
+        segments.set(segments.size() - 1, new Segment(last.getSection(), last
+                .getDepartingEndPoint(), last.getStartOffset(), end));
+        return new Route(segments);
+    }
+
+    /**
+     * Returns the ordinal of a branch of the given junction that a route
+     * arriving at the junction on the branch with ordinal arrival can leave
+     * on, chosen at random if there is more than one, or -1 if there is none.
+     * A route that arrives on the FACING branch leaves on the NORMAL or
+     * REVERSE branch, and a route that arrives on either of those leaves on
+     * the FACING branch.
+     */
+    private int departure(Random random, int junction, int arrival) {
+        int facing = Branch.FACING.ordinal();
+        if (arrival != facing) {
+            return (sectionAt[3 * junction + facing] >= 0) ? facing : -1;
+        }
+        int normal = Branch.NORMAL.ordinal();
+        int reverse = Branch.REVERSE.ordinal();
+        boolean hasNormal = sectionAt[3 * junction + normal] >= 0;
+        boolean hasReverse = sectionAt[3 * junction + reverse] >= 0;
+        if (hasNormal && hasReverse) {
+            return random.nextBoolean() ? normal : reverse;
+        }
+        return hasNormal ? normal : (hasReverse ? reverse : -1);
+    }
+
+    /**
+     * Returns the end-point at the junction with the given number, on the
+     * branch with the given ordinal.
+     */
+    private JunctionBranch endPoint(int junction, int branch) {
+        return JunctionBranch.valueOf(Junction.valueOf(junctions[junction]),
+                BRANCHES[branch]);
+    }
+
+    /**
+     * Appends the end-point at the junction with the given number, on the
+     * branch with the given ordinal, to line as it is written in a track
+     * file.
+     */
+    private void appendEndPoint(StringBuilder line, int junction,
+            int branch) {
+        line.append(junctions[junction]).append(' ').append(BRANCHES[branch]);
+    }
+
+    /**
+     * Returns a buffered writer of UTF-8 text to the file named fileName.
+     */
+    private static Writer writer(String fileName) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+                fileName), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /**
+     * Determines whether this class is internally consistent (i.e. it
+     * satisfies its class invariant).
+     *
+     * This method is only intended for testing purposes.
+     *
+     * @return true if this class is internally consistent, and false
+     *         otherwise.
+     */
+    public boolean checkInvariant() {
+        int count = lengths.length;
+        if (junctions1.length != count || branches1.length != count
+                || junctions2.length != count || branches2.length != count
+                || sectionAt.length != 3 * junctions.length) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            int end1 = 3 * junctions1[i] + branches1[i];
+            int end2 = 3 * junctions2[i] + branches2[i];
+            if (lengths[i] <= 0 || end1 == end2 || sectionAt[end1] != i
+                    || sectionAt[end2] != i) {
+                return false;
+            }
+        }
+        // the number of end-points of sections found in sectionAt
+        int found = 0;
+        for (int section : sectionAt) {
+            found += (section >= 0) ? 1 : 0;
+        }
+        return found == 2 * count;
+    }
+
+    /**
+     * Collects the junctions and sections of a network as they are
+     * generated.
+     */
+    static class Builder {
+
+        // the junctions and sections so far, in arrays with spare capacity
+        private String[] junctions = new String[16];
+        private int junctionCount;
+        private int[] lengths = new int[16];
+        private int[] junctions1 = new int[16];
+        private byte[] branches1 = new byte[16];
+        private int[] junctions2 = new int[16];
+        private byte[] branches2 = new byte[16];
+        private int sectionCount;
+        // the section at each end-point so far, as in Network
+        private int[] sectionAt = newSectionAt(48);
+
+        /**
+         * Adds a junction with the given identifier, and returns its number.
+         *
+         * @require identifier is not the identifier of another junction and
+         *          does not contain whitespace
+         */
+        int addJunction(String identifier) {
+            if (junctionCount == junctions.length) {
+                junctions = Arrays.copyOf(junctions, 2 * junctionCount);
+                int old = sectionAt.length;
+                sectionAt = Arrays.copyOf(sectionAt, 2 * old);
+                Arrays.fill(sectionAt, old, sectionAt.length, -1);
+            }
+            junctions[junctionCount] = identifier;
+            return junctionCount++;
+        }
+
+        /**
+         * Returns true if the given junction has no section on the given
+         * branch yet.
+         */
+        boolean isFree(int junction, Branch branch) {
+            return sectionAt[3 * junction + branch.ordinal()] < 0;
+        }
+
+        /**
+         * Adds a section with the given length and end-points.
+         *
+         * @require length > 0 && the junctions have been added && both
+         *          end-points are free && junction1 != junction2
+         */
+        void addSection(int length, int junction1, Branch branch1,
+                int junction2, Branch branch2) {
+            if (sectionCount == lengths.length) {
+                int capacity = 2 * sectionCount;
+                lengths = Arrays.copyOf(lengths, capacity);
+                junctions1 = Arrays.copyOf(junctions1, capacity);
+                branches1 = Arrays.copyOf(branches1, capacity);
+                junctions2 = Arrays.copyOf(junctions2, capacity);
+                branches2 = Arrays.copyOf(branches2, capacity);
+            }
+            lengths[sectionCount] = length;
+            junctions1[sectionCount] = junction1;
+            branches1[sectionCount] = (byte) branch1.ordinal();
+            junctions2[sectionCount] = junction2;
+            branches2[sectionCount] = (byte) branch2.ordinal();
+            sectionAt[3 * junction1 + branch1.ordinal()] = sectionCount;
+            sectionAt[3 * junction2 + branch2.ordinal()] = sectionCount;
+            sectionCount++;
+        }
+
+        /**
+         * Returns the network made up of the junctions and sections added.
+         */
+        Network build() {
+            return new Network(Arrays.copyOf(junctions, junctionCount),
+                    Arrays.copyOf(lengths, sectionCount),
+                    Arrays.copyOf(junctions1, sectionCount),
+                    Arrays.copyOf(branches1, sectionCount),
+                    Arrays.copyOf(junctions2, sectionCount),
+                    Arrays.copyOf(branches2, sectionCount),
+                    Arrays.copyOf(sectionAt, 3 * junctionCount));
+        }
+
+        /**
+         * Returns a table of the given size with no sections at any
+         * end-point.
+         */
+        private static int[] newSectionAt(int size) {
+            int[] table = new int[size];
+            Arrays.fill(table, -1);
+            return table;
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package railway.gen;
+
+import railway.Branch;
+import railway.Route;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * <p>
+ * Generates networks and routes of any size for testing, from a seed, so
+ * that a generator made with the same seed makes the same networks and
+ * routes when its methods are called in the same order.
+ * </p>
+ *
+ * <p>
+ * Every junction of a generated network is a set of points: its FACING
+ * branch leads off one side of it, and its NORMAL and REVERSE branches lead
+ * off the other side. A route can therefore pass through any junction from
+ * one side to the other, and every route returned by route is valid.
+ * Networks are written to files with Network.writeTrack, and routes with
+ * Network.writeRoute, in the formats read by TrackReader and RouteReader.
+ * </p>
+ *
+ * <p>
+ * The main method writes a generated network, and optionally a route along
+ * it, to files:
+ * </p>
+ *
+ * <pre>
+ * java railway.gen.NetworkGenerator kind size seed trackFile
+ *         [routeFile sections]
+ * </pre>
+ *
+ * <p>
+ * where kind is grid, trunk or planar, and size is the argument of the method
+ * of that name (the number of rows and of columns of a grid).
+ * </p>
+ */
+public class NetworkGenerator {
+
+    // the shortest and longest sections on lines, sidings and crossovers
+    private static final int MIN_LENGTH = 10;
+    private static final int MAX_LENGTH = 100;
+    // the chance of a crossover between two rows of a grid wherever the
+    // junctions allow one
+    private static final double CROSSOVER_CHANCE = 0.3;
+    // the chance of a passing loop wherever the junctions of a trunk line
+    // allow one, and of a dead-end siding at any other junction with a
+    // free REVERSE branch
+    private static final double LOOP_CHANCE = 0.5;
+    private static final double SIDING_CHANCE = 0.2;
+    // the chance that an edge of a planar network that would close a cycle
+    // is kept, and the length of a section across one cell of its layout
+    private static final double CYCLE_CHANCE = 0.5;
+    private static final int CELL_LENGTH = 100;
+
+    // the source of the random choices
+    private final Random random;
+
+    /**
+     * Creates a generator with the given seed.
+     *
+     * @param seed
+     *            the seed of the random choices of the generator
+     */
+    public NetworkGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * <p>
+     * Returns a grid of the given number of parallel lines (rows), each
+     * running through the given number of junctions (columns), with
+     * crossovers between neighbouring rows.
+     * </p>
+     *
+     * <p>
+     * The junction in row r and column c is named gr_c. Each junction faces
+     * along its row in a random direction, and is joined to the next junction
+     * of its row by a section. A crossover joins the REVERSE branch of a
+     * junction to the REVERSE branch of the junction in the next column of a
+     * neighbouring row when the two junctions face in the directions that let
+     * a train travel across from one row to the other, and then only at
+     * random, with a chance of CROSSOVER_CHANCE.
+     * </p>
+     *
+     * @param rows
+     *            the number of rows
+     * @param columns
+     *            the number of junctions in each row
+     * @throws IllegalArgumentException
+     *             if rows or columns is not positive, or there would be more
+     *             than Integer.MAX_VALUE / 3 junctions
+     * @return the grid
+     */
+    public Network grid(int rows, int columns)
+            throws IllegalArgumentException {
+        if (rows <= 0 || columns <= 0) {
+            throw new IllegalArgumentException("The size of a grid must be"
+                    + " positive.");
+        }
+        checkJunctionCount((long) rows * columns);
+        Network.Builder builder = new Network.Builder();
+        // whether each junction faces towards higher column numbers: that
+        // is, its NORMAL and REVERSE branches are on that side of it
+        boolean[] east = new boolean[rows * columns];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                builder.addJunction("g" + r + "_" + c);
+                east[r * columns + c] = random.nextBoolean();
+            }
+        }
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c + 1 < columns; c++) {
+                int junction = r * columns + c;
+                builder.addSection(length(), junction, mainBranch(east[
+                        junction], true), junction + 1, mainBranch(east[
+                                junction + 1], false));
+            }
+        }
+        for (int r = 0; r + 1 < rows; r++) {
+            for (int c = 0; c + 1 < columns; c++) {
+                // the crossovers down and up from column c to column c + 1
+                addCrossover(builder, east, r * columns + c, (r + 1)
+                        * columns + c + 1);
+                addCrossover(builder, east, (r + 1) * columns + c, r
+                        * columns + c + 1);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * <p>
+     * Returns a trunk line of the given number of sections, with passing
+     * loops and dead-end sidings.
+     * </p>
+     *
+     * <p>
+     * The junctions of the trunk line are named t0, t1, and so on, and each
+     * faces along the line in a random direction. Where a junction faces
+     * towards the next junction along the line, and that junction faces back
+     * towards it, a passing loop joins their REVERSE branches about half of
+     * the time. A dead-end siding leaves about a fifth of the other junctions
+     * on their REVERSE branch, and ends at the FACING branch of a junction
+     * named s0, s1, and so on.
+     * </p>
+     *
+     * @param length
+     *            the number of sections on the trunk line
+     * @throws IllegalArgumentException
+     *             if length is not positive, or there would be more than
+     *             Integer.MAX_VALUE / 3 junctions
+     * @return the trunk line
+     */
+    public Network trunk(int length) throws IllegalArgumentException {
+        if (length <= 0) {
+            throw new IllegalArgumentException("The length of a trunk line"
+                    + " must be positive.");
+        }
+        // at most one siding junction for each junction of the line
+        checkJunctionCount(2 * ((long) length + 1));
+        Network.Builder builder = new Network.Builder();
+        // whether each junction of the line faces towards the next one
+        boolean[] east = new boolean[length + 1];
+        for (int i = 0; i <= length; i++) {
+            builder.addJunction("t" + i);
+            east[i] = random.nextBoolean();
+        }
+        for (int i = 0; i < length; i++) {
+            int sectionLength = length();
+            builder.addSection(sectionLength, i, mainBranch(east[i], true),
+                    i + 1, mainBranch(east[i + 1], false));
+            if (east[i] && !east[i + 1] && random.nextDouble()
+                    < LOOP_CHANCE) {
+                builder.addSection(sectionLength + random.nextInt(
+                        MIN_LENGTH), i, Branch.REVERSE, i + 1,
+                        Branch.REVERSE);
+            }
+        }
+        int sidings = 0;
+        for (int i = 0; i <= length; i++) {
+            if (builder.isFree(i, Branch.REVERSE) && random.nextDouble()
+                    < SIDING_CHANCE) {
+                int end = builder.addJunction("s" + sidings++);
+                builder.addSection(length(), i, Branch.REVERSE, end,
+                        Branch.FACING);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * <p>
+     * Returns a random planar network with the given number of junctions.
+     * </p>
+     *
+     * <p>
+     * The junctions, named p0, p1, and so on, are laid out one to a cell of
+     * a square grid of cells, each at a random place within its cell, and a
+     * section may join the junctions of neighbouring cells in the same row or
+     * column, so no two sections cross. The sections are chosen in a random
+     * order: first those that join parts of the network that are not yet
+     * joined, then about half of the rest, skipping any that would give a
+     * junction more than three sections. The lengths of the sections are
+     * the distances between their junctions. At a junction with three
+     * sections, the FACING branch is the section furthest round from the
+     * other two, and at a junction with two sections, either one of them.
+     * </p>
+     *
+     * <p>
+     * The network is usually connected, but need not be: the limit of three
+     * sections at a junction can leave some parts of it unjoined.
+     * </p>
+     *
+     * @param junctionCount
+     *            the number of junctions
+     * @throws IllegalArgumentException
+     *             if junctionCount is not positive, or is more than
+     *             Integer.MAX_VALUE / 3
+     * @return the network
+     */
+    public Network planar(int junctionCount) throws IllegalArgumentException {
+        if (junctionCount <= 0) {
+            throw new IllegalArgumentException("The number of junctions must"
+                    + " be positive.");
+        }
+        checkJunctionCount(junctionCount);
+        int side = (int) Math.ceil(Math.sqrt(junctionCount));
+        double[] xs = new double[junctionCount];
+        double[] ys = new double[junctionCount];
+        for (int i = 0; i < junctionCount; i++) {
+            xs[i] = i % side + 0.1 + 0.8 * random.nextDouble();
+            ys[i] = i / side + 0.1 + 0.8 * random.nextDouble();
+        }
+
+        // the candidate edges, each from a junction to the next junction in
+        // its row or column, in a random order
+        int[] from = new int[2 * junctionCount];
+        int[] to = new int[2 * junctionCount];
+        int edgeCount = 0;
+        for (int i = 0; i < junctionCount; i++) {
+            if (i % side + 1 < side && i + 1 < junctionCount) {
+                from[edgeCount] = i;
+                to[edgeCount++] = i + 1;
+            }
+            if (i + side < junctionCount) {
+                from[edgeCount] = i;
+                to[edgeCount++] = i + side;
+            }
+        }
+        for (int i = edgeCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            swap(from, i, j);
+            swap(to, i, j);
+        }
+
+        // the neighbours of each junction, three slots per junction
+        int[] neighbours = new int[3 * junctionCount];
+        int[] degrees = new int[junctionCount];
+        int[] parents = new int[junctionCount];
+        for (int i = 0; i < junctionCount; i++) {
+            parents[i] = i;
+        }
+        boolean[] chosen = new boolean[edgeCount];
+        for (int pass = 0; pass < 2; pass++) {
+            for (int e = 0; e < edgeCount; e++) {
+                int a = from[e];
+                int b = to[e];
+                if (chosen[e] || degrees[a] == 3 || degrees[b] == 3) {
+                    continue;
+                }
+                int rootA = root(parents, a);
+                int rootB = root(parents, b);
+                if ((pass == 0 && rootA != rootB) || (pass == 1 && random
+                        .nextDouble() < CYCLE_CHANCE)) {
+                    parents[rootA] = rootB;
+                    chosen[e] = true;
+                    neighbours[3 * a + degrees[a]++] = b;
+                    neighbours[3 * b + degrees[b]++] = a;
+                }
+            }
+        }
+
+        // the branch of each junction that leads to each of its neighbours
+        Branch[] branches = new Branch[3 * junctionCount];
+        for (int i = 0; i < junctionCount; i++) {
+            assignBranches(i, degrees[i], neighbours, branches, xs, ys);
+        }
+        Network.Builder builder = new Network.Builder();
+        for (int i = 0; i < junctionCount; i++) {
+            builder.addJunction("p" + i);
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            if (chosen[e]) {
+                int a = from[e];
+                int b = to[e];
+                int length = 1 + (int) (CELL_LENGTH * Math.hypot(xs[a]
+                        - xs[b], ys[a] - ys[b]));
+                builder.addSection(length, a, branches[slot(neighbours, a,
+                        b)], b, branches[slot(neighbours, b, a)]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns a valid route along the given network of up to maxSections
+     * segments, which starts at a random location on a random section and
+     * travels in a random direction, taking a random branch at each junction
+     * it reaches from the FACING side. The route stops early at the end of a
+     * line, or before it would return to a section that it has already been
+     * on. Its first and last segments may be parts of their sections.
+     *
+     * @param network
+     *            the network to make a route along
+     * @param maxSections
+     *            the largest number of segments that the route may have
+     * @throws NullPointerException
+     *             if network is null
+     * @throws IllegalArgumentException
+     *             if the network has no sections, or maxSections is not
+     *             positive
+     * @return a route along the network
+     */
+    public Route route(Network network, int maxSections)
+            throws NullPointerException, IllegalArgumentException {
+        if (network == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        if (network.getSectionCount() == 0 || maxSections <= 0) {
+            throw new IllegalArgumentException("A route needs a network with"
+                    + " sections and a positive number of segments.");
+        }
+        return network.route(random, maxSections);
+    }
+
+    /**
+     * Writes a generated network, and optionally a route along it, to files.
+     * The arguments are described in the documentation of this class.
+     *
+     * @param args
+     *            the kind and size of network, the seed, the track file, and
+     *            optionally the route file and the number of sections of the
+     *            route
+     * @throws IOException
+     *             if there is an error writing to a file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4 && args.length != 6) {
+            System.err.println("usage: java railway.gen.NetworkGenerator"
+                    + " grid|trunk|planar size seed trackFile"
+                    + " [routeFile sections]");
+            System.exit(1);
+        }
+        int size = Integer.parseInt(args[1]);
+        NetworkGenerator generator = new NetworkGenerator(Long.parseLong(
+                args[2]));
+        Network network;
+        switch (args[0]) {
+        case "grid":
+            network = generator.grid(size, size);
+            break;
+        case "trunk":
+            network = generator.trunk(size);
+            break;
+        case "planar":
+            network = generator.planar(size);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown kind of network: "
+                    + args[0]);
+        }
+        network.writeTrack(args[3]);
+        if (args.length == 6) {
+            Network.writeRoute(generator.route(network, Integer.parseInt(
+                    args[5])), args[4]);
+        }
+    }
+
+    /**
+     * Returns a random length of a section on a line, siding or crossover.
+     */
+    private int length() {
+        return MIN_LENGTH + random.nextInt(MAX_LENGTH - MIN_LENGTH + 1);
+    }
+
+    /**
+     * Adds a crossover, with a chance of CROSSOVER_CHANCE, from the REVERSE
+     * branch of junction a to the REVERSE branch of junction b, in the next
+     * column of a neighbouring row, if a faces towards b's column and b faces
+     * back towards a's column, and both of those branches are free.
+     */
+    private void addCrossover(Network.Builder builder, boolean[] east,
+            int a, int b) {
+        if (east[a] && !east[b] && builder.isFree(a, Branch.REVERSE)
+                && builder.isFree(b, Branch.REVERSE) && random.nextDouble()
+                        < CROSSOVER_CHANCE) {
+            builder.addSection(length(), a, Branch.REVERSE, b,
+                    Branch.REVERSE);
+        }
+    }
+
+    /**
+     * Returns the branch of a junction that leads along its line towards
+     * higher numbered junctions if ahead is true, and towards lower numbered
+     * ones otherwise, given whether the junction faces towards higher
+     * numbered junctions.
+     */
+    private static Branch mainBranch(boolean east, boolean ahead) {
+        return (east == ahead) ? Branch.NORMAL : Branch.FACING;
+    }
+
+    /**
+     * Sets the branches of junction i of a planar network that lead to each
+     * of its neighbours, in the slots of branches that match the slots of
+     * neighbours.
+     */
+    private void assignBranches(int i, int degree, int[] neighbours,
+            Branch[] branches, double[] xs, double[] ys) {
+        int base = 3 * i;
+        if (degree == 1) {
+            branches[base] = Branch.FACING;
+        } else if (degree == 2) {
+            int facing = random.nextInt(2);
+            branches[base + facing] = Branch.FACING;
+            branches[base + 1 - facing] = Branch.NORMAL;
+        } else if (degree == 3) {
+            double[] angles = new double[3];
+            for (int k = 0; k < 3; k++) {
+                int other = neighbours[base + k];
+                angles[k] = Math.atan2(ys[other] - ys[i], xs[other] - xs[i]);
+            }
+            // the facing branch is the one whose other two are closest
+            int facing = 0;
+            double closest = Double.MAX_VALUE;
+            for (int k = 0; k < 3; k++) {
+                double gap = Math.abs(angles[(k + 1) % 3] - angles[(k + 2)
+                        % 3]);
+                gap = Math.min(gap, 2 * Math.PI - gap);
+                if (gap < closest) {
+                    closest = gap;
+                    facing = k;
+                }
+            }
+            int normal = random.nextInt(2);
+            branches[base + facing] = Branch.FACING;
+            branches[base + (facing + 1 + normal) % 3] = Branch.NORMAL;
+            branches[base + (facing + 2 - normal) % 3] = Branch.REVERSE;
+        }
+    }
+
+    /**
+     * Returns the slot of neighbours of junction a that holds junction b.
+     *
+     * @require b is a neighbour of a
+     */
+    private static int slot(int[] neighbours, int a, int b) {
+        int k = 3 * a;
+        while (neighbours[k] != b) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Returns the root of the tree of the given junction in the forest of
+     * parents, halving the path to it along the way.
+     */
+    private static int root(int[] parents, int junction) {
+        while (parents[junction] != junction) {
+            parents[junction] = parents[parents[junction]];
+            junction = parents[junction];
+        }
+        return junction;
+    }
+
+    /**
+     * Swaps the values at two indices of an array.
+     */
+    private static void swap(int[] values, int i, int j) {
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    /**
+     * Checks that a network with the given number of junctions can be
+     * built.
+     *
+     * @throws IllegalArgumentException
+     *             if there would be more than Integer.MAX_VALUE / 3
+     *             junctions
+     */
+    private static void checkJunctionCount(long junctions)
+            throws IllegalArgumentException {
+        if (junctions > Integer.MAX_VALUE / 3) {
+            throw new IllegalArgumentException("The network would have too"
+                    + " many junctions.");
+        }
+    }
+}
@@ -1,71 +1,134 @@
 package railway.gui;
 
 import railway.FormatException;
+import railway.Occupancy;
 import railway.RouteReader;
 import railway.TrackReader;
 import railway.Track;
 import railway.Route;
+import railway.PersistentMap;
+import railway.Section;
+import railway.Segment;
+import railway.SubrouteChange;
+import railway.metrics.Operation;
+import railway.metrics.RailwayMetrics;
+import railway.metrics.Rejection;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.Predicate;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * <p>
  * The model for the Railway Manager.
+ * </p>
+ *
+ * <p>
+ * The state of the model (its track, its trains and the subroutes allocated to
+ * them) is held in an immutable snapshot. Queries read the current snapshot
+ * without locking, so they may be made from any number of threads while trains
+ * are being added or moved.
+ * </p>
+ *
+ * <p>
+ * Trains may be added and moved from many threads at once. A request locks
+ * the stripes of the sections and junctions that it reads or changes in the
+ * occupancy index (those of the requested subroute, and of the subroute it
+ * replaces), along with the stripe of the train, always in ascending order so
+ * that requests cannot deadlock. Requests that do not share a stripe are
+ * checked in parallel, while conflicting ones wait for each other. Once its
+ * check has passed, a request applies its change to the latest snapshot and
+ * publishes the result with a compare-and-set, applying it again to a newer
+ * snapshot if a request on other stripes was published in the meantime.
+ * </p>
+ *
+ * <p>
+ * While RailwayMetrics is enabled, the latencies of requests and of their
+ * intersection checks are recorded there, along with the reasons that
+ * requests are rejected.
+ * </p>
  */
 public class RailwayModel {
 
-    // The Track that the model is simulating
-    private Track track;
-    // The Trains on the track and their unique IDs
-    private final Map<Integer, Train> trains;
+    // the number of lock stripes, one for each bit of a long
+    private static final int STRIPES = Long.SIZE;
+    // the train ID passed to the occupancy index for a train not yet added
+    private static final int NO_TRAIN = -1;
+
+    // the current state of the model
+    private final AtomicReference<State> state;
+    // the locks guarding the sections, junctions and trains of the model
+    private final ReentrantLock[] stripes;
+    // the ID to give to the next train that is added
+    private final AtomicInteger nextId;
 
     /**
-     * A struct-like Train datatype with a single setter to ensure internal
-     * consistency. The RailwayModel has the responsibility to maintain
-     * the integrity of instances of this datatype, as some of
-     * its fields are public and mutable.
+     * An immutable snapshot of the state of the model. The track is not
+     * changed after it has been loaded, so it may be shared by snapshots.
      */
-    private class Train {
+    private static class State {
+
+        // a model with no track and no trains
+        static final State EMPTY = new State(null, PersistentMap.empty(),
+                new Occupancy());
+
+        // the Track that the model is simulating
+        final Track track;
+        // the Trains on the track and their unique IDs
+        final PersistentMap<Integer, Train> trains;
+        // the subroutes allocated to the Trains, indexed by section and
+        // junction
+        final Occupancy occupancy;
+
+        State(Track track, PersistentMap<Integer, Train> trains,
+                Occupancy occupancy) {
+            this.track = track;
+            this.trains = trains;
+            this.occupancy = occupancy;
+        }
+    }
+
+    /**
+     * An immutable Train datatype. Moving a train creates a new instance
+     * with the same ID and route.
+     */
+    private static class Train {
 
         // the Train's unique ID
         final int id;
         // the Route that the train is assigned to
         final Route route;
         // the start offset of the subroute
-        int startOffset;
+        final int startOffset;
         // the end offset of the subroute
-        int endOffset;
+        final int endOffset;
         // the Train's currently assigned subroute
-        Route subroute;
+        final Route subroute;
 
         /**
-         * Creates a new Train running on a route
+         * Creates a new Train running on a route, with the subroute of that
+         * route between two offset lengths
          *
          * @param id
          *              the ID to assign this train
          * @param route
          *              the route on which this Train runs
-         */
-        Train(int id, Route route) {
-            this.id = id;
-            this.route = route;
-        }
-
-        /**
-         * Sets the subroute of this train with two offset lengths
-         * using this Train's internal route attribute
-         *
          * @param startOffset
          *              the start offset of the subroute
          * @param endOffset
          *              the end offset of the subroute
+         * @param subroute
+         *              route.getSubroute(startOffset, endOffset)
          */
-        void setSubroute(int startOffset, int endOffset) {
+        Train(int id, Route route, int startOffset, int endOffset,
+                Route subroute) {
+            this.id = id;
+            this.route = route;
             this.startOffset = startOffset;
             this.endOffset = endOffset;
-            this.subroute = route.getSubroute(startOffset, endOffset);
+            this.subroute = subroute;
         }
     }
 
@@ -102,7 +165,12 @@ public class RailwayModel {
      * Initialises the model for the Railway Manager.
      */
     public RailwayModel() {
-        this.trains = new HashMap<>();
+        this.state = new AtomicReference<>(State.EMPTY);
+        this.stripes = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.nextId = new AtomicInteger();
     }
 
     /**
@@ -121,7 +189,9 @@ public class RailwayModel {
      *             detected.
      */
     public void loadTrack(String filename) throws IOException, FormatException {
-        this.track = TrackReader.read(filename);
+        Track track = TrackReader.read(filename);
+        state.updateAndGet(current -> new State(track, current.trains,
+                current.occupancy));
     }
 
     /**
@@ -153,22 +223,49 @@ public class RailwayModel {
      */
     public int spawnTrain(String filename, int startOffset, int endOffset)
             throws IOException, FormatException, InvalidRouteRequestException {
+        long started = RailwayMetrics.start();
+        try {
+            return spawn(filename, startOffset, endOffset);
+        } finally {
+            RailwayMetrics.stop(Operation.SPAWN_TRAIN, started);
+        }
+    }
+
+    /**
+     * Spawns a new Train in the model, as described by spawnTrain.
+     */
+    private int spawn(String filename, int startOffset, int endOffset)
+            throws IOException, FormatException, InvalidRouteRequestException {
 
         // Throws IOException and FormatException
         Route route = RouteReader.read(filename);
 
-        if (!(route.onTrack(track))) {
+        Track track = state.get().track;
+        if (track == null || !(route.onTrack(track))) {
+            RailwayMetrics.reject(Rejection.ROUTE_NOT_ON_TRACK);
             throw new InvalidRouteRequestException("The route was loaded,"
                     + " but it is not on the train management system’s track");
         }
 
-        Train spawned = new Train(trains.size(), route);
-
-        // Continue with building the rest of the train's attributes
         // Throws InvalidRouteRequestException
-        // Returns the ID of the train that was built
-        return setSubroute(spawned, startOffset, endOffset);
+        Route subroute = subroute(route, startOffset, endOffset);
 
+        long locked = lock(stripes(subroute));
+        try {
+            State current = state.get();
+
+            // Throws InvalidRouteRequestException
+            verifyNoIntersections(current.occupancy, NO_TRAIN, subroute);
+
+            // IDs are only taken by trains that are admitted
+            Train spawned = new Train(nextId.getAndIncrement(), route,
+                    startOffset, endOffset, subroute);
+            publish(spawned, Collections.emptyList(), subroute);
+            return spawned.id;
+        }
+        finally {
+            unlock(locked);
+        }
     }
 
     /**
@@ -181,7 +278,8 @@ public class RailwayModel {
      * @return the information of the Train in a array of length 4
      */
     public String[] getTrainInfo(int id) {
-        Train requested = trains.get(id);
+        // Reads the current snapshot without blocking
+        Train requested = state.get().trains.get(id);
 
         String[] info = { Integer.toString(requested.id)
                 , Integer.toString(requested.startOffset)
@@ -216,103 +314,330 @@ public class RailwayModel {
      */
     public void setTrainSubroute(int id, int startOffset, int endOffset)
             throws InvalidTrainRequestException, InvalidRouteRequestException {
+        long started = RailwayMetrics.start();
         try {
-            setSubroute(trains.get(id), startOffset, endOffset);
+            setSubroute(id, startOffset, endOffset);
+        } finally {
+            RailwayMetrics.stop(Operation.SET_TRAIN_SUBROUTE, started);
         }
-        catch (NumberFormatException e) {
-            throw new InvalidTrainRequestException("The train requested to"
-                    + " be updated does not exist");
+    }
+
+    /**
+     * Sets the subroute of a Train, as described by setTrainSubroute.
+     */
+    private void setSubroute(int id, int startOffset, int endOffset)
+            throws InvalidTrainRequestException, InvalidRouteRequestException {
+        while (true) {
+            Train target = state.get().trains.get(id);
+
+            if (target == null) {
+                RailwayMetrics.reject(Rejection.NO_SUCH_TRAIN);
+                throw new InvalidTrainRequestException("The train requested to"
+                        + " be updated does not exist");
+            }
+
+            // Throws InvalidRouteRequestException
+            Route subroute = subroute(target.route, startOffset, endOffset);
+
+            long locked = lock(stripe(Integer.valueOf(id))
+                    | stripes(target.subroute) | stripes(subroute));
+            try {
+                State current = state.get();
+
+                // Start again if the train was moved before it was locked
+                if (current.trains.get(id) != target) {
+                    continue;
+                }
+
+                // The target's current subroute is ignored by the check
+                // Throws InvalidRouteRequestException
+                verifyNoIntersections(current.occupancy, id, subroute);
+
+                publish(new Train(id, target.route, startOffset, endOffset,
+                        subroute), target.subroute, subroute);
+                return;
+            }
+            finally {
+                unlock(locked);
+            }
         }
     }
 
     /**
-     *  Given a Train, a start offset and an end offset, mutates the Train's
-     *  subroute with the given start offset and end offset, and proceeds to
-     *  add the Train to the model. Thus, this method can be used to complete
-     *  and add a newly spawned Train to the model, or mutate a pre-existing
-     *  Train
+     * Given an ID, moves the front and back of the subroute of the Train
+     * currently present in the model (with the same ID) along its route by
+     * the given distances. The result is the same as that of
+     * setTrainSubroute(id, startOffset + tailDelta, endOffset + headDelta),
+     * where startOffset and endOffset are the Train's current offsets.
      *
-     * @param target
-     *              the train to be added or mutated
+     * Only the parts of the route that the Train newly occupies are checked
+     * against the other Trains, since the rest of the new subroute is already
+     * allocated to it, and only the segments of the subroute that change are
+     * updated in the occupancy index. The cost of a move therefore depends on
+     * the distance moved, rather than the length of the subroute or the
+     * number of Trains.
+     *
+     * @param id
+     *              the ID of the train to move
+     * @param headDelta
+     *              the distance to move the end offset of the Train
+     * @param tailDelta
+     *              the distance to move the start offset of the Train
+     * @require
+     *              id, headDelta, tailDelta is not null
+     * @throws InvalidTrainRequestException
+     *              if no train with the specified ID can be found in the model
+     * @throws InvalidRouteRequestException
+     *              if the moved offsets do not define a
+     *                  valid sub-route of the train’s route
+     *              if the newly occupied parts of the train’s route
+     *                  intersect with at least one of the sub-routes
+     *                  currently allocated to another train
+     */
+    public void advanceTrain(int id, int headDelta, int tailDelta)
+            throws InvalidTrainRequestException, InvalidRouteRequestException {
+        long started = RailwayMetrics.start();
+        try {
+            advance(id, headDelta, tailDelta);
+        } finally {
+            RailwayMetrics.stop(Operation.ADVANCE_TRAIN, started);
+        }
+    }
+
+    /**
+     * Moves a Train along its route, as described by advanceTrain.
+     */
+    private void advance(int id, int headDelta, int tailDelta)
+            throws InvalidTrainRequestException, InvalidRouteRequestException {
+        while (true) {
+            Train target = state.get().trains.get(id);
+
+            if (target == null) {
+                RailwayMetrics.reject(Rejection.NO_SUCH_TRAIN);
+                throw new InvalidTrainRequestException("The train requested to"
+                        + " be moved does not exist");
+            }
+
+            int startOffset = target.startOffset + tailDelta;
+            int endOffset = target.endOffset + headDelta;
+
+            // Throws InvalidRouteRequestException
+            Route subroute = subroute(target.route, startOffset, endOffset);
+            SubrouteChange move = new SubrouteChange(target.subroute,
+                    subroute, tailDelta);
+
+            long locked = lock(stripe(Integer.valueOf(id))
+                    | stripes(move.getReleased())
+                    | stripes(move.getAllocated()));
+            try {
+                State current = state.get();
+
+                // Start again if the train was moved before it was locked
+                if (current.trains.get(id) != target) {
+                    continue;
+                }
+
+                // Check the parts of the route gained at the front and back
+                // Throws InvalidRouteRequestException
+                if (endOffset > target.endOffset) {
+                    verifyNoIntersections(current.occupancy, id,
+                            target.route.getSubroute(Math.max(
+                                    target.endOffset, startOffset),
+                                    endOffset));
+                }
+                if (startOffset < target.startOffset) {
+                    verifyNoIntersections(current.occupancy, id,
+                            target.route.getSubroute(startOffset, Math.min(
+                                    target.startOffset, endOffset)));
+                }
+
+                publish(new Train(id, target.route, startOffset, endOffset,
+                        subroute), move.getReleased(), move.getAllocated());
+                return;
+            }
+            finally {
+                unlock(locked);
+            }
+        }
+    }
+
+    /**
+     * Returns the subroute of a route between a start offset and an end
+     * offset
+     *
+     * @param route
+     *              the route to take the subroute of
      * @param startOffset
-     *              the (new) start offset of the Train
+     *              the start offset of the subroute
      * @param endOffset
-     *              the (new) end offset of the Train
+     *              the end offset of the subroute
      * @require
-     *              target, startOffset, endOffset are not null
+     *              route is not null
      * @return
-     *              the ID of the train that was modified or added to the model
+     *              route.getSubroute(startOffset, endOffset)
      * @throws InvalidRouteRequestException
      *              if the offsets do not define a
-     *                  valid sub-route of the route that was read
-     *              if the sub-route is valid w.r.t. the train’s route,
-     *                  but the sub-route route.getSubroute(startOffset, endOffset)
-     *                  intersects with at least one of the sub-routes
-     *                  currently allocated to another train
+     *                  valid sub-route of the route
      */
-    private int setSubroute(Train target, int startOffset, int endOffset)
+    private Route subroute(Route route, int startOffset, int endOffset)
             throws InvalidRouteRequestException {
-        // Clear the train from a cloned model, if it exists
-        Map<Integer, Train> trainsWORequested = new HashMap<>(trains);
-
-        // When adding a new train, this call is redundant
-        // Fails silently and without harm
-        trainsWORequested.remove(target.id);
-
-        // Verify the validity of the subroute
         try {
             // Throws IllegalArgumentException
-            Route requested = target.route.getSubroute(startOffset, endOffset);
-
-            // Throws InvalidRouteRequestException
-            verifyNoIntersections(trainsWORequested, requested);
+            return route.getSubroute(startOffset, endOffset);
         }
         catch (IllegalArgumentException e) {
+            RailwayMetrics.reject(Rejection.INVALID_OFFSETS);
             throw new InvalidRouteRequestException("The route could be"
                     + " loaded and is on the track, but the offsets do not"
                     + " define a valid sub-route of the route that was read");
         }
-        catch (InvalidRouteRequestException e) {
-            throw e;
+    }
+
+    /**
+     *  Adds a Train to the model, replacing the previous version of the same
+     *  Train, if any, and publishes the resulting snapshot. Thus, this method
+     *  can be used to add a newly spawned Train to the model, or move a
+     *  pre-existing Train.
+     *
+     *  The change is applied to the latest snapshot, and applied again if
+     *  another snapshot is published first. Since the caller holds the
+     *  stripes of everything that the change reads or writes, no other
+     *  request can have changed them in the meantime.
+     *
+     * @param target
+     *              the train to be added
+     * @param released
+     *              the segments allocated to the previous version of the
+     *                  train that are not allocated to target
+     * @param allocated
+     *              the segments allocated to target that were not allocated
+     *                  to the previous version of the train
+     * @require
+     *              target, released, allocated are not null, the stripes of
+     *                  the train and of released and allocated are held by
+     *                  the current thread, and the newly occupied parts of
+     *                  the subroute of target have been checked against the
+     *                  latest snapshot
+     */
+    private void publish(Train target, Iterable<Segment> released,
+            Iterable<Segment> allocated) {
+        State current;
+        State next;
+        do {
+            current = state.get();
+
+            // Release the segments the train no longer occupies from the
+            // occupancy index, then allocate the new ones
+            Occupancy occupancy = current.occupancy.without(target.id,
+                    released).with(target.id, allocated);
+
+            next = new State(current.track, current.trains.plus(target.id,
+                    target), occupancy);
+        } while (!state.compareAndSet(current, next));
+    }
+
+    /**
+     * Returns the set of stripes guarding the entries of the occupancy index
+     * for some segments. The set is a bit mask, in which stripe i is present
+     * iff bit i is set.
+     *
+     * Segments are guarded by the stripes of their sections, and of the
+     * junctions where they have a first or last location, since these are
+     * the entries of the occupancy index that are read when checking them
+     * and written when allocating or releasing them. The parts of a route
+     * newly occupied by a moving train lie on segments that it is allocated,
+     * so they are guarded by the stripes of those segments.
+     *
+     * @param segments
+     *              the segments to guard
+     * @require
+     *              segments is not null
+     * @return
+     *              the mask of the stripes to lock
+     */
+    private static long stripes(Iterable<Segment> segments) {
+        long mask = 0;
+        for (Segment segment : segments) {
+            Section section = segment.getSection();
+            mask |= stripe(section);
+            if (segment.getStartOffset() == 0) {
+                mask |= stripe(segment.getDepartingEndPoint().getJunction());
+            }
+            if (segment.getEndOffset() == section.getLength()) {
+                mask |= stripe(segment.getApproachingEndPoint()
+                        .getJunction());
+            }
         }
+        return mask;
+    }
 
-        // Mutate the train so that it has the new subroute
-        target.setSubroute(startOffset, endOffset);
+    /**
+     * Returns the mask of the single stripe guarding an object
+     */
+    private static long stripe(Object guarded) {
+        int hash = guarded.hashCode();
+        return 1L << ((hash ^ (hash >>> 16)) & (STRIPES - 1));
+    }
 
-        // Either bind or overwrite the target into the real model
-        // When mutating train, this call is redundant
-        // Fails silenty and without harm
-        trains.put(target.id, target);
+    /**
+     * Locks each of the stripes in a mask, in ascending order
+     *
+     * @param mask
+     *              the stripes to lock
+     * @return
+     *              mask
+     */
+    private long lock(long mask) {
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            stripes[Long.numberOfTrailingZeros(rest)].lock();
+        }
+        return mask;
+    }
 
-        // Return the ID / key of the train in the map
-        return target.id;
+    /**
+     * Unlocks each of the stripes in a mask
+     *
+     * @param mask
+     *              the stripes to unlock
+     */
+    private void unlock(long mask) {
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            stripes[Long.numberOfTrailingZeros(rest)].unlock();
+        }
     }
 
     /**
-     * Given a map of Integers to Trains, and a Route, throws an Exception
-     * iff the route intersects a route belonging to a Train in the map.
-     * This method is intended to prevent incompatible Trains and their
-     * routes from being added to the model.
+     * Given the ID of a Train, and a Route, throws an Exception
+     * iff the route intersects a subroute allocated to any other Train
+     * in the model. This method is intended to prevent incompatible Trains
+     * and their routes from being added to the model.
      *
-     * @param trains
-     *              the map of IDs to Trains
+     * The check is answered by the occupancy index, so its cost depends on
+     * the number of segments in the route rather than the number of Trains.
+     *
+     * @param occupancy
+     *              the occupancy index of the snapshot being checked
+     * @param id
+     *              the ID of the Train requesting the route
      * @param subroute
      *              the (sub)route to check intersects the existing model
      * @require
-     *              trains and subroute both not null
+     *              occupancy, subroute not null
      * @throws InvalidRouteRequestException
-     *              iff the route intersects a route belonging to a Train
-     *                  in the map
+     *              iff the route intersects a subroute allocated to a Train
+     *                  with a different ID
      */
-    private void verifyNoIntersections(Map<Integer, Train> trains
-            , Route subroute) throws InvalidRouteRequestException {
+    private void verifyNoIntersections(Occupancy occupancy, int id,
+            Route subroute)
+            throws InvalidRouteRequestException {
 
-        Predicate<Train> checkIntersectWithRoute = train ->
-                train.subroute.intersects(subroute);
+        long started = RailwayMetrics.start();
+        boolean found = occupancy.intersects(id, subroute);
+        RailwayMetrics.stop(Operation.VERIFY_NO_INTERSECTIONS, started);
+        RailwayMetrics.intersectionChecked(found);
 
-        if (trains.values()
-                .stream()
-                .anyMatch(checkIntersectWithRoute)) {
+        if (found) {
+            RailwayMetrics.reject(Rejection.INTERSECTION);
             throw new InvalidRouteRequestException("Requested subroute"
                     + " intersects with"
                     + " at least one of the sub-routes currently"
@@ -0,0 +1,108 @@
+package railway.metrics;
+
+/**
+ * An immutable copy of the latencies recorded for an operation, taken at
+ * some point in time. The percentiles of a snapshot are accurate to within
+ * about 3% of their values.
+ */
+public class HistogramSnapshot {
+
+    // the number of latencies in each bucket of the histogram
+    private final long[] counts;
+    // the number of latencies, and their sum and maximum
+    private final long count;
+    private final long total;
+    private final long max;
+
+    /*
+     * invariant: counts != null && counts.length ==
+     * LatencyHistogram.BUCKET_COUNT && count is the sum of counts && total >=
+     * 0 && max >= 0
+     */
+
+    /**
+     * Creates a snapshot of a histogram with the given counts, sum and
+     * maximum.
+     *
+     * @require counts.length == LatencyHistogram.BUCKET_COUNT && counts is
+     *          not changed afterwards
+     */
+    HistogramSnapshot(long[] counts, long total, long max) {
+        this.counts = counts;
+        long sum = 0;
+        for (long bucket : counts) {
+            sum += bucket;
+        }
+        this.count = sum;
+        this.total = total;
+        this.max = max;
+    }
+
+    /**
+     * Returns the number of latencies recorded.
+     *
+     * @return the number of latencies
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the largest latency recorded, or zero if none has been.
+     *
+     * @return the largest latency in nanoseconds
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the latencies recorded, or zero if none has been.
+     *
+     * @return the mean latency in nanoseconds
+     */
+    public double getMean() {
+        return (count == 0) ? 0 : (double) total / count;
+    }
+
+    /**
+     * Returns the latency that the given percentage of the latencies recorded
+     * are at or below, or zero if none has been recorded. More precisely,
+     * it is the largest value counted in the bucket holding that latency, or
+     * the largest latency recorded if that is smaller.
+     *
+     * @param percentile
+     *            the percentage of the latencies, for example 99.9
+     * @throws IllegalArgumentException
+     *             if percentile is not between 0 and 100
+     * @return the latency at that percentile in nanoseconds
+     */
+    public long getValueAtPercentile(double percentile)
+            throws IllegalArgumentException {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("The percentile must be"
+                    + " between 0 and 100.");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        // the number of latencies at or below the one returned
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(max, LatencyHistogram.highestValueIn(bucket));
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " mean=" + Math.round(getMean()) + "ns p50="
+                + getValueAtPercentile(50) + "ns p99="
+                + getValueAtPercentile(99) + "ns p99.9="
+                + getValueAtPercentile(99.9) + "ns max=" + max + "ns";
+    }
+}
@@ -0,0 +1,124 @@
+package railway.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A histogram of latencies in nanoseconds that any number of threads can
+ * record into at once without locking.
+ * </p>
+ *
+ * <p>
+ * As in an HDR histogram, the buckets are linear within each power of two
+ * and double in width from one power of two to the next, so every latency is
+ * counted in a bucket whose bounds are within 1 / BUCKETS_PER_POWER (about
+ * 3%) of it, from a nanosecond up to the largest long, using a fixed array of
+ * counts. Values below EXACT_BUCKETS are counted exactly.
+ * </p>
+ */
+class LatencyHistogram {
+
+    // the number of bits of a value that determine its bucket
+    private static final int PRECISION = 6;
+    // the number of buckets below 2^PRECISION, one for each value
+    static final int EXACT_BUCKETS = 1 << PRECISION;
+    // the number of buckets in each power of two from 2^PRECISION up: a
+    // value there is counted by its top PRECISION bits, whose leading bit is
+    // always one, so half as many buckets as there are exact ones
+    static final int BUCKETS_PER_POWER = EXACT_BUCKETS / 2;
+    // the number of buckets, enough for any non-negative long
+    static final int BUCKET_COUNT = bucketOf(Long.MAX_VALUE) + 1;
+
+    // the number of values recorded in each bucket
+    private final AtomicLongArray counts;
+    // the sum and the largest of the values recorded
+    private final LongAdder total;
+    private final AtomicLong max;
+
+    /**
+     * Creates an empty histogram.
+     */
+    LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKET_COUNT);
+        total = new LongAdder();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Records a latency. A negative latency, which the clock can give if it
+     * is adjusted, is recorded as zero.
+     *
+     * @param nanos
+     *            the latency in nanoseconds
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        total.add(value);
+        long largest = max.get();
+        while (value > largest && !max.compareAndSet(largest, value)) {
+            largest = max.get();
+        }
+    }
+
+    /**
+     * Returns a copy of the counts recorded so far. Values recorded while
+     * the copy is being made may or may not be included in it.
+     *
+     * @return a snapshot of the histogram
+     */
+    HistogramSnapshot getSnapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new HistogramSnapshot(copy, total.sum(), max.get());
+    }
+
+    /**
+     * Discards the values recorded so far.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        max.set(0);
+    }
+
+    /**
+     * Returns the bucket that the given value is counted in.
+     *
+     * @require value >= 0
+     */
+    static int bucketOf(long value) {
+        if (value < EXACT_BUCKETS) {
+            return (int) value;
+        }
+        // the number of low bits of the value that its bucket ignores, which
+        // is one for the first power of two above the exact buckets
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - PRECISION;
+        // the top bits of the value, from BUCKETS_PER_POWER up to twice that
+        int top = (int) (value >>> shift);
+        return EXACT_BUCKETS + (shift - 1) * BUCKETS_PER_POWER
+                + (top - BUCKETS_PER_POWER);
+    }
+
+    /**
+     * Returns the largest value that is counted in the given bucket.
+     *
+     * @require 0 <= bucket < BUCKET_COUNT
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < EXACT_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - EXACT_BUCKETS) / BUCKETS_PER_POWER + 1;
+        long top = (bucket - EXACT_BUCKETS) % BUCKETS_PER_POWER
+                + BUCKETS_PER_POWER;
+        // for the last bucket, this wraps round to Long.MAX_VALUE
+        return ((top + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,107 @@
+package railway.metrics;
+
+import java.util.*;
+
+/**
+ * An immutable copy of the metrics recorded by RailwayMetrics, taken at some
+ * point in time.
+ */
+public class MetricsSnapshot {
+
+    // the latencies recorded for each operation
+    private final Map<Operation, HistogramSnapshot> latencies;
+    // the number of requests rejected for each reason
+    private final Map<Rejection, Long> rejections;
+    // the number of intersection checks, and how many of them found an
+    // intersection
+    private final long intersectionChecks;
+    private final long intersectionsFound;
+
+    /*
+     * invariant: latencies and rejections have an entry for every operation
+     * and every reason && 0 <= intersectionsFound <= intersectionChecks
+     */
+
+    /**
+     * Creates a snapshot of the given metrics.
+     *
+     * @require latencies and rejections have an entry for every operation and
+     *          every reason, and are not changed afterwards
+     */
+    MetricsSnapshot(Map<Operation, HistogramSnapshot> latencies,
+            Map<Rejection, Long> rejections, long intersectionChecks,
+            long intersectionsFound) {
+        this.latencies = Collections.unmodifiableMap(latencies);
+        this.rejections = Collections.unmodifiableMap(rejections);
+        this.intersectionChecks = intersectionChecks;
+        this.intersectionsFound = intersectionsFound;
+    }
+
+    /**
+     * Returns the latencies recorded for the given operation.
+     *
+     * @param operation
+     *            the operation
+     * @throws NullPointerException
+     *             if operation is null
+     * @return a snapshot of the latencies of the operation
+     */
+    public HistogramSnapshot getLatencies(Operation operation)
+            throws NullPointerException {
+        if (operation == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        return latencies.get(operation);
+    }
+
+    /**
+     * Returns the number of requests rejected for the given reason.
+     *
+     * @param reason
+     *            the reason for rejecting a request
+     * @throws NullPointerException
+     *             if reason is null
+     * @return the number of requests rejected for that reason
+     */
+    public long getRejections(Rejection reason) throws NullPointerException {
+        if (reason == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        return rejections.get(reason);
+    }
+
+    /**
+     * Returns the number of times that a requested subroute has been checked
+     * for intersections with the subroutes of other trains.
+     *
+     * @return the number of intersection checks
+     */
+    public long getIntersectionChecks() {
+        return intersectionChecks;
+    }
+
+    /**
+     * Returns the number of intersection checks that found an intersection.
+     *
+     * @return the number of intersections found
+     */
+    public long getIntersectionsFound() {
+        return intersectionsFound;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            result.append(operation).append(": ").append(latencies.get(
+                    operation)).append(System.lineSeparator());
+        }
+        for (Rejection reason : Rejection.values()) {
+            result.append("rejected ").append(reason).append(": ").append(
+                    rejections.get(reason)).append(System.lineSeparator());
+        }
+        result.append("intersection checks: ").append(intersectionChecks)
+                .append(", found: ").append(intersectionsFound);
+        return result.toString();
+    }
+}
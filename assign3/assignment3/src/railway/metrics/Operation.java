@@ -0,0 +1,19 @@
+package railway.metrics;
+
+/**
+ * The operations whose latencies are recorded by RailwayMetrics.
+ */
+public enum Operation {
+    /** RailwayModel.spawnTrain, including reading the route file */
+    SPAWN_TRAIN,
+    /** RailwayModel.setTrainSubroute */
+    SET_TRAIN_SUBROUTE,
+    /** RailwayModel.advanceTrain */
+    ADVANCE_TRAIN,
+    /** a check of a requested subroute against the other trains' */
+    VERIFY_NO_INTERSECTIONS,
+    /** TrackReader.read */
+    READ_TRACK,
+    /** RouteReader.read */
+    READ_ROUTE
+}
@@ -0,0 +1,50 @@
+package railway.metrics;
+
+/**
+ * The management interface of the latencies recorded by RailwayMetrics for
+ * one operation. All latencies are in nanoseconds.
+ */
+public interface OperationMetricsMXBean {
+
+    /**
+     * Returns the number of latencies recorded.
+     *
+     * @return the number of latencies
+     */
+    long getCount();
+
+    /**
+     * Returns the mean latency.
+     *
+     * @return the mean latency
+     */
+    double getMeanNanos();
+
+    /**
+     * Returns the median latency.
+     *
+     * @return the median latency
+     */
+    long getMedianNanos();
+
+    /**
+     * Returns the 99th percentile of the latencies.
+     *
+     * @return the 99th percentile latency
+     */
+    long getP99Nanos();
+
+    /**
+     * Returns the 99.9th percentile of the latencies.
+     *
+     * @return the 99.9th percentile latency
+     */
+    long getP999Nanos();
+
+    /**
+     * Returns the largest latency.
+     *
+     * @return the largest latency
+     */
+    long getMaxNanos();
+}
@@ -0,0 +1,295 @@
+package railway.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Records how long the operations of the railway classes take, why the
+ * RailwayModel rejects requests, and how many intersection checks it makes.
+ * </p>
+ *
+ * <p>
+ * Recording is off until setEnabled(true) is called. While it is off, an
+ * instrumented operation only reads one volatile flag, so the overhead is
+ * negligible. While it is on, each operation reads the clock twice and
+ * records its latency into a lock-free histogram, so operations on many
+ * threads do not wait for each other to record. The metrics are shared by
+ * every model and reader in the JVM.
+ * </p>
+ *
+ * <p>
+ * The metrics can be read with getSnapshot, or through JMX once
+ * registerMBeans has been called: the MXBean named railway:type=Metrics has
+ * the counts and the switch, and the MXBean named
+ * railway:type=Metrics,operation=NAME has the latencies of each operation.
+ * </p>
+ *
+ * <p>
+ * The instrumented code times an operation with the pattern:
+ * </p>
+ *
+ * <pre>
+ * long started = RailwayMetrics.start();
+ * try {
+ *     ...
+ * } finally {
+ *     RailwayMetrics.stop(Operation.READ_TRACK, started);
+ * }
+ * </pre>
+ */
+public final class RailwayMetrics {
+
+    // the value returned by start when recording is off
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+    // the name of the MXBean of the counts
+    private static final String NAME = "railway:type=Metrics";
+
+    // whether metrics are being recorded
+    private static volatile boolean enabled;
+    // the latencies of each operation, and the number of rejections for
+    // each reason, indexed by ordinal
+    private static final LatencyHistogram[] latencies = new LatencyHistogram[
+            Operation.values().length];
+    private static final LongAdder[] rejections = new LongAdder[Rejection
+            .values().length];
+    // the number of intersection checks, and of intersections found
+    private static final LongAdder intersectionChecks = new LongAdder();
+    private static final LongAdder intersectionsFound = new LongAdder();
+
+    static {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < rejections.length; i++) {
+            rejections[i] = new LongAdder();
+        }
+    }
+
+    private RailwayMetrics() {
+    }
+
+    /**
+     * Returns true if metrics are being recorded.
+     *
+     * @return whether metrics are being recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts or stops recording metrics. The metrics recorded so far are
+     * kept either way.
+     *
+     * @param on
+     *            whether to record metrics
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Returns the time at which an operation is starting, to be passed to
+     * stop when it finishes, or a value that stop ignores if recording is
+     * off.
+     *
+     * @return the start time of the operation
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * Records the latency of an operation that started at the given time.
+     *
+     * @param operation
+     *            the operation that finished
+     * @param started
+     *            the value returned by start when the operation started
+     * @require operation != null
+     */
+    public static void stop(Operation operation, long started) {
+        if (started != NOT_TIMED) {
+            latencies[operation.ordinal()].record(System.nanoTime()
+                    - started);
+        }
+    }
+
+    /**
+     * Counts a request rejected for the given reason, if recording is on.
+     *
+     * @param reason
+     *            the reason that the request was rejected
+     * @require reason != null
+     */
+    public static void reject(Rejection reason) {
+        if (enabled) {
+            rejections[reason.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Counts an intersection check, if recording is on.
+     *
+     * @param found
+     *            whether the check found an intersection
+     */
+    public static void intersectionChecked(boolean found) {
+        if (enabled) {
+            intersectionChecks.increment();
+            if (found) {
+                intersectionsFound.increment();
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the metrics recorded so far. Metrics recorded while
+     * the copy is being made may or may not be included in it.
+     *
+     * @return a snapshot of the metrics
+     */
+    public static MetricsSnapshot getSnapshot() {
+        Map<Operation, HistogramSnapshot> histograms = new EnumMap<>(
+                Operation.class);
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, latencies[operation.ordinal()]
+                    .getSnapshot());
+        }
+        Map<Rejection, Long> counts = new EnumMap<>(Rejection.class);
+        for (Rejection reason : Rejection.values()) {
+            counts.put(reason, rejections[reason.ordinal()].sum());
+        }
+        // a check is counted before its intersection, so reading the
+        // intersections first keeps them from outnumbering the checks
+        long found = intersectionsFound.sum();
+        return new MetricsSnapshot(histograms, counts, Math.max(found,
+                intersectionChecks.sum()), found);
+    }
+
+    /**
+     * Discards the metrics recorded so far.
+     */
+    public static void reset() {
+        for (LatencyHistogram histogram : latencies) {
+            histogram.reset();
+        }
+        for (LongAdder count : rejections) {
+            count.reset();
+        }
+        intersectionsFound.reset();
+        intersectionChecks.reset();
+    }
+
+    /**
+     * Registers the MXBeans of the metrics with the platform MBean server,
+     * unless they have already been registered.
+     *
+     * @throws JMException
+     *             if the MXBeans could not be registered
+     */
+    public static synchronized void registerMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(NAME);
+        if (server.isRegistered(name)) {
+            return;
+        }
+        for (Operation operation : Operation.values()) {
+            server.registerMBean(new StandardMBean(new OperationMetrics(
+                    operation), OperationMetricsMXBean.class, true),
+                    new ObjectName(NAME + ",operation=" + operation));
+        }
+        server.registerMBean(new StandardMBean(new Metrics(),
+                RailwayMetricsMXBean.class, true), name);
+    }
+
+    /**
+     * The MXBean of the counts and the switch.
+     */
+    private static class Metrics implements RailwayMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return RailwayMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean on) {
+            RailwayMetrics.setEnabled(on);
+        }
+
+        @Override
+        public Map<String, Long> getRejections() {
+            Map<String, Long> counts = new TreeMap<>();
+            for (Rejection reason : Rejection.values()) {
+                counts.put(reason.name(), rejections[reason.ordinal()].sum());
+            }
+            return counts;
+        }
+
+        @Override
+        public long getIntersectionChecks() {
+            return intersectionChecks.sum();
+        }
+
+        @Override
+        public long getIntersectionsFound() {
+            return intersectionsFound.sum();
+        }
+
+        @Override
+        public void reset() {
+            RailwayMetrics.reset();
+        }
+    }
+
+    /**
+     * The MXBean of the latencies of one operation. Each attribute is read
+     * from a new snapshot of the histogram.
+     */
+    private static class OperationMetrics implements OperationMetricsMXBean {
+
+        // the histogram of the operation
+        private final LatencyHistogram histogram;
+
+        OperationMetrics(Operation operation) {
+            histogram = latencies[operation.ordinal()];
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getSnapshot().getCount();
+        }
+
+        @Override
+        public double getMeanNanos() {
+            return histogram.getSnapshot().getMean();
+        }
+
+        @Override
+        public long getMedianNanos() {
+            return histogram.getSnapshot().getValueAtPercentile(50);
+        }
+
+        @Override
+        public long getP99Nanos() {
+            return histogram.getSnapshot().getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getP999Nanos() {
+            return histogram.getSnapshot().getValueAtPercentile(99.9);
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return histogram.getSnapshot().getMax();
+        }
+    }
+}
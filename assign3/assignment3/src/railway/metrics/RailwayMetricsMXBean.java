@@ -0,0 +1,52 @@
+package railway.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of the metrics recorded by RailwayMetrics, as a
+ * whole. The latencies of each operation have an OperationMetricsMXBean of
+ * their own.
+ */
+public interface RailwayMetricsMXBean {
+
+    /**
+     * Returns true if metrics are being recorded.
+     *
+     * @return whether metrics are being recorded
+     */
+    boolean isEnabled();
+
+    /**
+     * Starts or stops recording metrics.
+     *
+     * @param enabled
+     *            whether to record metrics
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns the number of requests rejected for each reason.
+     *
+     * @return a map from the name of each reason to its count
+     */
+    Map<String, Long> getRejections();
+
+    /**
+     * Returns the number of intersection checks made.
+     *
+     * @return the number of intersection checks
+     */
+    long getIntersectionChecks();
+
+    /**
+     * Returns the number of intersection checks that found an intersection.
+     *
+     * @return the number of intersections found
+     */
+    long getIntersectionsFound();
+
+    /**
+     * Discards the metrics recorded so far.
+     */
+    void reset();
+}
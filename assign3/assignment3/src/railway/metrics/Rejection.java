@@ -0,0 +1,16 @@
+package railway.metrics;
+
+/**
+ * The reasons that the RailwayModel rejects a request to add or move a
+ * train, which are counted by RailwayMetrics.
+ */
+public enum Rejection {
+    /** the route of a new train is not on the track */
+    ROUTE_NOT_ON_TRACK,
+    /** the offsets do not define a sub-route of the train's route */
+    INVALID_OFFSETS,
+    /** the requested sub-route intersects that of another train */
+    INTERSECTION,
+    /** there is no train with the requested ID */
+    NO_SUCH_TRAIN
+}
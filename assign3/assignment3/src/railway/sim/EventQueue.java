@@ -0,0 +1,145 @@
+package railway.sim;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A priority queue of timed events, each for a numbered train, that are
+ * removed in order of their times. Events with the same time are removed in
+ * order of train number, so that a simulation is deterministic however its
+ * events are split between queues.
+ * </p>
+ *
+ * <p>
+ * The queue is a binary heap held in arrays of primitive values, so adding
+ * and removing events creates no objects.
+ * </p>
+ */
+class EventQueue {
+
+    // the time and train of each event in the heap
+    private long[] times;
+    private int[] trains;
+    // the number of events in the queue
+    private int size;
+
+    /*
+     * invariant: the first size entries of times and trains form a binary
+     * heap ordered by time and then by train
+     */
+
+    /**
+     * Creates an empty queue.
+     */
+    EventQueue() {
+        times = new long[16];
+        trains = new int[16];
+    }
+
+    /**
+     * Returns true if there are no events in the queue.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of events in the queue.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds an event to the queue.
+     *
+     * @param time
+     *            the time of the event
+     * @param train
+     *            the number of the train the event is for
+     */
+    void add(long time, int train) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, 2 * size);
+            trains = Arrays.copyOf(trains, 2 * size);
+        }
+        // move the hole up from the end until the event can go in it
+        int hole = size++;
+        while (hole > 0) {
+            int parent = (hole - 1) >>> 1;
+            if (!before(time, train, times[parent], trains[parent])) {
+                break;
+            }
+            move(parent, hole);
+            hole = parent;
+        }
+        set(hole, time, train);
+    }
+
+    /**
+     * Returns the time of the earliest event in the queue.
+     *
+     * @require !isEmpty()
+     */
+    long peekTime() {
+        return times[0];
+    }
+
+    /**
+     * Removes the earliest event from the queue and returns the number of
+     * its train.
+     *
+     * @require !isEmpty()
+     */
+    int poll() {
+        int result = trains[0];
+        size--;
+        if (size > 0) {
+            long time = times[size];
+            int train = trains[size];
+            // move the hole down from the root until the last event fits
+            int hole = 0;
+            while (true) {
+                int child = 2 * hole + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(times[child + 1],
+                        trains[child + 1], times[child], trains[child])) {
+                    child++;
+                }
+                if (!before(times[child], trains[child], time, train)) {
+                    break;
+                }
+                move(child, hole);
+                hole = child;
+            }
+            set(hole, time, train);
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if an event with the given time and train comes before an
+     * event with time otherTime and train otherTrain.
+     */
+    private static boolean before(long time, int train, long otherTime,
+            int otherTrain) {
+        return time < otherTime || (time == otherTime && train < otherTrain);
+    }
+
+    /**
+     * Copies the event at index from to index to.
+     */
+    private void move(int from, int to) {
+        set(to, times[from], trains[from]);
+    }
+
+    /**
+     * Places an event at the given index of the heap.
+     */
+    private void set(int index, long time, int train) {
+        times[index] = time;
+        trains[index] = train;
+    }
+}
@@ -0,0 +1,369 @@
+package railway.sim;
+
+import railway.Junction;
+import railway.Section;
+import railway.Segment;
+
+import java.util.*;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * Runs a simulation with the events in each region of a partition of the
+ * track handled on a thread of their own, with the same results as handling
+ * all of the events in order on one thread.
+ * </p>
+ *
+ * <p>
+ * The footprint of a train at a time is the part of its route between its
+ * back and its reach: its events at that time only involve the sections of
+ * its footprint and the junctions at their ends. A train whose footprint lies
+ * within one region, away from the boundary junctions of the partition, is
+ * local to that region. The events of trains that are local to different
+ * regions involve different sections and junctions, so they can be handled
+ * in either order, or at the same time.
+ * </p>
+ *
+ * <p>
+ * The simulation proceeds a time at a time. First each region takes the
+ * trains with events at that time from its queue, and hands each train that
+ * is local to another region to that region through a lock-free queue, and
+ * each train that crosses a boundary to the coordinator. Then, in order of
+ * train number, the regions handle their local trains in parallel up to the
+ * next crossing train, which the coordinator handles while the regions wait.
+ * Trains are therefore handled in the same order, relative to any train they
+ * could affect, as on one thread.
+ * </p>
+ */
+class ParallelRun {
+
+    // marks a train or segment that is not local to a single region
+    private static final int BOUNDARY = -1;
+
+    // the state of the simulation
+    private final SimulationRun run;
+    // the time at which the simulation stops
+    private final long horizon;
+    // the number of regions
+    private final int regionCount;
+
+    // for each train, the offsets along its route at which its segments
+    // start, followed by the length of the route
+    private final int[][] starts;
+    // for each train, the region that each segment of its route is local to,
+    // or BOUNDARY, and the index of the last segment of the run of segments
+    // local to the same region that starts with that segment
+    private final int[][] segmentRegions;
+    private final int[][] runEnds;
+
+    // the pending events of the trains in each region
+    private final EventQueue[] queues;
+    // the trains handed to each region by the others at the current time
+    private final List<Queue<Integer>> inboxes;
+    // the trains that cross a boundary at the current time
+    private final Queue<Integer> crossing;
+    // the number of events handled in each region, and by the coordinator
+    private final long[] eventCounts;
+    // the first failure of any thread, after which no more events are
+    // handled
+    private final AtomicReference<Throwable> failure;
+    // the barrier that the regions meet at, whose action is the coordinator
+    private final CyclicBarrier barrier;
+
+    // changed only by the coordinator: the current time, whether the
+    // simulation has finished, the crossing trains at the current time in
+    // order, and the index of the next of them to handle (or -1 while the
+    // regions are finding them)
+    private long now;
+    private boolean done;
+    private int[] crossingTrains;
+    private int stage;
+
+    /**
+     * Prepares to run a simulation of the given trains on a track, with the
+     * given partition of the track.
+     *
+     * @require run has not handled any events && plans are the trains of run
+     *          && the routes of the plans are on the partitioned track
+     * @throws IllegalArgumentException
+     *             if a section of a route is not in the partition
+     */
+    ParallelRun(SimulationRun run, List<TrainPlan> plans,
+            TrackPartition partition, long horizon)
+            throws IllegalArgumentException {
+        this.run = run;
+        this.horizon = horizon;
+        regionCount = partition.getRegionCount();
+
+        int trains = plans.size();
+        starts = new int[trains][];
+        segmentRegions = new int[trains][];
+        runEnds = new int[trains][];
+        Set<Junction> boundary = partition.getBoundaryJunctions();
+        for (int train = 0; train < trains; train++) {
+            List<Segment> segments = plans.get(train).getRoute()
+                    .getSegments();
+            int count = segments.size();
+            starts[train] = new int[count + 1];
+            segmentRegions[train] = new int[count];
+            runEnds[train] = new int[count];
+            for (int i = 0; i < count; i++) {
+                Section section = segments.get(i).getSection();
+                starts[train][i + 1] = starts[train][i] + segments.get(i)
+                        .getLength();
+                segmentRegions[train][i] = partition.getRegion(section);
+                if (boundary.contains(section.getEndPoint1().getJunction())
+                        || boundary.contains(section.getEndPoint2()
+                                .getJunction())) {
+                    segmentRegions[train][i] = BOUNDARY;
+                }
+            }
+            for (int i = count - 1; i >= 0; i--) {
+                runEnds[train][i] = (i + 1 < count
+                        && segmentRegions[train][i + 1]
+                                == segmentRegions[train][i])
+                        ? runEnds[train][i + 1] : i;
+            }
+        }
+
+        queues = new EventQueue[regionCount];
+        inboxes = new ArrayList<>();
+        for (int region = 0; region < regionCount; region++) {
+            queues[region] = new EventQueue();
+            inboxes.add(new ConcurrentLinkedQueue<>());
+        }
+        crossing = new ConcurrentLinkedQueue<>();
+        eventCounts = new long[regionCount + 1];
+        failure = new AtomicReference<>();
+        barrier = new CyclicBarrier(regionCount, this::coordinate);
+
+        for (int train = 0; train < trains; train++) {
+            queues[home(train)].add(run.getNextTime(train), train);
+        }
+        stage = -1;
+        nextTime();
+    }
+
+    /**
+     * Handles the events before the horizon, and reports the results.
+     */
+    SimulationReport run() {
+        Thread[] threads = new Thread[regionCount];
+        for (int region = 0; region < regionCount; region++) {
+            int worker = region;
+            threads[region] = new Thread(() -> work(worker),
+                    "simulation-region-" + region);
+            threads[region].start();
+        }
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable failed = failure.get();
+        if (failed instanceof RuntimeException) {
+            throw (RuntimeException) failed;
+        } else if (failed instanceof Error) {
+            throw (Error) failed;
+        } else if (failed != null) {
+            throw new IllegalStateException(failed);
+        }
+        long eventCount = 0;
+        for (long count : eventCounts) {
+            eventCount += count;
+        }
+        return run.report(horizon, eventCount);
+    }
+
+    /**
+     * Handles the events of the trains local to a region, until the
+     * simulation has finished.
+     */
+    private void work(int region) {
+        EventQueue queue = queues[region];
+        Queue<Integer> inbox = inboxes.get(region);
+        // the trains local to the region at the current time
+        int[] batch = new int[16];
+        try {
+            while (!done) {
+                int size = 0;
+                while (!queue.isEmpty() && queue.peekTime() == now) {
+                    int train = queue.poll();
+                    int owner = owner(train);
+                    if (owner == region) {
+                        batch = add(batch, size++, train);
+                    } else if (owner == BOUNDARY) {
+                        crossing.add(train);
+                    } else {
+                        inboxes.get(owner).add(train);
+                    }
+                }
+                barrier.await();
+
+                for (Integer train = inbox.poll(); train != null; train = inbox
+                        .poll()) {
+                    batch = add(batch, size++, train);
+                }
+                Arrays.sort(batch, 0, size);
+                int position = 0;
+                for (int i = 0; i <= crossingTrains.length; i++) {
+                    int limit = (i < crossingTrains.length) ? crossingTrains[i]
+                            : Integer.MAX_VALUE;
+                    while (position < size && batch[position] < limit) {
+                        handle(batch[position++], queue, region);
+                    }
+                    barrier.await();
+                }
+            }
+        } catch (BrokenBarrierException e) {
+            // another region failed, and recorded why
+        } catch (InterruptedException | RuntimeException | Error e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records the failure of a region outside of the handling of a train, and
+     * stops the other regions waiting for it at the barrier. An await that
+     * times out breaks the barrier for good, so that the regions waiting at it
+     * now, and those that arrive later, get a BrokenBarrierException. If the
+     * failed region is the last to arrive, it trips the barrier instead, so
+     * it waits again, until either the barrier breaks or the coordinator sees
+     * the failure and finishes the simulation.
+     */
+    private void fail(Throwable cause) {
+        failure.compareAndSet(null, cause);
+        while (!done && !barrier.isBroken()) {
+            try {
+                barrier.await(0, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                // the barrier breaks when a waiting thread is interrupted
+                Thread.currentThread().interrupt();
+            } catch (TimeoutException | BrokenBarrierException e) {
+                // the barrier is broken
+            } catch (RuntimeException | Error e) {
+                // the coordinator failed, which breaks the barrier
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    /**
+     * The action of the barrier, run by the last region to reach it while
+     * the others wait: it orders the crossing trains once the regions have
+     * found them, then handles them one at a time, and finally moves on to
+     * the next time.
+     */
+    private void coordinate() {
+        if (stage < 0) {
+            crossingTrains = new int[crossing.size()];
+            for (int i = 0; i < crossingTrains.length; i++) {
+                crossingTrains[i] = crossing.poll();
+            }
+            Arrays.sort(crossingTrains);
+            stage = 0;
+        } else if (stage < crossingTrains.length) {
+            int train = crossingTrains[stage++];
+            handle(train, queues[home(train)], regionCount);
+        } else {
+            stage = -1;
+            nextTime();
+        }
+    }
+
+    /**
+     * Moves on to the time of the earliest pending event, or finishes the
+     * simulation if there is none before the horizon.
+     */
+    private void nextTime() {
+        now = Long.MAX_VALUE;
+        for (EventQueue queue : queues) {
+            if (!queue.isEmpty()) {
+                now = Math.min(now, queue.peekTime());
+            }
+        }
+        done = (now >= horizon || failure.get() != null);
+    }
+
+    /**
+     * Handles the events of a train at the current time, adds its next
+     * event to the given queue, and counts the events handled against the
+     * given counter. If handling the events fails, the failure is recorded,
+     * and no more events are handled, but the thread carries on meeting the
+     * others at the barrier until the coordinator finishes the simulation.
+     */
+    private void handle(int train, EventQueue queue, int counter) {
+        if (failure.get() != null) {
+            return;
+        }
+        try {
+            eventCounts[counter] += run.handle(train);
+            if (run.getNextTime(train) >= 0) {
+                queue.add(run.getNextTime(train), train);
+            }
+        } catch (RuntimeException | Error e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * Returns the region that the given train is local to at present, or
+     * BOUNDARY if its footprint is not within a single region.
+     */
+    private int owner(int train) {
+        int first = segmentAt(train, run.getBack(train));
+        int last = segmentAt(train, run.getReach(train) - 1);
+        return (runEnds[train][first] >= last) ? segmentRegions[train][first]
+                : BOUNDARY;
+    }
+
+    /**
+     * Returns a region whose queue can hold the pending event of the given
+     * train, which need not be the region it is local to: the region of the
+     * segment at its back, or the first region.
+     */
+    private int home(int train) {
+        int region = segmentRegions[train][segmentAt(train, run.getBack(
+                train))];
+        return (region == BOUNDARY) ? 0 : region;
+    }
+
+    /**
+     * Returns the index of the segment of the route of the given train that
+     * the given offset along the route is on.
+     *
+     * @require 0 <= offset < the length of the route of the train
+     */
+    private int segmentAt(int train, int offset) {
+        int[] offsets = starts[train];
+        int index = Arrays.binarySearch(offsets, 0, offsets.length - 1,
+                offset);
+        return (index >= 0) ? index : -index - 2;
+    }
+
+    /**
+     * Places a train at the given index of a batch, and returns the batch,
+     * which is replaced by a larger one if it is full.
+     */
+    private static int[] add(int[] batch, int index, int train) {
+        if (index == batch.length) {
+            batch = Arrays.copyOf(batch, 2 * index);
+        }
+        batch[index] = train;
+        return batch;
+    }
+}
@@ -0,0 +1,190 @@
+package railway.sim;
+
+import railway.Section;
+
+import java.util.*;
+
+/**
+ * An immutable record of the results of a simulation: how many events were
+ * handled, which trains reached the end of their routes and when, how long
+ * each train was blocked, and how long each section of the track was
+ * allocated to a train.
+ */
+public class SimulationReport {
+
+    // the time at which the simulation stopped
+    private final long horizon;
+    // the number of events handled
+    private final long eventCount;
+    // the number of trains that reached the end of their routes
+    private final int arrivals;
+    // the total time each train was blocked, indexed by train number
+    private final long[] blockedTimes;
+    // the time each train reached the end of its route, or -1
+    private final long[] arrivalTimes;
+    // the total time that each section had a segment allocated on it
+    private final Map<Section, Long> busyTimes;
+
+    /*
+     * invariant: horizon > 0 && eventCount >= 0 && blockedTimes and
+     * arrivalTimes have the same length && arrivals is the number of
+     * non-negative arrival times && busyTimes != null
+     */
+
+    /**
+     * Creates a report of a simulation.
+     *
+     * @require horizon > 0 && eventCount >= 0 && blockedTimes and
+     *          arrivalTimes are not null and have the same length && arrivals
+     *          is the number of non-negative arrival times && busyTimes !=
+     *          null
+     */
+    SimulationReport(long horizon, long eventCount, int arrivals,
+            long[] blockedTimes, long[] arrivalTimes,
+            Map<Section, Long> busyTimes) {
+        this.horizon = horizon;
+        this.eventCount = eventCount;
+        this.arrivals = arrivals;
+        this.blockedTimes = blockedTimes.clone();
+        this.arrivalTimes = arrivalTimes.clone();
+        this.busyTimes = new HashMap<>(busyTimes);
+    }
+
+    /**
+     * Returns the time at which the simulation stopped.
+     *
+     * @return the horizon of the simulation
+     */
+    public long getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * Returns the number of events handled by the simulation.
+     *
+     * @return the number of events handled
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the number of trains in the simulation.
+     *
+     * @return the number of trains
+     */
+    public int getTrainCount() {
+        return arrivalTimes.length;
+    }
+
+    /**
+     * Returns the number of trains that reached the end of their routes
+     * before the horizon.
+     *
+     * @return the number of trains that arrived
+     */
+    public int getArrivals() {
+        return arrivals;
+    }
+
+    /**
+     * Returns the number of trains that reached the end of their routes per
+     * unit of time.
+     *
+     * @return getArrivals() / getHorizon()
+     */
+    public double getThroughput() {
+        return (double) arrivals / horizon;
+    }
+
+    /**
+     * Returns the time at which the given train reached the end of its route,
+     * or -1 if it did not do so before the horizon.
+     *
+     * @param train
+     *            the number of the train
+     * @throws IndexOutOfBoundsException
+     *             if there is no train with the given number
+     * @return the arrival time of the train, or -1
+     */
+    public long getArrivalTime(int train) throws IndexOutOfBoundsException {
+        return arrivalTimes[train];
+    }
+
+    /**
+     * Returns the total time that the given train was blocked: waiting for
+     * authority to enter the track or to move further along its route.
+     *
+     * @param train
+     *            the number of the train
+     * @throws IndexOutOfBoundsException
+     *             if there is no train with the given number
+     * @return the time the train was blocked
+     */
+    public long getBlockedTime(int train) throws IndexOutOfBoundsException {
+        return blockedTimes[train];
+    }
+
+    /**
+     * Returns the total time that the trains were blocked.
+     *
+     * @return the sum of the blocked times of the trains
+     */
+    public long getTotalBlockedTime() {
+        long result = 0;
+        for (long blockedTime : blockedTimes) {
+            result += blockedTime;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the fraction of the time of the simulation for which part of
+     * the given section was allocated to a train.
+     *
+     * @param section
+     *            a section of the track
+     * @throws IllegalArgumentException
+     *             if the section is not on the track
+     * @return the utilisation of the section, between 0 and 1
+     */
+    public double getUtilisation(Section section)
+            throws IllegalArgumentException {
+        Long busyTime = busyTimes.get(section);
+        if (busyTime == null) {
+            throw new IllegalArgumentException("The section is not on the"
+                    + " track.");
+        }
+        return (double) busyTime / horizon;
+    }
+
+    /**
+     * Returns the mean of the utilisations of the sections of the track, or
+     * zero if the track has no sections.
+     *
+     * @return the mean utilisation of the sections
+     */
+    public double getMeanUtilisation() {
+        if (busyTimes.isEmpty()) {
+            return 0;
+        }
+        double total = 0;
+        for (long busyTime : busyTimes.values()) {
+            total += (double) busyTime / horizon;
+        }
+        return total / busyTimes.size();
+    }
+
+    /**
+     * Returns a summary of the report, with the number of events and
+     * arrivals, the throughput, the total blocked time and the mean
+     * utilisation.
+     */
+    @Override
+    public String toString() {
+        return "events: " + eventCount + ", arrivals: " + arrivals + " of "
+                + arrivalTimes.length + ", throughput: " + getThroughput()
+                + ", blocked time: " + getTotalBlockedTime()
+                + ", mean utilisation: " + getMeanUtilisation();
+    }
+}
@@ -0,0 +1,330 @@
+package railway.sim;
+
+import railway.Occupancy;
+import railway.Route;
+import railway.Section;
+import railway.Segment;
+import railway.SubrouteChange;
+import railway.Track;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * The state of one run of a simulation, and the handling of the events of
+ * each train. Each train has at most one pending event at a time, which is
+ * recorded here rather than in a queue, so that the events can be ordered by
+ * a single queue or split between several.
+ * </p>
+ *
+ * <p>
+ * The events of different trains may be handled on different threads at the
+ * same time, provided that their footprints (see getBack and getReach) share
+ * no section, and no junction at the end of a section. The subroutes
+ * allocated to the trains are published as immutable snapshots, so such
+ * events do not interfere.
+ * </p>
+ */
+class SimulationRun {
+
+    // the kinds of event
+    private static final int ADVANCE = 0;
+    private static final int REQUEST = 1;
+
+    // the trains to simulate, indexed by their number
+    private final List<TrainPlan> plans;
+    // the distance beyond its front that a train requests authority for
+    private final int lookahead;
+    // the time a blocked train waits before requesting authority again
+    private final long retryInterval;
+    // the subroutes allocated to the trains
+    private final AtomicReference<Occupancy> occupancy;
+
+    // the time and kind of the pending event of each train, or -1 if it has
+    // none
+    private final long[] nextTimes;
+    private final int[] nextKinds;
+    // the offsets along its route of the back and front of each train, and
+    // of the end of its authority
+    private final int[] backs;
+    private final int[] fronts;
+    private final int[] authorities;
+    // the subroute allocated to each train, or null if it has none
+    private final Route[] allocations;
+    // the index of the next stop of each train
+    private final int[] nextStops;
+    // the time since which each train has been blocked, or -1 if it is not
+    // blocked, and the total time it was blocked before then
+    private final long[] blockedSince;
+    private final long[] blockedTimes;
+    // the time each train reached the end of its route, or -1
+    private final long[] arrivalTimes;
+
+    // the number of each section of the track
+    private final Map<Section, Integer> sectionNumbers;
+    // the sections, indexed by their number
+    private final Section[] sections;
+    // the number of allocated segments on each section, the time since which
+    // it has had one, and the total time it had one before then
+    private final int[] occupiers;
+    private final long[] busySince;
+    private final long[] busyTimes;
+
+    /**
+     * Creates the state of a run in which no train has departed, and the
+     * pending event of each train is a request for authority at its
+     * departure time.
+     *
+     * @require track != null && plans != null && !plans.contains(null) &&
+     *          the route of each plan is on the track && lookahead > 0 &&
+     *          retryInterval > 0
+     */
+    SimulationRun(Track track, List<TrainPlan> plans, int lookahead,
+            long retryInterval) {
+        this.plans = plans;
+        this.lookahead = lookahead;
+        this.retryInterval = retryInterval;
+        occupancy = new AtomicReference<>(new Occupancy());
+
+        int trains = plans.size();
+        nextTimes = new long[trains];
+        nextKinds = new int[trains];
+        backs = new int[trains];
+        fronts = new int[trains];
+        authorities = new int[trains];
+        allocations = new Route[trains];
+        nextStops = new int[trains];
+        blockedSince = new long[trains];
+        blockedTimes = new long[trains];
+        arrivalTimes = new long[trains];
+        for (int train = 0; train < trains; train++) {
+            schedule(plans.get(train).getDepartureTime(), train, REQUEST);
+        }
+        Arrays.fill(blockedSince, -1);
+        Arrays.fill(arrivalTimes, -1);
+
+        sectionNumbers = new HashMap<>();
+        List<Section> found = new ArrayList<>();
+        for (Section section : track) {
+            sectionNumbers.put(section, found.size());
+            found.add(section);
+        }
+        sections = found.toArray(new Section[found.size()]);
+        occupiers = new int[sections.length];
+        busySince = new long[sections.length];
+        busyTimes = new long[sections.length];
+    }
+
+    /**
+     * Returns the time of the pending event of the given train, or -1 if it
+     * has none because it has left the track.
+     */
+    long getNextTime(int train) {
+        return nextTimes[train];
+    }
+
+    /**
+     * Returns the offset along its route of the back of the given train.
+     * Its pending events only involve the part of its route between its back
+     * and its reach.
+     */
+    int getBack(int train) {
+        return backs[train];
+    }
+
+    /**
+     * Returns the offset along its route of the furthest point that the
+     * pending events of the given train involve: the end of its authority,
+     * or the furthest it could request authority for after one more tick.
+     */
+    int getReach(int train) {
+        TrainPlan plan = plans.get(train);
+        long reach = (long) fronts[train] + plan.getSpeed() + lookahead;
+        return Math.max(authorities[train], (int) Math.min(plan.getRoute()
+                .getLength(), reach));
+    }
+
+    /**
+     * Handles the pending event of the given train, and any further events
+     * of the train that it schedules for the same time, and returns the
+     * number of events handled.
+     *
+     * @require getNextTime(train) >= 0
+     */
+    int handle(int train) {
+        long now = nextTimes[train];
+        int count = 0;
+        do {
+            count++;
+            if (nextKinds[train] == ADVANCE) {
+                advance(train, now);
+            } else {
+                request(train, now);
+            }
+        } while (nextTimes[train] == now);
+        return count;
+    }
+
+    /**
+     * Reports the results of the run, closing the intervals that are still
+     * open at the horizon.
+     *
+     * @require no event has been handled at or after the horizon
+     */
+    SimulationReport report(long horizon, long eventCount) {
+        long[] blocked = blockedTimes.clone();
+        int arrivals = 0;
+        for (int train = 0; train < plans.size(); train++) {
+            if (blockedSince[train] >= 0) {
+                blocked[train] += horizon - blockedSince[train];
+            }
+            if (arrivalTimes[train] >= 0) {
+                arrivals++;
+            }
+        }
+        Map<Section, Long> busy = new HashMap<>();
+        for (int section = 0; section < sections.length; section++) {
+            long busyTime = busyTimes[section];
+            if (occupiers[section] > 0) {
+                busyTime += horizon - busySince[section];
+            }
+            busy.put(sections[section], busyTime);
+        }
+        return new SimulationReport(horizon, eventCount, arrivals, blocked,
+                arrivalTimes, busy);
+    }
+
+    /**
+     * Moves a train forward for a tick, starting at the given time.
+     */
+    private void advance(int train, long now) {
+        TrainPlan plan = plans.get(train);
+        int stop = nextStops[train];
+
+        // the furthest the train may move: to its authority or next stop
+        int limit = authorities[train];
+        if (stop < plan.getStopCount()) {
+            limit = Math.min(limit, plan.getStopOffset(stop));
+        }
+        int front = fronts[train] + Math.min(plan.getSpeed(), limit
+                - fronts[train]);
+        fronts[train] = front;
+        long next = now + 1;
+
+        if (front == plan.getRoute().getLength()) {
+            // the train leaves the track
+            reallocate(train, 0, 0, next);
+            arrivalTimes[train] = next;
+            nextTimes[train] = -1;
+            return;
+        }
+
+        // release the route behind the train, and request more ahead of it
+        // if it is running short
+        int back = Math.max(0, front - plan.getLength());
+        int authority = authorities[train];
+        if (authority - front < (lookahead + 1) / 2) {
+            authority = extension(train, authority);
+        }
+        if (back != backs[train] || authority != authorities[train]) {
+            reallocate(train, back, authority, now);
+        }
+
+        if (stop < plan.getStopCount() && front == plan.getStopOffset(stop)) {
+            nextStops[train]++;
+            next += plan.getDwellTime(stop);
+        }
+        schedule(next, train, front < authorities[train] ? ADVANCE
+                : REQUEST);
+    }
+
+    /**
+     * Handles a request for authority by a train that cannot move without
+     * it, at the given time.
+     */
+    private void request(int train, long now) {
+        int authority = extension(train, authorities[train]);
+        if (authority == authorities[train]) {
+            if (blockedSince[train] < 0) {
+                blockedSince[train] = now;
+            }
+            schedule(now + retryInterval, train, REQUEST);
+            return;
+        }
+        if (blockedSince[train] >= 0) {
+            blockedTimes[train] += now - blockedSince[train];
+            blockedSince[train] = -1;
+        }
+        reallocate(train, backs[train], authority, now);
+        schedule(now, train, ADVANCE);
+    }
+
+    /**
+     * Returns the end of the authority that the given train can be granted,
+     * which is the given current end if the part of the route beyond it
+     * intersects the subroute allocated to another train.
+     */
+    private int extension(int train, int authority) {
+        Route route = plans.get(train).getRoute();
+        int requested = (int) Math.min(route.getLength(),
+                (long) fronts[train] + lookahead);
+        if (requested <= authority || occupancy.get().intersects(train, route
+                .getSubroute(authority, requested))) {
+            return authority;
+        }
+        return requested;
+    }
+
+    /**
+     * Allocates the subroute between the given offsets to a train at the
+     * given time, in place of its current subroute. If the offsets are
+     * equal, the train is allocated nothing.
+     */
+    private void reallocate(int train, int back, int authority, long now) {
+        Route before = allocations[train];
+        Route after = (back == authority) ? null : plans.get(train)
+                .getRoute().getSubroute(back, authority);
+        List<Segment> released;
+        List<Segment> allocated;
+        if (before == null || after == null) {
+            released = (before == null) ? Collections.emptyList() : before
+                    .getSegments();
+            allocated = (after == null) ? Collections.emptyList() : after
+                    .getSegments();
+        } else {
+            SubrouteChange change = new SubrouteChange(before, after, back
+                    - backs[train]);
+            released = change.getReleased();
+            allocated = change.getAllocated();
+        }
+        occupancy.updateAndGet(current -> current.without(train, released)
+                .with(train, allocated));
+
+        for (Segment segment : released) {
+            int section = sectionNumbers.get(segment.getSection());
+            if (--occupiers[section] == 0) {
+                busyTimes[section] += now - busySince[section];
+            }
+        }
+        for (Segment segment : allocated) {
+            int section = sectionNumbers.get(segment.getSection());
+            if (occupiers[section]++ == 0) {
+                busySince[section] = now;
+            }
+        }
+
+        allocations[train] = after;
+        backs[train] = back;
+        authorities[train] = authority;
+    }
+
+    /**
+     * Makes an event of the given kind at the given time the pending event
+     * of a train.
+     */
+    private void schedule(long time, int train, int kind) {
+        nextTimes[train] = time;
+        nextKinds[train] = kind;
+    }
+}
@@ -0,0 +1,169 @@
+package railway.sim;
+
+import railway.Track;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A discrete-event simulation of trains running along their routes on a
+ * track.
+ * </p>
+ *
+ * <p>
+ * Trains are allocated subroutes of their routes under the same rules as the
+ * Railway Manager: the subroute allocated to a train may not intersect the
+ * subroute allocated to any other train (as defined by Route.intersects).
+ * The subroute allocated to a train runs from its back to the end of its
+ * movement authority, which lies up to lookahead units beyond its front. A
+ * train moves forward each tick until it reaches the end of its authority,
+ * or one of its stops, where it waits for the stop's dwell time. Whenever
+ * less than half of the lookahead remains ahead of it, it requests an
+ * extension of its authority. A train that has reached the end of its
+ * authority without having been granted an extension is blocked, and repeats
+ * its request every retry interval until it is granted. A train enters the
+ * track once the start of its route has been allocated to it (it is blocked
+ * until then), and leaves the track as soon as it reaches the end of its
+ * route.
+ * </p>
+ *
+ * <p>
+ * The events of the simulation (a train advancing for a tick, or requesting
+ * an extension) are kept in a priority queue ordered by time, and events at
+ * the same time are handled in order of train number, so a simulation is
+ * deterministic. Only the parts of a route that a train newly requests are
+ * checked against the other trains, and only the segments of its subroute
+ * that change are updated, so the cost of an event depends on the distance
+ * moved rather than the length of the train or the number of trains.
+ * </p>
+ *
+ * <p>
+ * A simulation can also be run with the track partitioned into regions (see
+ * TrackPartition), and the events in each region handled on a thread of its
+ * own. Trains whose next moves cross a boundary between regions are handled
+ * one at a time, so the results are the same as on one thread.
+ * </p>
+ */
+public class Simulator {
+
+    // the track that the trains run on
+    private final Track track;
+    // the trains to simulate, indexed by their number
+    private final List<TrainPlan> plans;
+    // the distance beyond its front that a train requests authority for
+    private final int lookahead;
+    // the time a blocked train waits before requesting authority again
+    private final long retryInterval;
+
+    /*
+     * invariant: track != null && plans != null && !plans.contains(null) &&
+     * the route of each plan is on the track && lookahead > 0 &&
+     * retryInterval > 0
+     */
+
+    /**
+     * Creates a simulator for the given trains on the given track. The trains
+     * are numbered from zero in the order they are given.
+     *
+     * @param track
+     *            the track that the trains run on
+     * @param plans
+     *            the trains to simulate
+     * @param lookahead
+     *            the distance beyond its front that a train requests
+     *            authority for
+     * @param retryInterval
+     *            the time a blocked train waits before requesting authority
+     *            again
+     * @throws NullPointerException
+     *             if track or plans is null, or plans contains null
+     * @throws IllegalArgumentException
+     *             if the route of a train is not on the track, or lookahead
+     *             or retryInterval is not positive
+     */
+    public Simulator(Track track, List<TrainPlan> plans, int lookahead,
+            long retryInterval) throws NullPointerException,
+            IllegalArgumentException {
+        if (track == null || plans == null || plans.contains(null)) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        if (lookahead <= 0 || retryInterval <= 0) {
+            throw new IllegalArgumentException("The lookahead and retry"
+                    + " interval must be positive.");
+        }
+        for (int train = 0; train < plans.size(); train++) {
+            if (!plans.get(train).getRoute().onTrack(track)) {
+                throw new IllegalArgumentException("The route of train "
+                        + train + " is not on the track.");
+            }
+        }
+        this.track = track;
+        this.plans = new ArrayList<>(plans);
+        this.lookahead = lookahead;
+        this.retryInterval = retryInterval;
+    }
+
+    /**
+     * Runs a simulation of the trains from time zero, handling each event
+     * that occurs before the given time, and reports the results. Each call
+     * runs a new simulation.
+     *
+     * @param horizon
+     *            the time at which the simulation stops
+     * @throws IllegalArgumentException
+     *             if horizon is not positive
+     * @return the results of the simulation
+     */
+    public SimulationReport run(long horizon) throws IllegalArgumentException {
+        if (horizon <= 0) {
+            throw new IllegalArgumentException("The horizon must be"
+                    + " positive.");
+        }
+        SimulationRun run = new SimulationRun(track, plans, lookahead,
+                retryInterval);
+        EventQueue events = new EventQueue();
+        for (int train = 0; train < plans.size(); train++) {
+            events.add(run.getNextTime(train), train);
+        }
+        long eventCount = 0;
+        while (!events.isEmpty() && events.peekTime() < horizon) {
+            int train = events.poll();
+            eventCount += run.handle(train);
+            if (run.getNextTime(train) >= 0) {
+                events.add(run.getNextTime(train), train);
+            }
+        }
+        return run.report(horizon, eventCount);
+    }
+
+    /**
+     * Runs a simulation of the trains from time zero in the same way as
+     * run(horizon), but with the events in each region of the given
+     * partition of the track handled on a thread of their own. The results
+     * are the same as those of run(horizon).
+     *
+     * @param horizon
+     *            the time at which the simulation stops
+     * @param partition
+     *            a partition of the track into regions
+     * @throws NullPointerException
+     *             if partition is null
+     * @throws IllegalArgumentException
+     *             if horizon is not positive, or a section of the route of a
+     *             train is not in the partition
+     * @return the results of the simulation
+     */
+    public SimulationReport run(long horizon, TrackPartition partition)
+            throws NullPointerException, IllegalArgumentException {
+        if (partition == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        if (horizon <= 0) {
+            throw new IllegalArgumentException("The horizon must be"
+                    + " positive.");
+        }
+        SimulationRun run = new SimulationRun(track, plans, lookahead,
+                retryInterval);
+        return new ParallelRun(run, plans, partition, horizon).run();
+    }
+}
@@ -0,0 +1,339 @@
+package railway.sim;
+
+import railway.Junction;
+import railway.JunctionBranch;
+import railway.Neighbour;
+import railway.Section;
+import railway.Track;
+
+import java.util.*;
+
+/**
+ * <p>
+ * An immutable partition of the sections of a track into a given number of
+ * regions, each of which has roughly the same total length of track, for
+ * running a simulation with each region on its own thread. A junction is a
+ * boundary junction of the partition if it is at the end of sections in more
+ * than one region.
+ * </p>
+ *
+ * <p>
+ * The sections are first numbered in breadth-first order, starting from a
+ * section at the edge of each connected part of the track. Each region is
+ * then grown outwards from the lowest numbered section not yet in a region,
+ * always taking the lowest numbered section next to it, until it has its
+ * share of the length of the track. The regions are therefore connected
+ * slices of the track across its breadth-first levels, which keeps the
+ * number of boundary junctions small. The part of the track left over when
+ * the last region stops growing is added to a region next to it, so if the
+ * track is connected, so is every region.
+ * </p>
+ *
+ * <p>
+ * A partition describes the track as it was when the partition was made.
+ * </p>
+ */
+public class TrackPartition {
+
+    // the region of each section of the track
+    private final Map<Section, Integer> regions;
+    // the total length of the sections in each region
+    private final long[] weights;
+    // the junctions at the ends of sections in more than one region
+    private final Set<Junction> boundaryJunctions;
+
+    /*
+     * invariant: regions != null && weights != null && weights.length > 0 &&
+     * every value of regions is a region index 0 <= r < weights.length &&
+     * weights[r] is the total length of the sections with region r &&
+     * boundaryJunctions is the set of junctions that are at the ends of
+     * sections with different regions
+     */
+
+    /**
+     * Partitions the sections of the given track into the given number of
+     * regions. Some regions may be empty if the track has fewer sections than
+     * regions.
+     *
+     * @param track
+     *            the track to partition
+     * @param regionCount
+     *            the number of regions
+     * @throws NullPointerException
+     *             if track is null
+     * @throws IllegalArgumentException
+     *             if regionCount is not positive
+     */
+    public TrackPartition(Track track, int regionCount)
+            throws NullPointerException, IllegalArgumentException {
+        if (track == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        if (regionCount <= 0) {
+            throw new IllegalArgumentException("The number of regions must be"
+                    + " positive.");
+        }
+
+        // number the sections in breadth-first order, one connected part of
+        // the track at a time, in order of their lowest junction ids
+        List<Junction> junctions = new ArrayList<>(track.getJunctions());
+        junctions.sort(Comparator.comparingInt(Junction::getId));
+        List<Section> sections = new ArrayList<>();
+        Map<Section, Integer> numbers = new HashMap<>();
+        // the connected part of the track that each numbered section is in
+        List<Integer> parts = new ArrayList<>();
+        int partCount = 0;
+        for (Junction junction : junctions) {
+            for (Neighbour neighbour : track.neighbours(junction)) {
+                if (!numbers.containsKey(neighbour.getSection())) {
+                    // start again from the last section reached, which is
+                    // at the edge of this part of the track
+                    List<Section> reached = breadthFirst(track, neighbour
+                            .getSection());
+                    for (Section section : breadthFirst(track, reached
+                            .get(reached.size() - 1))) {
+                        numbers.put(section, sections.size());
+                        sections.add(section);
+                        parts.add(partCount);
+                    }
+                    partCount++;
+                }
+            }
+        }
+        int[][] adjacent = new int[sections.size()][];
+        long total = 0;
+        for (int i = 0; i < sections.size(); i++) {
+            List<Section> next = neighbours(track, sections.get(i));
+            adjacent[i] = new int[next.size()];
+            for (int j = 0; j < next.size(); j++) {
+                adjacent[i][j] = numbers.get(next.get(j));
+            }
+            total += sections.get(i).getLength();
+        }
+
+        // grow the regions, the last of them as far as it will go
+        int[] assigned = new int[sections.size()];
+        Arrays.fill(assigned, -1);
+        weights = new long[regionCount];
+        // whether each connected part of the track has a region in it yet
+        boolean[] started = new boolean[partCount];
+        long remaining = total;
+        // the lowest numbered section that may not be in a region yet
+        int seed = 0;
+        for (int region = 0; region < regionCount; region++) {
+            boolean last = (region == regionCount - 1);
+            long target = (remaining + regionCount - region - 1)
+                    / (regionCount - region);
+            PriorityQueue<Integer> frontier = new PriorityQueue<>();
+            while (last || weights[region] < target) {
+                if (frontier.isEmpty()) {
+                    // a region that has used up its own part of the track
+                    // only continues in a part that no region is in yet
+                    while (seed < assigned.length && assigned[seed] >= 0) {
+                        seed++;
+                    }
+                    if (seed == assigned.length || (weights[region] > 0
+                            && started[parts.get(seed)])) {
+                        break;
+                    }
+                    frontier.add(seed);
+                }
+                int section = frontier.poll();
+                if (assigned[section] < 0) {
+                    assigned[section] = region;
+                    started[parts.get(section)] = true;
+                    weights[region] += sections.get(section).getLength();
+                    for (int other : adjacent[section]) {
+                        if (assigned[other] < 0) {
+                            frontier.add(other);
+                        }
+                    }
+                }
+            }
+            remaining -= weights[region];
+        }
+
+        // add each part that is left over to a region next to it
+        for (int section = 0; section < assigned.length; section++) {
+            if (assigned[section] < 0) {
+                List<Integer> part = new ArrayList<>();
+                int region = leftOver(adjacent, assigned, section, part);
+                for (int member : part) {
+                    assigned[member] = (region < 0) ? regionCount - 1
+                            : region;
+                    weights[assigned[member]] += sections.get(member)
+                            .getLength();
+                }
+            }
+        }
+
+        regions = new HashMap<>();
+        for (int i = 0; i < sections.size(); i++) {
+            regions.put(sections.get(i), assigned[i]);
+        }
+        Set<Junction> boundary = new HashSet<>();
+        for (Junction junction : junctions) {
+            // the region of the last section found at the junction
+            int region = -1;
+            for (Neighbour neighbour : track.neighbours(junction)) {
+                int other = regions.get(neighbour.getSection());
+                if (region >= 0 && other != region) {
+                    boundary.add(junction);
+                }
+                region = other;
+            }
+        }
+        boundaryJunctions = Collections.unmodifiableSet(boundary);
+    }
+
+    /**
+     * Returns the number of regions of the partition.
+     *
+     * @return the number of regions
+     */
+    public int getRegionCount() {
+        return weights.length;
+    }
+
+    /**
+     * Returns the region that the given section is in.
+     *
+     * @param section
+     *            a section of the track
+     * @throws NullPointerException
+     *             if section is null
+     * @throws IllegalArgumentException
+     *             if the section was not on the track
+     * @return the index of the region, from zero to getRegionCount() - 1
+     */
+    public int getRegion(Section section) throws NullPointerException,
+            IllegalArgumentException {
+        if (section == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        Integer region = regions.get(section);
+        if (region == null) {
+            throw new IllegalArgumentException("The section is not on the"
+                    + " track.");
+        }
+        return region;
+    }
+
+    /**
+     * Returns the total length of the sections in the given region.
+     *
+     * @param region
+     *            the index of the region
+     * @throws IndexOutOfBoundsException
+     *             if there is no region with the given index
+     * @return the length of track in the region
+     */
+    public long getWeight(int region) throws IndexOutOfBoundsException {
+        return weights[region];
+    }
+
+    /**
+     * Returns the boundary junctions of the partition: those at the ends of
+     * sections in more than one region.
+     *
+     * @return an unmodifiable set of the boundary junctions
+     */
+    public Set<Junction> getBoundaryJunctions() {
+        return boundaryJunctions;
+    }
+
+    /**
+     * Determines whether this class is internally consistent (i.e. it
+     * satisfies its class invariant).
+     *
+     * This method is only intended for testing purposes.
+     *
+     * @return true if this class is internally consistent, and false
+     *         otherwise.
+     */
+    public boolean checkInvariant() {
+        if (regions == null || weights == null || weights.length == 0
+                || boundaryJunctions == null) {
+            return false;
+        }
+        long[] found = new long[weights.length];
+        // the region of a section found at each junction
+        Map<Junction, Integer> seen = new HashMap<>();
+        Set<Junction> boundary = new HashSet<>();
+        for (Map.Entry<Section, Integer> entry : regions.entrySet()) {
+            int region = entry.getValue();
+            if (region < 0 || region >= weights.length) {
+                return false;
+            }
+            found[region] += entry.getKey().getLength();
+            for (JunctionBranch endPoint : entry.getKey().getEndPoints()) {
+                Integer other = seen.put(endPoint.getJunction(), region);
+                if (other != null && other != region) {
+                    boundary.add(endPoint.getJunction());
+                }
+            }
+        }
+        return Arrays.equals(found, weights)
+                && boundary.equals(boundaryJunctions);
+    }
+
+    /**
+     * Returns the sections of the part of the track that contains start, in
+     * breadth-first order from start.
+     */
+    private static List<Section> breadthFirst(Track track, Section start) {
+        List<Section> result = new ArrayList<>();
+        Set<Section> reached = new HashSet<>();
+        result.add(start);
+        reached.add(start);
+        for (int i = 0; i < result.size(); i++) {
+            for (Section next : neighbours(track, result.get(i))) {
+                if (reached.add(next)) {
+                    result.add(next);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the other sections of the track at the ends of the given
+     * section, in a fixed order.
+     */
+    private static List<Section> neighbours(Track track, Section section) {
+        List<Section> result = new ArrayList<>();
+        for (JunctionBranch endPoint : Arrays.asList(section.getEndPoint1(),
+                section.getEndPoint2())) {
+            for (Neighbour neighbour : track.neighbours(endPoint
+                    .getJunction())) {
+                if (!neighbour.getSection().equals(section)) {
+                    result.add(neighbour.getSection());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the sections of the part of the track that contains section and
+     * is not in a region to part, and returns the region of a section next
+     * to that part, or -1 if there is none.
+     */
+    private static int leftOver(int[][] adjacent, int[] assigned,
+            int section, List<Integer> part) {
+        int region = -1;
+        Set<Integer> reached = new HashSet<>();
+        part.add(section);
+        reached.add(section);
+        for (int i = 0; i < part.size(); i++) {
+            for (int other : adjacent[part.get(i)]) {
+                if (assigned[other] >= 0) {
+                    region = (region < 0) ? assigned[other] : region;
+                } else if (reached.add(other)) {
+                    part.add(other);
+                }
+            }
+        }
+        return region;
+    }
+}
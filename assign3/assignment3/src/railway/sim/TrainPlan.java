@@ -0,0 +1,187 @@
+package railway.sim;
+
+import railway.Route;
+
+import java.util.*;
+
+/**
+ * <p>
+ * An immutable description of a train to be simulated: the route it runs on,
+ * its length, its speed, when it departs, and where it stops along the way.
+ * </p>
+ *
+ * <p>
+ * Distances are in the units of the lengths of sections, and times are in
+ * ticks of the simulation. A train moves at most speed units each tick. It
+ * waits at each of its stops for the stop's dwell time.
+ * </p>
+ */
+public class TrainPlan {
+
+    // the route of the train
+    private final Route route;
+    // the length of the train
+    private final int length;
+    // the greatest distance the train moves in a tick
+    private final int speed;
+    // the time at which the train departs
+    private final long departureTime;
+    // the offsets along the route of the stops, in ascending order, and the
+    // time that the train waits at each of them
+    private final int[] stopOffsets;
+    private final long[] dwellTimes;
+
+    /*
+     * invariant: route != null && route.getLength() > 0 && length > 0 &&
+     * speed > 0 && departureTime >= 0 && stopOffsets and dwellTimes have the
+     * same length && 0 < stopOffsets[i] < stopOffsets[i + 1] <
+     * route.getLength() && dwellTimes[i] >= 0
+     */
+
+    /**
+     * Creates a plan for a train that runs along its route without stopping.
+     *
+     * @param route
+     *            the route of the train
+     * @param length
+     *            the length of the train
+     * @param speed
+     *            the greatest distance the train moves in a tick
+     * @param departureTime
+     *            the time at which the train departs
+     * @throws NullPointerException
+     *             if route is null
+     * @throws IllegalArgumentException
+     *             if route has length zero, or length, speed or departureTime
+     *             is not positive (departureTime may be zero)
+     */
+    public TrainPlan(Route route, int length, int speed, long departureTime)
+            throws NullPointerException, IllegalArgumentException {
+        this(route, length, speed, departureTime, Collections
+                .<Integer, Long> emptyMap());
+    }
+
+    /**
+     * Creates a plan for a train that stops along its route.
+     *
+     * @param route
+     *            the route of the train
+     * @param length
+     *            the length of the train
+     * @param speed
+     *            the greatest distance the train moves in a tick
+     * @param departureTime
+     *            the time at which the train departs
+     * @param dwellTimes
+     *            the time the train waits at each stop, keyed by the offset
+     *            of the stop along the route
+     * @throws NullPointerException
+     *             if route or dwellTimes is null, or dwellTimes contains a
+     *             null key or value
+     * @throws IllegalArgumentException
+     *             if route has length zero, or length, speed or departureTime
+     *             is not positive (departureTime may be zero), or a stop is
+     *             not strictly between the start and end of the route, or a
+     *             dwell time is negative
+     */
+    public TrainPlan(Route route, int length, int speed, long departureTime,
+            Map<Integer, Long> dwellTimes) throws NullPointerException,
+            IllegalArgumentException {
+        if (route == null || dwellTimes == null) {
+            throw new NullPointerException("Parameters cannot be null.");
+        }
+        if (route.getLength() <= 0 || length <= 0 || speed <= 0
+                || departureTime < 0) {
+            throw new IllegalArgumentException("The route must not be empty,"
+                    + " the length and speed must be positive, and the"
+                    + " departure time must not be negative.");
+        }
+        // the stops in ascending order of offset
+        SortedMap<Integer, Long> stops = new TreeMap<>(dwellTimes);
+        this.stopOffsets = new int[stops.size()];
+        this.dwellTimes = new long[stops.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Long> stop : stops.entrySet()) {
+            if (stop.getValue() == null) {
+                throw new NullPointerException("Parameters cannot be null.");
+            }
+            if (stop.getKey() <= 0 || stop.getKey() >= route.getLength()
+                    || stop.getValue() < 0) {
+                throw new IllegalArgumentException("The stop at " + stop
+                        .getKey() + " is not on the route, or its dwell time"
+                        + " is negative.");
+            }
+            this.stopOffsets[i] = stop.getKey();
+            this.dwellTimes[i] = stop.getValue();
+            i++;
+        }
+        this.route = route;
+        this.length = length;
+        this.speed = speed;
+        this.departureTime = departureTime;
+    }
+
+    /**
+     * Returns the route of the train.
+     *
+     * @return the route of the train
+     */
+    public Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Returns the length of the train.
+     *
+     * @return the length of the train
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the greatest distance the train moves in a tick.
+     *
+     * @return the speed of the train
+     */
+    public int getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Returns the time at which the train departs.
+     *
+     * @return the departure time of the train
+     */
+    public long getDepartureTime() {
+        return departureTime;
+    }
+
+    /**
+     * Returns the number of stops of the train.
+     *
+     * @return the number of stops
+     */
+    int getStopCount() {
+        return stopOffsets.length;
+    }
+
+    /**
+     * Returns the offset along the route of the stop with the given index,
+     * where the stops are numbered from zero in the order they are reached.
+     *
+     * @require 0 <= stop < getStopCount()
+     */
+    int getStopOffset(int stop) {
+        return stopOffsets[stop];
+    }
+
+    /**
+     * Returns the dwell time of the stop with the given index.
+     *
+     * @require 0 <= stop < getStopCount()
+     */
+    long getDwellTime(int stop) {
+        return dwellTimes[stop];
+    }
+}
@@ -0,0 +1,195 @@
+package railway.test;
+
+import railway.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link BinaryTrackWriter} and {@link BinaryTrackReader}
+ * classes.
+ */
+public class BinaryTrackTest {
+
+    // the first four bytes of a binary track file
+    private static final int MAGIC = 0x54524B01;
+
+    // the file that each test writes to and reads from
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("track", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Check that a track written to a file is read back with the same
+     * sections.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        Set<Section> expected = new HashSet<>();
+        Track track = new Track();
+        for (Section section : sections()) {
+            expected.add(section);
+            track.addSection(section);
+        }
+
+        BinaryTrackWriter.write(track, file.getPath());
+        checkTrackSections(BinaryTrackReader.read(file.getPath()), expected);
+    }
+
+    /**
+     * Check that an empty track is read back as an empty track.
+     */
+    @Test
+    public void testRoundTripEmpty() throws Exception {
+        BinaryTrackWriter.write(new Track(), file.getPath());
+        checkTrackSections(BinaryTrackReader.read(file.getPath()),
+                new HashSet<Section>());
+    }
+
+    /**
+     * Check that a file cut short anywhere after its magic number is
+     * rejected.
+     */
+    @Test
+    public void testTruncated() throws Exception {
+        Track track = new Track();
+        for (Section section : sections()) {
+            track.addSection(section);
+        }
+        BinaryTrackWriter.write(track, file.getPath());
+        byte[] contents = Files.readAllBytes(file.toPath());
+
+        for (int size = 4; size < contents.length; size++) {
+            Files.write(file.toPath(), Arrays.copyOf(contents, size));
+            checkFormatException();
+        }
+    }
+
+    /**
+     * Check that a file that does not start with the magic number is
+     * rejected.
+     */
+    @Test
+    public void testWrongMagic() throws Exception {
+        writeHeader(MAGIC + 1, 0, 0);
+        checkFormatException();
+    }
+
+    /**
+     * Check that a header with a negative count is rejected.
+     */
+    @Test
+    public void testNegativeCounts() throws Exception {
+        writeHeader(MAGIC, -1, 0);
+        checkFormatException();
+        writeHeader(MAGIC, 0, -1);
+        checkFormatException();
+    }
+
+    /**
+     * Check that a header with more junctions than the rest of the file can
+     * hold is rejected without allocating the junction table.
+     */
+    @Test
+    public void testJunctionCountTooLarge() throws Exception {
+        writeHeader(MAGIC, Integer.MAX_VALUE, 0);
+        checkFormatException();
+    }
+
+    /**
+     * Check that a header with more sections than the rest of the file can
+     * hold is rejected.
+     */
+    @Test
+    public void testSectionCountTooLarge() throws Exception {
+        writeHeader(MAGIC, 0, Integer.MAX_VALUE);
+        checkFormatException();
+    }
+
+    /**
+     * Check that a file too large to be mapped into memory is rejected with a
+     * FormatException, rather than an unchecked exception from the mapping.
+     */
+    @Test
+    public void testFileTooLarge() throws Exception {
+        writeHeader(MAGIC, 0, 0);
+        // extending the file leaves a hole, so no disk space is used
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(Integer.MAX_VALUE + 1L);
+        }
+        checkFormatException();
+    }
+
+    // -----Helper Methods-------------------------------
+
+    /**
+     * Returns the sections of a small track with a loop.
+     */
+    private Section[] sections() {
+        JunctionBranch[] endPoints = {
+                new JunctionBranch(new Junction("j0"), Branch.FACING),
+                new JunctionBranch(new Junction("j1"), Branch.FACING),
+                new JunctionBranch(new Junction("j1"), Branch.NORMAL),
+                new JunctionBranch(new Junction("j2"), Branch.FACING),
+                new JunctionBranch(new Junction("j2"), Branch.NORMAL),
+                new JunctionBranch(new Junction("j2"), Branch.REVERSE) };
+        return new Section[] { new Section(9, endPoints[0], endPoints[1]),
+                new Section(777, endPoints[2], endPoints[3]),
+                new Section(10, endPoints[4], endPoints[5]) };
+    }
+
+    /**
+     * Replaces the contents of the file with a header holding the given
+     * magic number and counts, and nothing else.
+     */
+    private void writeHeader(int magic, int junctionCount, int sectionCount)
+            throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(file))) {
+            out.writeInt(magic);
+            out.writeInt(junctionCount);
+            out.writeInt(sectionCount);
+        }
+    }
+
+    /**
+     * Checks that reading the file throws a FormatException.
+     */
+    private void checkFormatException() throws IOException {
+        try {
+            BinaryTrackReader.read(file.getPath());
+            Assert.fail("FormatException not thrown");
+        } catch (FormatException e) {
+            // OK
+        }
+    }
+
+    /**
+     * Checks that the given track has all, and only the expected sections.
+     *
+     * @param track
+     *            The track whose sections will be checked.
+     * @param expectedSections
+     *            The expected sections that the track should have
+     */
+    private void checkTrackSections(Track track, Set<Section> expectedSections) {
+        Set<Section> actualSections = new HashSet<>();
+        for (Section section : track) {
+            actualSections.add(section);
+        }
+        Assert.assertEquals(expectedSections, actualSections);
+    }
+
+}
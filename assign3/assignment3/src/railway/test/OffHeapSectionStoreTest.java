@@ -0,0 +1,164 @@
+package railway.test;
+
+import railway.*;
+import java.util.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link OffHeapSectionStore} class, which compare a track
+ * kept in an off-heap store with a track kept in the default store.
+ */
+public class OffHeapSectionStoreTest {
+
+    /**
+     * Random test: a few junctions: random additions and removals of sections
+     * between them: the off-heap track has the same sections, end-points and
+     * junctions as the default track after every change.
+     */
+    @Test
+    public void randomTest01() throws Exception {
+        // a fixed seed, so that a failure can be reproduced
+        Random random = new Random(2013);
+        for (int round = 0; round < 50; round++) {
+            checkSameChanges(random, junctions("a" + round + "-", 6), 100);
+        }
+    }
+
+    /**
+     * Random test: many junctions with ids far apart: long sequences of
+     * random additions and removals, so that the store's buffers grow and its
+     * hash tables are rehashed and have many entries shifted back on removal:
+     * the off-heap track has the same sections, end-points and junctions as
+     * the default track after every change.
+     */
+    @Test
+    public void randomTest02() throws Exception {
+        // a fixed seed, so that a failure can be reproduced
+        Random random = new Random(2017);
+        Junction[] junctions = new Junction[60];
+        for (int i = 0; i < junctions.length; i++) {
+            // create other junctions in between, so the ids are spread out
+            junctions("b" + i + "-", random.nextInt(50));
+            junctions[i] = new Junction("b" + i);
+        }
+        for (int round = 0; round < 5; round++) {
+            checkSameChanges(random, junctions, 2000);
+        }
+    }
+
+    // -----Helper Methods-------------------------------
+
+    /**
+     * Applies the same random sequence of additions and removals of sections
+     * between the given junctions to a track with the default store and to a
+     * track with an off-heap store, and checks that the tracks agree after
+     * every change.
+     *
+     * @param random
+     *            the source of randomness
+     * @param junctions
+     *            the junctions that sections may be connected to
+     * @param changes
+     *            the number of changes to make
+     */
+    private void checkSameChanges(Random random, Junction[] junctions,
+            int changes) throws Exception {
+        OffHeapSectionStore store = new OffHeapSectionStore(4);
+        Track expected = new Track();
+        Track actual = new Track(store);
+        // the sections in the tracks, so that they can be removed
+        List<Section> added = new ArrayList<>();
+
+        for (int change = 0; change < changes; change++) {
+            if (!added.isEmpty() && random.nextInt(5) < 2) {
+                Section section = added.remove(random.nextInt(added.size()));
+                expected.removeSection(section);
+                actual.removeSection(section);
+            } else {
+                Section section = randomSection(random, junctions);
+                boolean expectedAdded = add(expected, section);
+                Assert.assertEquals(expectedAdded, add(actual, section));
+                if (expectedAdded && !added.contains(section)) {
+                    added.add(section);
+                }
+            }
+            checkSameTrack(expected, actual, junctions);
+            Assert.assertTrue(store.checkInvariant());
+        }
+    }
+
+    /**
+     * Adds the section to the track, returning false if the track rejects it.
+     */
+    private boolean add(Track track, Section section) {
+        try {
+            track.addSection(section);
+            return true;
+        } catch (InvalidTrackException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks that the tracks have the same sections, the same section at each
+     * end-point of the given junctions, and the same junctions, and that both
+     * are internally consistent.
+     */
+    private void checkSameTrack(Track expected, Track actual,
+            Junction[] junctions) {
+        Assert.assertEquals(sections(expected), sections(actual));
+        for (Junction junction : junctions) {
+            for (Branch branch : Branch.values()) {
+                Assert.assertEquals(expected.getTrackSection(junction, branch),
+                        actual.getTrackSection(junction, branch));
+            }
+        }
+        Assert.assertEquals(expected.getJunctions(), actual.getJunctions());
+        Assert.assertEquals(expected.getJunctions().size(), actual
+                .getJunctions().size());
+        Assert.assertTrue(expected.checkInvariant());
+        Assert.assertTrue(actual.checkInvariant());
+    }
+
+    /**
+     * Returns the set of sections of the track, checking that its iterator
+     * returns each of them only once.
+     */
+    private Set<Section> sections(Track track) {
+        Set<Section> sections = new HashSet<>();
+        for (Section section : track) {
+            Assert.assertTrue(sections.add(section));
+        }
+        return sections;
+    }
+
+    /**
+     * Returns a section of a random length between two random end-points of
+     * the given junctions.
+     */
+    private Section randomSection(Random random, Junction[] junctions) {
+        Branch[] branches = Branch.values();
+        JunctionBranch endPoint1;
+        JunctionBranch endPoint2;
+        do {
+            endPoint1 = JunctionBranch.valueOf(junctions[random.nextInt(
+                    junctions.length)], branches[random.nextInt(3)]);
+            endPoint2 = JunctionBranch.valueOf(junctions[random.nextInt(
+                    junctions.length)], branches[random.nextInt(3)]);
+        } while (endPoint1.equals(endPoint2));
+        return new Section(1 + random.nextInt(3), endPoint1, endPoint2);
+    }
+
+    /**
+     * Returns the given number of junctions, whose identifiers start with the
+     * given prefix.
+     */
+    private Junction[] junctions(String prefix, int count) {
+        Junction[] junctions = new Junction[count];
+        for (int i = 0; i < count; i++) {
+            junctions[i] = new Junction(prefix + i);
+        }
+        return junctions;
+    }
+}
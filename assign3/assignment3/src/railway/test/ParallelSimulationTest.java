@@ -0,0 +1,106 @@
+package railway.test;
+
+import railway.*;
+import railway.gen.*;
+import railway.sim.*;
+import java.util.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that running a {@link Simulator} over the regions of a
+ * {@link TrackPartition} gives the same results as running it on one
+ * thread.
+ */
+public class ParallelSimulationTest {
+
+    // the largest number of regions to partition a track into
+    private static final int MAX_REGIONS = 16;
+
+    /**
+     * Random test: trains on a grid of junctions: the partitioned runs match
+     * the sequential run for 1 to MAX_REGIONS regions.
+     */
+    @Test
+    public void gridTest() throws Exception {
+        NetworkGenerator generator = new NetworkGenerator(2020);
+        checkSameResults(generator, generator.grid(6, 8), new Random(1));
+    }
+
+    /**
+     * Random test: trains on a trunk line with sidings: the partitioned runs
+     * match the sequential run for 1 to MAX_REGIONS regions.
+     */
+    @Test
+    public void trunkTest() throws Exception {
+        NetworkGenerator generator = new NetworkGenerator(2021);
+        checkSameResults(generator, generator.trunk(60), new Random(2));
+    }
+
+    /**
+     * Random test: trains on a random planar network: the partitioned runs
+     * match the sequential run for 1 to MAX_REGIONS regions.
+     */
+    @Test
+    public void planarTest() throws Exception {
+        NetworkGenerator generator = new NetworkGenerator(2022);
+        checkSameResults(generator, generator.planar(60), new Random(3));
+    }
+
+    // -----Helper Methods-------------------------------
+
+    /**
+     * Simulates random trains on the network, sequentially and then over
+     * partitions of its track into each number of regions up to MAX_REGIONS,
+     * and checks that every partition is consistent and every run reports the
+     * same results.
+     *
+     * @param generator
+     *            the generator of the network, used to make the routes
+     * @param network
+     *            the network to run the trains on
+     * @param random
+     *            the source of randomness for the trains
+     */
+    private void checkSameResults(NetworkGenerator generator, Network network,
+            Random random) {
+        Track track = network.toTrack();
+        List<TrainPlan> plans = new ArrayList<>();
+        for (int train = 0; train < 40; train++) {
+            plans.add(new TrainPlan(generator.route(network, 1 + random
+                    .nextInt(20)), 1 + random.nextInt(30), 1 + random
+                    .nextInt(8), random.nextInt(200)));
+        }
+        Simulator simulator = new Simulator(track, plans, 20, 3);
+        long horizon = 2000;
+
+        SimulationReport expected = simulator.run(horizon);
+        for (int regions = 1; regions <= MAX_REGIONS; regions++) {
+            TrackPartition partition = new TrackPartition(track, regions);
+            Assert.assertTrue(partition.checkInvariant());
+            checkSameReport(track, expected, simulator.run(horizon,
+                    partition));
+        }
+    }
+
+    /**
+     * Checks that two reports of simulations of the same trains on the given
+     * track have the same results.
+     */
+    private void checkSameReport(Track track, SimulationReport expected,
+            SimulationReport actual) {
+        Assert.assertEquals(expected.getEventCount(), actual.getEventCount());
+        Assert.assertEquals(expected.getTrainCount(), actual.getTrainCount());
+        Assert.assertEquals(expected.getArrivals(), actual.getArrivals());
+        for (int train = 0; train < expected.getTrainCount(); train++) {
+            Assert.assertEquals(expected.getArrivalTime(train), actual
+                    .getArrivalTime(train));
+            Assert.assertEquals(expected.getBlockedTime(train), actual
+                    .getBlockedTime(train));
+        }
+        for (Section section : track) {
+            Assert.assertEquals(expected.getUtilisation(section), actual
+                    .getUtilisation(section), 0);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package railway.test;
+
+import railway.*;
+import java.util.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link PersistentMap} class, which compare it with a HashMap
+ * given the same changes.
+ */
+public class PersistentMapTest {
+
+    /**
+     * Random test: keys with well spread hashes: random additions, updates
+     * and removals: each version of the map has the same mappings as a
+     * HashMap given the same changes, and keeps them after later changes.
+     */
+    @Test
+    public void randomTest01() throws Exception {
+        // a fixed seed, so that a failure can be reproduced
+        Random random = new Random(2014);
+        List<Key> keys = new ArrayList<>();
+        for (int id = 0; id < 2000; id++) {
+            keys.add(new Key(id, id * 0x9E3779B9));
+        }
+        checkSameChanges(random, keys, 20000);
+    }
+
+    /**
+     * Random test: keys whose hashes share their low bits, so that they are
+     * only told apart deep in the trie: each version of the map has the same
+     * mappings as a HashMap given the same changes, and keeps them after
+     * later changes.
+     */
+    @Test
+    public void randomTest02() throws Exception {
+        // a fixed seed, so that a failure can be reproduced
+        Random random = new Random(2015);
+        List<Key> keys = new ArrayList<>();
+        for (int id = 0; id < 500; id++) {
+            // the low ten bits are zero, and stay zero when the hash is spread
+            keys.add(new Key(id, id << 10));
+        }
+        checkSameChanges(random, keys, 10000);
+    }
+
+    /**
+     * Random test: keys whose hashes collide completely in groups, mixed with
+     * keys whose hashes differ: each version of the map has the same mappings
+     * as a HashMap given the same changes, and keeps them after later
+     * changes.
+     */
+    @Test
+    public void randomTest03() throws Exception {
+        // a fixed seed, so that a failure can be reproduced
+        Random random = new Random(2016);
+        List<Key> keys = new ArrayList<>();
+        for (int id = 0; id < 300; id++) {
+            keys.add(new Key(id, id % 3));
+        }
+        for (int id = 300; id < 310; id++) {
+            keys.add(new Key(id, id));
+        }
+        checkSameChanges(random, keys, 10000);
+    }
+
+    /**
+     * Check that adding a mapping that is already present, or removing a key
+     * that is absent, returns the same map.
+     */
+    @Test
+    public void testUnchanged() throws Exception {
+        Key key = new Key(1, 1);
+        PersistentMap<Key, Integer> map = PersistentMap.<Key, Integer> empty()
+                .plus(key, 7);
+        Assert.assertSame(map, map.plus(key, 7));
+        Assert.assertSame(map, map.minus(new Key(2, 1)));
+        Assert.assertSame(map, map.minus(new Key(3, 3)));
+        Assert.assertSame(map, map.minus(null));
+        Assert.assertTrue(map.minus(key).isEmpty());
+    }
+
+    // -----Helper Methods-------------------------------
+
+    /**
+     * Applies the same random sequence of additions, updates and removals of
+     * the given keys to a persistent map and a HashMap, checking that they
+     * agree after every change. Some versions of the persistent map are kept
+     * along with a copy of the HashMap at the time, and are checked to be
+     * unchanged at the end.
+     *
+     * @param random
+     *            the source of randomness
+     * @param keys
+     *            the keys that may be mapped
+     * @param changes
+     *            the number of changes to make
+     */
+    private void checkSameChanges(Random random, List<Key> keys, int changes) {
+        PersistentMap<Key, Integer> actual = PersistentMap.empty();
+        Map<Key, Integer> expected = new HashMap<>();
+        // the versions of the map that were kept, and what they should hold
+        List<PersistentMap<Key, Integer>> versions = new ArrayList<>();
+        List<Map<Key, Integer>> contents = new ArrayList<>();
+
+        for (int change = 0; change < changes; change++) {
+            Key key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0) {
+                actual = actual.minus(key);
+                expected.remove(key);
+            } else {
+                int value = random.nextInt(4);
+                actual = actual.plus(key, value);
+                expected.put(key, value);
+            }
+
+            Assert.assertEquals(expected.size(), actual.size());
+            Assert.assertEquals(expected.get(key), actual.get(key));
+            Assert.assertEquals(expected.containsKey(key), actual
+                    .containsKey(key));
+            if (change % 100 == 0) {
+                Assert.assertEquals(expected, actual.toMap());
+                Assert.assertTrue(actual.checkInvariant());
+                versions.add(actual);
+                contents.add(new HashMap<>(expected));
+            }
+        }
+
+        for (int i = 0; i < versions.size(); i++) {
+            PersistentMap<Key, Integer> version = versions.get(i);
+            Assert.assertEquals(contents.get(i), version.toMap());
+            Assert.assertEquals(contents.get(i).size(), version.size());
+            Assert.assertTrue(version.checkInvariant());
+            for (Key key : keys) {
+                Assert.assertEquals(contents.get(i).get(key), version.get(
+                        key));
+            }
+        }
+    }
+
+    /**
+     * A key with a given hash code, so that the hashes of keys can be made to
+     * share bits or collide.
+     */
+    private static final class Key {
+
+        // the identity and hash code of the key
+        private final int id;
+        private final int hash;
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Key && ((Key) object).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "key " + id;
+        }
+    }
+}
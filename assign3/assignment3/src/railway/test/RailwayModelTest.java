@@ -0,0 +1,197 @@
+package railway.test;
+
+import railway.*;
+import railway.gen.*;
+import railway.gui.RailwayModel;
+import java.io.*;
+import java.util.*;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that moving trains in a {@link RailwayModel} with advanceTrain has
+ * the same effect as setting their subroutes with setTrainSubroute.
+ */
+public class RailwayModelTest {
+
+    // the files that the track and routes are written to
+    private final List<File> files = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Random test: trains on a grid of junctions, whose routes cross: random
+     * moves forwards and backwards, including ones that are rejected: each
+     * move is accepted or rejected by advanceTrain exactly when the
+     * equivalent call of setTrainSubroute is, and leaves the trains with the
+     * same subroutes.
+     */
+    @Test
+    public void randomTest01() throws Exception {
+        // a fixed seed, so that a failure can be reproduced
+        Random random = new Random(2018);
+        NetworkGenerator generator = new NetworkGenerator(2018);
+        checkSameMoves(random, generator, generator.grid(4, 5), 20, 4000);
+    }
+
+    /**
+     * Random test: trains on a trunk line with sidings, so that many of them
+     * share the trunk: random moves forwards and backwards, including ones
+     * that are rejected: each move is accepted or rejected by advanceTrain
+     * exactly when the equivalent call of setTrainSubroute is, and leaves the
+     * trains with the same subroutes.
+     */
+    @Test
+    public void randomTest02() throws Exception {
+        // a fixed seed, so that a failure can be reproduced
+        Random random = new Random(2019);
+        NetworkGenerator generator = new NetworkGenerator(2019);
+        checkSameMoves(random, generator, generator.trunk(30), 12, 4000);
+    }
+
+    // -----Helper Methods-------------------------------
+
+    /**
+     * Spawns the same random trains on the network in two models, then makes
+     * random moves, with advanceTrain in one model and the equivalent
+     * setTrainSubroute in the other, checking that the models agree on
+     * whether each move is allowed, and on the subroute of every train after
+     * it.
+     *
+     * @param random
+     *            the source of randomness for the trains and moves
+     * @param generator
+     *            the generator of the network, used to make the routes
+     * @param network
+     *            the network to run the trains on
+     * @param trains
+     *            the number of trains to try to spawn
+     * @param moves
+     *            the number of moves to make
+     */
+    private void checkSameMoves(Random random, NetworkGenerator generator,
+            Network network, int trains, int moves) throws Exception {
+        File track = tempFile();
+        network.writeTrack(track.getPath());
+        RailwayModel advanced = new RailwayModel();
+        RailwayModel set = new RailwayModel();
+        advanced.loadTrack(track.getPath());
+        set.loadTrack(track.getPath());
+
+        // the length of the route of each train that was spawned, by id
+        Map<Integer, Integer> lengths = new HashMap<>();
+        for (int train = 0; train < trains; train++) {
+            Route route = generator.route(network, 1 + random.nextInt(8));
+            File file = tempFile();
+            Network.writeRoute(route, file.getPath());
+            int startOffset = random.nextInt(route.getLength());
+            int endOffset = startOffset + 1 + random.nextInt(Math.min(5,
+                    route.getLength() - startOffset));
+
+            Integer expected = spawn(set, file, startOffset, endOffset);
+            Assert.assertEquals(expected, spawn(advanced, file, startOffset,
+                    endOffset));
+            if (expected != null) {
+                lengths.put(expected, route.getLength());
+            }
+        }
+        Assert.assertFalse(lengths.isEmpty());
+
+        // the number of moves that were accepted
+        int accepted = 0;
+        for (int move = 0; move < moves; move++) {
+            // now and then, a train that does not exist
+            int id = random.nextInt(lengths.size() + 1);
+            int length = lengths.containsKey(id) ? lengths.get(id) : 10;
+            int headDelta = random.nextInt(length / 2 + 2) - length / 4 - 1;
+            int tailDelta = random.nextInt(length / 2 + 2) - length / 4 - 1;
+            if (random.nextBoolean()) {
+                // the train keeps its length, as when it runs along its route
+                tailDelta = headDelta;
+            }
+
+            // the current offsets of the train, if it exists
+            int startOffset = 0;
+            int endOffset = 0;
+            if (lengths.containsKey(id)) {
+                String[] info = set.getTrainInfo(id);
+                startOffset = Integer.parseInt(info[1]);
+                endOffset = Integer.parseInt(info[2]);
+            }
+
+            Class<?> expected = setSubroute(set, id, startOffset + tailDelta,
+                    endOffset + headDelta);
+            Class<?> actual = advanceBy(advanced, id, headDelta, tailDelta);
+            Assert.assertEquals(expected, actual);
+            if (expected == null) {
+                accepted++;
+            }
+            for (int train : lengths.keySet()) {
+                Assert.assertArrayEquals(set.getTrainInfo(train), advanced
+                        .getTrainInfo(train));
+            }
+        }
+        // both outcomes were tested often
+        Assert.assertTrue(accepted > moves / 10);
+        Assert.assertTrue(accepted < moves - moves / 10);
+    }
+
+    /**
+     * Spawns a train in the model, returning its id, or null if the model
+     * rejects its route or subroute.
+     */
+    private Integer spawn(RailwayModel model, File route, int startOffset,
+            int endOffset) throws IOException, FormatException {
+        try {
+            return model.spawnTrain(route.getPath(), startOffset, endOffset);
+        } catch (RailwayModel.InvalidRouteRequestException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Moves the train with advanceTrain, returning the class of the exception
+     * thrown, or null if the move is allowed.
+     */
+    private Class<?> advanceBy(RailwayModel model, int id, int headDelta,
+            int tailDelta) {
+        try {
+            model.advanceTrain(id, headDelta, tailDelta);
+            return null;
+        } catch (RailwayModel.InvalidTrainRequestException
+                | RailwayModel.InvalidRouteRequestException e) {
+            return e.getClass();
+        }
+    }
+
+    /**
+     * Sets the subroute of the train with setTrainSubroute, returning the
+     * class of the exception thrown, or null if the subroute is allowed.
+     */
+    private Class<?> setSubroute(RailwayModel model, int id, int startOffset,
+            int endOffset) {
+        try {
+            model.setTrainSubroute(id, startOffset, endOffset);
+            return null;
+        } catch (RailwayModel.InvalidTrainRequestException
+                | RailwayModel.InvalidRouteRequestException e) {
+            return e.getClass();
+        }
+    }
+
+    /**
+     * Returns a new temporary file, which is deleted after the test.
+     */
+    private File tempFile() throws IOException {
+        File file = File.createTempFile("railway", ".txt");
+        files.add(file);
+        return file;
+    }
+
+}
@@ -0,0 +1,296 @@
+package railway.test;
+
+import railway.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link TrackReader#read}, which reads the bytes of an ASCII file
+ * directly, gives the same results as {@link TrackReader#readWithScanner}.
+ */
+public class TrackReaderTest {
+
+    // the tokens that may stand for a section length: valid lengths, and
+    // ones that are zero, negative, too large, or not integers at all
+    private static final String[] LENGTHS = { "1", "9", "10", "777",
+            "123456789", "0", "-3", "+5", "007", "1,000", "2147483647",
+            "2147483648", "99999999999", "3.5", "x", "FACING" };
+
+    // the tokens that may stand for a branch, most of them valid
+    private static final String[] BRANCHES = { "FACING", "NORMAL",
+            "REVERSE", "FACING", "NORMAL", "REVERSE", "facing", "Normal",
+            "REVERSEX", "7" };
+
+    // the whitespace characters that may separate tokens, including some
+    // that are whitespace to Character.isWhitespace but not to the eye
+    private static final String[] SPACES = { " ", " ", " ", "  ", "\t",
+            " \t ", "\u000B", "\f", "\u001C", "\u001F" };
+
+    // the line terminators that may end a line
+    private static final String[] TERMINATORS = { "\n", "\n", "\r\n", "\r" };
+
+    // the file that each test writes to and reads from
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("track", ".txt");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Random test: short files of mostly valid lines, with bad, missing and
+     * extra tokens, duplicate and conflicting sections, blank lines and mixed
+     * line endings: both readers return the same track, or throw a
+     * FormatException with the same message.
+     */
+    @Test
+    public void randomTest01() throws Exception {
+        // a fixed seed, so that a failure can be reproduced
+        Random random = new Random(2008);
+        for (int round = 0; round < 2000; round++) {
+            writeFile(randomFile(random, 1 + random.nextInt(12), 0.1));
+            checkSameResult();
+        }
+    }
+
+    /**
+     * Random test: files whose lines are valid, apart from the odd bad line
+     * or duplicate or conflicting section, with enough lines that they are read
+     * in several parts, so that lines and "\r\n" terminators are split
+     * between parts: both readers return the same track, or throw a
+     * FormatException with the same message.
+     */
+    @Test
+    public void randomTest02() throws Exception {
+        // a fixed seed, so that a failure can be reproduced
+        Random random = new Random(2009);
+        for (int round = 0; round < 20; round++) {
+            writeFile(randomFile(random, 3000 + random.nextInt(6000),
+                    0.0002));
+            checkSameResult();
+        }
+    }
+
+    /**
+     * Random test: files with characters outside of the ASCII character set,
+     * in a junction name or between tokens, on an early or a late line: both
+     * readers return the same track, or throw a FormatException with the
+     * same message.
+     */
+    @Test
+    public void randomTest03() throws Exception {
+        // a fixed seed, so that a failure can be reproduced
+        Random random = new Random(2010);
+        // accented, Greek and Chinese letters, a no-break space, an em space,
+        // the line and next-line separators, and a character outside of the
+        // Basic Multilingual Plane
+        String[] others = { "\u00E9", "\u03BB", "\u4E2D", "\u00A0",
+                "\u2003", "\u2028", "\u0085", "\uD83D\uDE82" };
+        for (int round = 0; round < 500; round++) {
+            List<String> lines = randomFile(random, 1 + random.nextInt(12),
+                    0.1);
+            int line = random.nextInt(lines.size());
+            String text = lines.get(line);
+            int at = random.nextInt(text.length() + 1);
+            lines.set(line, text.substring(0, at)
+                    + others[random.nextInt(others.length)]
+                    + text.substring(at));
+            writeFile(lines);
+            checkSameResult();
+        }
+    }
+
+    /**
+     * Check that an empty file, and files of blank lines, give an empty track
+     * or the same error from both readers.
+     */
+    @Test
+    public void testBlankFiles() throws Exception {
+        String[] contents = { "", "\n", "\r\n", "\r", " \n", "\t\r\n\r\n",
+                "10 j1 FACING j2 NORMAL", "10 j1 FACING j2 NORMAL\r",
+                "10 j1 FACING j2 NORMAL\r\n\r\n" };
+        for (String content : contents) {
+            Files.write(file.toPath(), content
+                    .getBytes(StandardCharsets.UTF_8));
+            checkSameResult();
+        }
+    }
+
+    // -----Helper Methods-------------------------------
+
+    /**
+     * Returns the given number of random lines, each with its terminator
+     * (except possibly the last). With the given probability, a line is made
+     * invalid, or its section is a duplicate of, or shares an end-point with,
+     * an earlier one; otherwise it is valid.
+     */
+    private List<String> randomFile(Random random, int lineCount,
+            double badLines) {
+        // the end-points of enough junctions for every section to have its
+        // own, in a random order
+        List<String> endPoints = new ArrayList<>();
+        for (int junction = 0; junction < 2 * lineCount / 3 + 1; junction++) {
+            for (int branch = 0; branch < 3; branch++) {
+                endPoints.add("j" + junction + " " + BRANCHES[branch]);
+            }
+        }
+        Collections.shuffle(endPoints, random);
+
+        // the tokens of each line
+        List<List<String>> previous = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < lineCount; i++) {
+            List<String> tokens = new ArrayList<>();
+            tokens.add(Integer.toString(1 + random.nextInt(100)));
+            tokens.addAll(Arrays.asList(endPoints.get(2 * i).split(" ")));
+            tokens.addAll(Arrays.asList(endPoints.get(2 * i + 1).split(" ")));
+            if (!previous.isEmpty() && random.nextDouble() < badLines) {
+                reuse(random, tokens, previous.get(random.nextInt(previous
+                        .size())));
+            }
+            previous.add(new ArrayList<>(tokens));
+            if (random.nextDouble() < badLines) {
+                spoil(random, tokens);
+            }
+
+            StringBuilder line = new StringBuilder();
+            if (random.nextInt(4) == 0) {
+                line.append(SPACES[random.nextInt(SPACES.length)]);
+            }
+            for (int t = 0; t < tokens.size(); t++) {
+                if (t > 0) {
+                    line.append(random.nextInt(8) == 0
+                            ? SPACES[random.nextInt(SPACES.length)] : " ");
+                }
+                line.append(tokens.get(t));
+            }
+            if (random.nextInt(4) == 0) {
+                line.append(SPACES[random.nextInt(SPACES.length)]);
+            }
+            if (i + 1 < lineCount || random.nextBoolean()) {
+                line.append(TERMINATORS[random.nextInt(TERMINATORS.length)]);
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Reuses the end-points of an earlier line in the tokens of a line: the
+     * same section, the same end-points in the other order, or one of the
+     * end-points with a new one.
+     */
+    private void reuse(Random random, List<String> tokens,
+            List<String> earlier) {
+        switch (random.nextInt(3)) {
+        case 0:
+            tokens.clear();
+            tokens.addAll(earlier);
+            break;
+        case 1:
+            tokens.subList(1, 5).clear();
+            tokens.addAll(earlier.subList(3, 5));
+            tokens.addAll(earlier.subList(1, 3));
+            break;
+        default:
+            int from = (random.nextBoolean()) ? 1 : 3;
+            int to = (random.nextBoolean()) ? 1 : 3;
+            tokens.set(to, earlier.get(from));
+            tokens.set(to + 1, earlier.get(from + 1));
+            break;
+        }
+    }
+
+    /**
+     * Makes the tokens of a line invalid in a random way: a bad token, a
+     * missing or extra token, or a blank line.
+     */
+    private void spoil(Random random, List<String> tokens) {
+        switch (random.nextInt(6)) {
+        case 0:
+            tokens.set(0, LENGTHS[random.nextInt(LENGTHS.length)]);
+            break;
+        case 1:
+            int branch = (random.nextBoolean()) ? 2 : 4;
+            tokens.set(branch, BRANCHES[random.nextInt(BRANCHES.length)]);
+            break;
+        case 2:
+            tokens.remove(random.nextInt(tokens.size()));
+            break;
+        case 3:
+            tokens.add(random.nextInt(tokens.size() + 1), "extra");
+            break;
+        case 4:
+            // the same end-point at both ends
+            tokens.set(3, tokens.get(1));
+            tokens.set(4, tokens.get(2));
+            break;
+        default:
+            tokens.clear();
+            break;
+        }
+    }
+
+    /**
+     * Replaces the contents of the file with the given lines, encoded in
+     * UTF-8.
+     */
+    private void writeFile(List<String> lines) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (String line : lines) {
+            content.append(line);
+        }
+        Files.write(file.toPath(), content.toString().getBytes(
+                StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks that both readers read the same track from the file, or both
+     * throw a FormatException with the same message.
+     */
+    private void checkSameResult() throws IOException {
+        Set<Section> expected = null;
+        String expectedMessage = null;
+        try {
+            expected = sections(TrackReader.readWithScanner(file.getPath()));
+        } catch (FormatException e) {
+            expectedMessage = e.getMessage();
+        }
+
+        Set<Section> actual = null;
+        String actualMessage = null;
+        try {
+            actual = sections(TrackReader.read(file.getPath()));
+        } catch (FormatException e) {
+            actualMessage = e.getMessage();
+        }
+
+        Assert.assertEquals(expectedMessage, actualMessage);
+        Assert.assertEquals(expected, actual);
+    }
+
+    /**
+     * Returns the set of sections of the track, checking that the track is
+     * consistent.
+     */
+    private Set<Section> sections(Track track) {
+        Assert.assertTrue(track.checkInvariant());
+        Set<Section> sections = new HashSet<>();
+        for (Section section : track) {
+            sections.add(section);
+        }
+        return sections;
+    }
+
+}